@@ -36,7 +36,7 @@ public class Cortex {
         this.dish = dish;
         this.book = new AddressBookZell(dish);
 
-        book.put("book", dish.add(book));
+        book.put("book", dish.addWithMailbox(book));
         book.put("cortex", dish.add(new CortexZell(this, dish, connections)));
     }
 
@@ -189,7 +189,7 @@ class CortexGui extends JFrame {
                     return;
                 }
 
-                cortex.book.put(name, cortex.dish.add(new TurtleZell(cortex.dish)));
+                cortex.book.put(name, cortex.dish.addWithMailbox(new TurtleZell(cortex.dish)));
             }
         });
 
@@ -15,7 +15,7 @@ import java.util.Map;
 class InputParser {
 
     private String receiver = ".";
-    private Message message = new NullMessage();
+    private Message message = NullMessage.INSTANCE;
 
     private List<Message> receivedMessages;
     private Map<String, Address> aliases;
@@ -60,7 +60,7 @@ class InputParser {
 
     private Message parseJsonNode(JsonNode json) throws IOException {
         if (json.isNull()) {
-            return new NullMessage();
+            return NullMessage.INSTANCE;
         } else if (json.isTextual() && json.asText().startsWith("@")) {
             String alias = json.asText().substring(1);
             if (aliases.containsKey(alias)) {
@@ -73,9 +73,9 @@ class InputParser {
         } else if (json.isTextual()) {
             return new StringMessage(json.asText());
         } else if (json.isInt()) {
-            return new IntegerMessage(json.asInt());
+            return IntegerMessage.valueOf(json.asInt());
         } else if (json.isBoolean()) {
-            return new BooleanMessage(json.asBoolean());
+            return BooleanMessage.valueOf(json.asBoolean());
         } else if (json.isObject()) {
             CompositeMessage message = new CompositeMessage();
             for (Iterator<Map.Entry<String, JsonNode>> it = json.fields(); it.hasNext(); ) {
@@ -137,8 +137,7 @@ class InputParser {
         if (!collections.containsKey(key)) {
             collections.put(key, new CompositeMessage());
         }
-        CompositeMessage composite = collections.get(key);
-        int lastKey = composite.keys().size();
+        int lastKey = collections.get(key).keys().size();
 
         Message value;
         if (reference) {
@@ -147,7 +146,8 @@ class InputParser {
             value = parseShortSyntaxPart(bag.toString());
         }
 
-        composite.put(lastKey, value);
+        CompositeMessage composite = collections.get(key).with(lastKey, value);
+        collections.put(key, composite);
 
         if (lastKey == 0) {
             return composite.read(0);
@@ -174,11 +174,11 @@ class InputParser {
 
     private Message parseShortSyntaxPart(String part) {
         if (part.matches("^\\d+$")) {
-            return new IntegerMessage(Integer.valueOf(part));
+            return IntegerMessage.valueOf(Integer.parseInt(part));
         } else if (part.equals("yes")) {
-            return new BooleanMessage(true);
+            return BooleanMessage.TRUE;
         } else if (part.equals("no")) {
-            return new BooleanMessage(false);
+            return BooleanMessage.FALSE;
         } else if (part.startsWith("0x")) {
             return BinaryMessage.fromString(part);
         } else if (part.startsWith("@")) {
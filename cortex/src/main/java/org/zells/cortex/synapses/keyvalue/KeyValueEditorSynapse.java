@@ -56,7 +56,7 @@ public class KeyValueEditorSynapse extends Synapse {
                         JOptionPane.PLAIN_MESSAGE);
 
                 if (name != null && !name.trim().isEmpty()) {
-                    model.put(name, new NullMessage());
+                    model.put(name, NullMessage.INSTANCE);
                 }
             }
         });
@@ -15,6 +15,10 @@ import java.util.Set;
 
 public class AddressBookZell implements Zell {
 
+    private static final StringMessage ENTRIES = new StringMessage("entries");
+    private static final StringMessage OBSERVERS = new StringMessage("observers");
+    private static final StringMessage OBSERVER = new StringMessage("observer");
+
     private Map<String, Address> addresses = new HashMap<String, Address>();
     private Dish dish;
     private Set<Address> observers = new HashSet<Address>();
@@ -25,7 +29,7 @@ public class AddressBookZell implements Zell {
 
     @Override
     public void receive(Message message) {
-        if (message.read(0).equals(new StringMessage("entries"))) {
+        if (message.read(0).equals(ENTRIES)) {
 
             if (!message.read("at").isNull() && message.keys().contains("put")) {
                 String name = message.read("at").asString().replace(" ", "");
@@ -42,7 +46,7 @@ public class AddressBookZell implements Zell {
                 dish.send(message.read("tell").asAddress(), book);
             }
 
-        } else if (message.read(0).equals(new StringMessage("observers"))) {
+        } else if (message.read(0).equals(OBSERVERS)) {
 
             if (!message.read("add").isNull()) {
                 observers.add(message.read("add").asAddress());
@@ -51,10 +55,8 @@ public class AddressBookZell implements Zell {
     }
 
     private void notifyObservers(Message change) {
-        for (Address observer : observers) {
-            dish.send(observer, new CompositeMessage(new StringMessage("observer"))
-                    .put("stateChanged", change));
-        }
+        dish.sendAll(observers, new CompositeMessage(OBSERVER)
+                .put("stateChanged", change));
     }
 
     public void put(String name, Address address) {
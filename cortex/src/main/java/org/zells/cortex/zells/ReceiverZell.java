@@ -35,7 +35,7 @@ public class ReceiverZell implements Zell {
         } else {
             for (Address subscriber : subscribers) {
                 dish.send(subscriber, new CompositeMessage()
-                        .put("sequence", new IntegerMessage(sequence++))
+                        .put("sequence", IntegerMessage.valueOf(sequence++))
                         .put("time", new StringMessage(getTimeAsIsoString()))
                         .put("message", message));
             }
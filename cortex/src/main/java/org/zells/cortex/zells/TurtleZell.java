@@ -13,6 +13,10 @@ import java.util.*;
 
 public class TurtleZell implements Zell {
 
+    private static final StringMessage DRAW = new StringMessage("draw");
+    private static final StringMessage LINE = new StringMessage("line");
+    private static final StringMessage CIRCLE = new StringMessage("circle");
+
     private Dish dish;
     private Set<Address> canvases = new HashSet<Address>();
     private int x;
@@ -95,7 +99,7 @@ public class TurtleZell implements Zell {
         CompositeMessage brush = new CompositeMessage();
         drawLines(brush);
         drawMyself(brush);
-        send(new CompositeMessage(new StringMessage("draw"), brush));
+        send(new CompositeMessage(DRAW, brush));
     }
 
     private void drawLines(CompositeMessage brush) {
@@ -110,27 +114,25 @@ public class TurtleZell implements Zell {
     }
 
     private void drawLine(CompositeMessage brush, int startX, int startY, int endX, int endY) {
-        draw(brush, new CompositeMessage(new StringMessage("line"))
-                .put("startX", new IntegerMessage(startX))
-                .put("startY", new IntegerMessage(startY))
-                .put("endX", new IntegerMessage(endX))
-                .put("endY", new IntegerMessage(endY)));
+        draw(brush, new CompositeMessage(LINE)
+                .put("startX", IntegerMessage.valueOf(startX))
+                .put("startY", IntegerMessage.valueOf(startY))
+                .put("endX", IntegerMessage.valueOf(endX))
+                .put("endY", IntegerMessage.valueOf(endY)));
     }
 
     private void drawCircle(CompositeMessage brush, int x, int y, int radius) {
-        draw(brush, new CompositeMessage(new StringMessage("circle"))
-                .put("centerX", new IntegerMessage(x))
-                .put("centerY", new IntegerMessage(y))
-                .put("radius", new IntegerMessage(radius)));
+        draw(brush, new CompositeMessage(CIRCLE)
+                .put("centerX", IntegerMessage.valueOf(x))
+                .put("centerY", IntegerMessage.valueOf(y))
+                .put("radius", IntegerMessage.valueOf(radius)));
     }
 
     private void draw(CompositeMessage brush, CompositeMessage message) {
-        brush.put(brush.keys().size(), message);
+        brush.put(brush.getSize(), message);
     }
 
     private void send(Message message) {
-        for (Address canvas : canvases) {
-            dish.send(canvas, message);
-        }
+        dish.sendAll(canvases, message);
     }
 }
@@ -0,0 +1,78 @@
+package org.zells.cortex.benchmarks;
+
+import org.zells.cortex.zells.AddressBookZell;
+import org.zells.cortex.zells.TurtleZell;
+import org.zells.dish.Dish;
+import org.zells.dish.Zell;
+import org.zells.dish.delivery.Address;
+import org.zells.dish.delivery.Delivery;
+import org.zells.dish.delivery.Message;
+import org.zells.dish.delivery.messages.AddressMessage;
+import org.zells.dish.delivery.messages.CompositeMessage;
+import org.zells.dish.delivery.messages.IntegerMessage;
+import org.zells.dish.delivery.messages.StringMessage;
+import org.zells.dish.network.connecting.Packet;
+import org.zells.dish.network.encoding.Encoding;
+import org.zells.dish.network.encoding.implementations.StreamingMsgpackEncoding;
+import org.zells.dish.network.signals.DeliverSignal;
+import org.zells.dish.util.Uuid;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executor;
+
+public class ZellAllocationBenchmark {
+
+    private static final int WARM_UP = 200000;
+    private static final int MEASURE = 1000000;
+
+    private static final Encoding encoding = new StreamingMsgpackEncoding();
+
+    public static void main(String[] args) {
+        Dish dish = Dish.buildDefault().setExecutor(new Executor() {
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+        Address sink = dish.add(new Zell() {
+            public void receive(Message message) {
+            }
+        });
+
+        AddressBookZell book = new AddressBookZell(dish);
+        measure("address book", book, new CompositeMessage(new StringMessage("entries"))
+                .put("at", new StringMessage("foo"))
+                .put("put", new AddressMessage(Address.fromString("dada"))));
+
+        TurtleZell turtle = new TurtleZell(dish);
+        turtle.receive(new CompositeMessage(new StringMessage("canvas")).put("add", new AddressMessage(sink)));
+        measure("turtle", turtle, new CompositeMessage(new StringMessage("turn")).put("left", new IntegerMessage(10)));
+    }
+
+    private static void measure(String name, Zell zell, Message message) {
+        Packet packet = encoding.encode(new DeliverSignal(new Delivery(Uuid.fromString("01"), Address.fromString("fade"), message)));
+
+        run(zell, message, packet, WARM_UP, false);
+        run(zell, message, packet, WARM_UP, true);
+        double built = run(zell, message, packet, MEASURE, false);
+        double decoded = run(zell, message, packet, MEASURE, true);
+
+        System.out.printf("%-14s %8.0f bytes/receive  %8.0f bytes/decode+receive%n", name, built, decoded);
+    }
+
+    private static double run(Zell zell, Message message, Packet packet, int count, boolean decode) {
+        long start = allocatedBytes();
+        for (int i = 0; i < count; i++) {
+            if (decode) {
+                zell.receive(((DeliverSignal) encoding.decode(packet)).getDelivery().getMessage());
+            } else {
+                zell.receive(message);
+            }
+        }
+        return (allocatedBytes() - start) / (double) count;
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -12,7 +12,9 @@ import org.zells.dish.network.encoding.EncodingRepository;
 import org.zells.dish.util.BasicUuidGenerator;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 abstract public class BaseTest {
 
@@ -32,6 +34,13 @@ abstract public class BaseTest {
             public Messenger send(Address receiver, Message message) {
                 return super.send(receiver, message).sync();
             }
+
+            @Override
+            public Map<Address, Messenger> sendAll(Collection<Address> receivers, Message message) {
+                Map<Address, Messenger> messengers = super.sendAll(receivers, message);
+                Messenger.allOf(messengers.values()).sync();
+                return messengers;
+            }
         };
         target = dish.add(new Zell() {
             @Override
@@ -1,30 +1,112 @@
 package org.zells.dish;
 
 import org.zells.dish.delivery.*;
+import org.zells.dish.delivery.messages.EncodedMessage;
 import org.zells.dish.network.Peer;
 import org.zells.dish.network.SignalListener;
 import org.zells.dish.network.connecting.Connection;
 import org.zells.dish.network.connecting.PacketHandler;
+import org.zells.dish.network.encoding.Encoding;
 import org.zells.dish.network.encoding.EncodingRepository;
+import org.zells.dish.network.routing.DeliveryStrategy;
+import org.zells.dish.network.routing.implementations.RoutedDeliveryStrategy;
 import org.zells.dish.util.BasicUuidGenerator;
 import org.zells.dish.util.UuidGenerator;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 public class Dish {
 
+    public static final int DEFAULT_MAX_HOPS = 16;
+
+    private static final int RELAY_TIME_OUT_SEC = 30;
+
     private UuidGenerator generator;
     private EncodingRepository encodings;
+    private Executor executor = DeliveryExecutors.shared();
+    private Executor mailboxExecutor = DeliveryExecutors.mailboxes();
 
-    private Map<Address, Zell> culture = new HashMap<Address, Zell>();
-    private Map<Connection, Peer> peers = new IdentityHashMap<Connection, Peer>();
-    private Set<Delivery> delivered = new HashSet<Delivery>();
+    private Map<Address, Zell> culture = new ConcurrentHashMap<Address, Zell>();
+    private volatile Map<Connection, Peer> peers = new IdentityHashMap<Connection, Peer>();
+    private DeliveryFilter delivered = new DeliveryFilter();
+    private DeliveryStrategy strategy = new RoutedDeliveryStrategy();
+    private int maxHops = DEFAULT_MAX_HOPS;
+    private int mailboxBatchSize = Mailbox.DEFAULT_BATCH_SIZE;
+    private int mailboxCapacity = Mailbox.DEFAULT_CAPACITY;
+    private Overflow mailboxOverflow = Overflow.FAIL;
+    private int peerQueueCapacity = Peer.DEFAULT_QUEUE_CAPACITY;
+    private Overflow peerOverflow = Overflow.FAIL;
+    private int peerBatchSize = 1;
+    private long peerLingerMillis = Peer.DEFAULT_LINGER_MILLIS;
 
     public Dish(UuidGenerator generator, EncodingRepository encodings) {
         this.generator = generator;
         this.encodings = encodings;
     }
 
+    public Dish setDeliveryFilter(DeliveryFilter filter) {
+        this.delivered = filter;
+        return this;
+    }
+
+    public DeliveryFilter getDeliveryFilter() {
+        return delivered;
+    }
+
+    public Dish setDeliveryStrategy(DeliveryStrategy strategy) {
+        this.strategy = strategy;
+        return this;
+    }
+
+    public DeliveryStrategy getDeliveryStrategy() {
+        return strategy;
+    }
+
+    public Collection<Peer> getPeers() {
+        return Collections.unmodifiableCollection(peers.values());
+    }
+
+    public Dish setMaxHops(int maxHops) {
+        this.maxHops = maxHops;
+        return this;
+    }
+
+    public Dish setExecutor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    public Dish setMailboxExecutor(Executor mailboxExecutor) {
+        this.mailboxExecutor = mailboxExecutor;
+        return this;
+    }
+
+    public Dish setMailboxBatchSize(int mailboxBatchSize) {
+        this.mailboxBatchSize = mailboxBatchSize;
+        return this;
+    }
+
+    public Dish setMailboxCapacity(int mailboxCapacity, Overflow mailboxOverflow) {
+        this.mailboxCapacity = mailboxCapacity;
+        this.mailboxOverflow = mailboxOverflow;
+        return this;
+    }
+
+    public Dish setPeerQueueCapacity(int capacity, Overflow overflow) {
+        this.peerQueueCapacity = capacity;
+        this.peerOverflow = overflow;
+        return this;
+    }
+
+    public Dish setPeerBatching(int batchSize, long lingerMillis) {
+        this.peerBatchSize = batchSize;
+        this.peerLingerMillis = lingerMillis;
+        return this;
+    }
+
     public static Dish buildDefault() {
         EncodingRepository encodings = new EncodingRepository().addAll(EncodingRepository.supportedEncodings());
         BasicUuidGenerator generator = new BasicUuidGenerator();
@@ -33,49 +115,122 @@ public class Dish {
     }
 
     public Messenger send(final Address receiver, final Message message) {
-        return new Messenger(new Runnable() {
-            public void run() {
-                Delivery delivery = new Delivery(generator.generate(), receiver, message);
-                if (!deliver(delivery)) {
-                    throw new ReceiverNotFoundException(delivery);
+        final Messenger messenger = new Messenger();
+        try {
+            executor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        messenger.follow(deliver(new Delivery(generator.generate(), receiver, message)));
+                    } catch (Exception e) {
+                        messenger.failed(e);
+                    }
                 }
+            });
+        } catch (RejectedExecutionException e) {
+            messenger.failed(e);
+        }
+        return messenger;
+    }
+
+    public Map<Address, Messenger> sendAll(Collection<Address> receivers, final Message message) {
+        final Map<Address, Messenger> messengers = new LinkedHashMap<Address, Messenger>();
+        for (Address receiver : receivers) {
+            messengers.put(receiver, new Messenger());
+        }
+        if (messengers.isEmpty()) {
+            return Collections.unmodifiableMap(messengers);
+        }
+        try {
+            executor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        deliverAll(messengers, message);
+                    } catch (Exception e) {
+                        for (Messenger messenger : messengers.values()) {
+                            messenger.failed(e);
+                        }
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            for (Messenger messenger : messengers.values()) {
+                messenger.failed(e);
             }
-        });
+        }
+        return Collections.unmodifiableMap(messengers);
     }
 
-    private boolean deliver(Delivery delivery) {
-         return !alreadyDelivered(delivery)
-                && (deliverLocally(delivery)
-                || deliverRemotely(delivery));
+    private void deliverAll(Map<Address, Messenger> messengers, Message message) {
+        List<Delivery> remote = new ArrayList<Delivery>();
+        List<Messenger> following = new ArrayList<Messenger>();
+
+        for (Map.Entry<Address, Messenger> entry : messengers.entrySet()) {
+            Delivery delivery = new Delivery(generator.generate(), entry.getKey(), message);
+            try {
+                if (alreadyDelivered(delivery)) {
+                    entry.getValue().follow(notFound(delivery));
+                } else if (deliverLocally(delivery)) {
+                    entry.getValue().delivered();
+                } else {
+                    remote.add(delivery);
+                    following.add(entry.getValue());
+                }
+            } catch (BusyException e) {
+                entry.getValue().failed(e);
+            }
+        }
+
+        if (remote.isEmpty()) {
+            return;
+        }
+        List<Messenger> delivered = strategy.deliverAll(remote, peers.values());
+        for (int i = 0; i < remote.size(); i++) {
+            following.get(i).follow(delivered.get(i));
+        }
     }
 
-    private boolean alreadyDelivered(Delivery delivery) {
-        if (delivered.contains(delivery)) {
-            return true;
+    private Messenger deliver(Delivery delivery) {
+        if (alreadyDelivered(delivery)) {
+            return notFound(delivery);
         }
-        delivered.add(delivery);
-        return false;
+        if (deliverLocally(delivery)) {
+            Messenger messenger = new Messenger();
+            messenger.delivered();
+            return messenger;
+        }
+        return deliverRemotely(delivery);
+    }
+
+    private boolean alreadyDelivered(Delivery delivery) {
+        return delivered.isDuplicate(delivery);
     }
 
     private boolean deliverLocally(Delivery delivery) {
-        if (!culture.containsKey(delivery.getReceiver())) {
+        Zell zell = culture.get(delivery.getReceiver());
+        if (zell == null) {
             return false;
         }
         try {
-            culture.get(delivery.getReceiver()).receive(delivery.getMessage());
+            zell.receive(EncodedMessage.decoded(delivery.getMessage()));
+        } catch (BusyException e) {
+            throw e;
         } catch (Exception e) {
             logError(e, delivery);
         }
         return true;
     }
 
-    private boolean deliverRemotely(Delivery delivery) {
-        for (Peer peer : peers.values()) {
-            if (peer.deliver(delivery)) {
-                return true;
-            }
+    private Messenger deliverRemotely(Delivery delivery) {
+        if (delivery.getHops() >= maxHops) {
+            return notFound(delivery);
         }
-        return false;
+        return strategy.deliver(delivery, peers.values());
+    }
+
+    private Messenger notFound(Delivery delivery) {
+        Messenger messenger = new Messenger();
+        messenger.failed(new ReceiverNotFoundException(delivery));
+        return messenger;
     }
 
     public Address add(Zell zell) {
@@ -87,6 +242,22 @@ public class Dish {
         return address;
     }
 
+    public Address addWithMailbox(Zell zell) {
+        return putWithMailbox(new Address(generator.generate()), zell);
+    }
+
+    public Address putWithMailbox(Address address, Zell zell) {
+        return put(address, new Mailbox(zell, mailboxExecutor)
+                .setBatchSize(mailboxBatchSize)
+                .setCapacity(mailboxCapacity)
+                .setOverflow(mailboxOverflow));
+    }
+
+    public Mailbox getMailbox(Address address) {
+        Zell zell = culture.get(address);
+        return zell instanceof Mailbox ? (Mailbox) zell : null;
+    }
+
     public Zell remove(Address address) {
         return culture.remove(address);
     }
@@ -101,20 +272,43 @@ public class Dish {
     }
 
     public void leaveAll() {
-        for (Peer peer : peers.values()) {
+        Map<Connection, Peer> left;
+        synchronized (this) {
+            left = peers;
+            peers = new IdentityHashMap<Connection, Peer>();
+        }
+        for (Peer peer : left.values()) {
+            strategy.onDisconnect(peer);
             peer.leave();
         }
-        peers.clear();
     }
 
-    private Peer connect(Connection connection) {
-        Peer peer = new Peer(encodings, connection);
-        peers.put(connection, peer);
+    synchronized private Peer connect(Connection connection) {
+        return connect(connection, encodings.getDefault(), false);
+    }
+
+    synchronized private Peer connect(Connection connection, Encoding encoding, boolean negotiated) {
+        Peer peer = new Peer(encodings, connection, executor)
+                .setEncoding(encoding)
+                .setBatchingSupported(negotiated)
+                .setQueueCapacity(peerQueueCapacity)
+                .setOverflow(peerOverflow)
+                .setBatching(peerBatchSize, peerLingerMillis);
+        Map<Connection, Peer> connected = new IdentityHashMap<Connection, Peer>(peers);
+        connected.put(connection, peer);
+        peers = connected;
+        strategy.onConnect(peer);
         return peer;
     }
 
-    private Peer disconnect(Connection connection) {
-        return peers.remove(connection);
+    synchronized private Peer disconnect(Connection connection) {
+        Map<Connection, Peer> disconnected = new IdentityHashMap<Connection, Peer>(peers);
+        Peer peer = disconnected.remove(connection);
+        peers = disconnected;
+        if (peer != null) {
+            strategy.onDisconnect(peer);
+        }
+        return peer;
     }
 
     public void listen(Connection connection) {
@@ -129,11 +323,37 @@ public class Dish {
     private class DishSignalListener implements SignalListener {
 
         public boolean onDeliver(Delivery delivery) {
-            return deliver(delivery);
+            Messenger messenger = deliver(delivery.relayed()).sync(RELAY_TIME_OUT_SEC);
+            Exception failure = messenger.getFailure();
+            if (failure == null || failure instanceof ReceiverNotFoundException) {
+                return messenger.wasDelivered();
+            } else if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+            throw new RuntimeException(failure.getMessage(), failure);
+        }
+
+        public List<Messenger> onDeliverAll(List<Delivery> deliveries) {
+            List<Messenger> messengers = new ArrayList<Messenger>(deliveries.size());
+            for (Delivery delivery : deliveries) {
+                try {
+                    messengers.add(deliver(delivery.relayed()));
+                } catch (Exception e) {
+                    Messenger failed = new Messenger();
+                    failed.failed(e);
+                    messengers.add(failed);
+                }
+            }
+
+            try {
+                Messenger.allSettled(messengers).sync(RELAY_TIME_OUT_SEC);
+            } catch (RuntimeException ignored) {
+            }
+            return messengers;
         }
 
-        public boolean onJoin(Connection connection) {
-            return connect(connection) != null;
+        public boolean onJoin(Connection connection, Encoding encoding, boolean negotiated) {
+            return connect(connection, encoding, negotiated) != null;
         }
 
         public boolean onLeave(Connection connection) {
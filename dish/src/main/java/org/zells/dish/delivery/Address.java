@@ -4,7 +4,7 @@ import org.zells.dish.util.Uuid;
 
 public class Address {
 
-    private Uuid uuid;
+    private final Uuid uuid;
 
     public Address(Uuid uuid) {
         this.uuid = uuid;
@@ -23,6 +23,10 @@ public class Address {
         return new Address(new Uuid(bytes));
     }
 
+    public Uuid getUuid() {
+        return uuid;
+    }
+
     public byte[] toBytes() {
         return uuid.getBytes();
     }
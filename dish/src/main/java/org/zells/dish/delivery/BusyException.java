@@ -0,0 +1,10 @@
+package org.zells.dish.delivery;
+
+public class BusyException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public BusyException(String message) {
+        super(message);
+    }
+}
@@ -7,11 +7,21 @@ public class Delivery {
     private final Address receiver;
     private final Message message;
     private Uuid uuid;
+    private int hops;
 
     public Delivery(Uuid uuid, Address receiver, Message message) {
+        this(uuid, receiver, message, 0);
+    }
+
+    public Delivery(Uuid uuid, Address receiver, Message message, int hops) {
         this.receiver = receiver;
-        this.message = message;
+        this.message = message == null ? null : message.freeze();
         this.uuid = uuid;
+        this.hops = hops;
+    }
+
+    public Delivery relayed() {
+        return new Delivery(uuid, receiver, message, hops + 1);
     }
 
     public Address getReceiver() {
@@ -26,6 +36,10 @@ public class Delivery {
         return uuid;
     }
 
+    public int getHops() {
+        return hops;
+    }
+
     @Override
     public int hashCode() {
         return uuid.hashCode();
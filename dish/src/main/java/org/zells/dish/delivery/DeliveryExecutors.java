@@ -0,0 +1,152 @@
+package org.zells.dish.delivery;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DeliveryExecutors {
+
+    public static final int DEFAULT_THREADS = Math.max(16, 4 * Runtime.getRuntime().availableProcessors());
+    public static final int DEFAULT_QUEUE_CAPACITY = 4096;
+
+    private static final long KEEP_ALIVE_SEC = 60;
+
+    private static ExecutorService shared;
+    private static ExecutorService responders;
+    private static ScheduledExecutorService scheduler;
+    private static ExecutorService mailboxes;
+
+    synchronized public static ExecutorService shared() {
+        if (shared == null) {
+            shared = fixed(DEFAULT_THREADS, DEFAULT_QUEUE_CAPACITY, Rejection.CALLER_RUNS);
+        }
+        return shared;
+    }
+
+    synchronized public static ExecutorService responders() {
+        if (responders == null) {
+            responders = fixed(DEFAULT_THREADS, DEFAULT_QUEUE_CAPACITY, Rejection.FAIL, "zells-responder");
+        }
+        return responders;
+    }
+
+    synchronized public static ScheduledExecutorService scheduler() {
+        if (scheduler == null) {
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new DaemonThreadFactory("zells-scheduler"));
+            try {
+                ScheduledThreadPoolExecutor.class.getMethod("setRemoveOnCancelPolicy", boolean.class)
+                        .invoke(executor, true);
+            } catch (Exception ignored) {
+            }
+            scheduler = executor;
+        }
+        return scheduler;
+    }
+
+    synchronized public static ExecutorService mailboxes() {
+        if (mailboxes == null) {
+            mailboxes = mailboxes(Runtime.getRuntime().availableProcessors());
+        }
+        return mailboxes;
+    }
+
+    public static ExecutorService mailboxes(int threads) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SEC, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory("zells-mailbox"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    public static ExecutorService cached() {
+        return new ThreadPoolExecutor(0, Integer.MAX_VALUE, KEEP_ALIVE_SEC, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(), new DaemonThreadFactory("zells-messenger"));
+    }
+
+    public static ExecutorService fixed(int threads, int queueCapacity, Rejection rejection) {
+        return fixed(threads, queueCapacity, rejection, "zells-messenger");
+    }
+
+    private static ExecutorService fixed(int threads, int queueCapacity, Rejection rejection, String name) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SEC, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity), new DaemonThreadFactory(name),
+                rejection.handler());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    public static ExecutorService workStealing(int parallelism) {
+        try {
+            Class<?> pool = Class.forName("java.util.concurrent.ForkJoinPool");
+            Class<?> factory = Class.forName("java.util.concurrent.ForkJoinPool$ForkJoinWorkerThreadFactory");
+            return (ExecutorService) pool
+                    .getConstructor(int.class, factory, Thread.UncaughtExceptionHandler.class, boolean.class)
+                    .newInstance(parallelism, pool.getField("defaultForkJoinWorkerThreadFactory").get(null), null, true);
+        } catch (Exception e) {
+            return fixed(parallelism, DEFAULT_QUEUE_CAPACITY, Rejection.CALLER_RUNS);
+        }
+    }
+
+    public static ExecutorService virtual() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (Exception e) {
+            return cached();
+        }
+    }
+
+    public static boolean supportsVirtualThreads() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    public enum Rejection {
+        FAIL {
+            RejectedExecutionHandler handler() {
+                return new ThreadPoolExecutor.AbortPolicy();
+            }
+        },
+        CALLER_RUNS {
+            RejectedExecutionHandler handler() {
+                return new ThreadPoolExecutor.CallerRunsPolicy();
+            }
+        },
+        BLOCK {
+            RejectedExecutionHandler handler() {
+                return new RejectedExecutionHandler() {
+                    public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+                        if (executor.isShutdown()) {
+                            throw new RejectedExecutionException("Executor was shut down");
+                        }
+                        try {
+                            executor.getQueue().put(task);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new RejectedExecutionException(e);
+                        }
+                    }
+                };
+            }
+        };
+
+        abstract RejectedExecutionHandler handler();
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger();
+
+        DaemonThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package org.zells.dish.delivery;
+
+import org.zells.dish.util.Uuid;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class DeliveryFilter {
+
+    public static final int DEFAULT_GENERATION_SIZE = 10000;
+    public static final long DEFAULT_GENERATION_AGE_MILLIS = 60 * 1000;
+    public static final int DEFAULT_GENERATIONS = 4;
+
+    private final int generationSize;
+    private final long generationAgeMillis;
+
+    private volatile Generation[] generations;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public DeliveryFilter() {
+        this(DEFAULT_GENERATION_SIZE, DEFAULT_GENERATION_AGE_MILLIS, DEFAULT_GENERATIONS);
+    }
+
+    public DeliveryFilter(int generationSize, long generationAgeMillis, int generations) {
+        if (generationSize < 1 || generations < 2) {
+            throw new IllegalArgumentException("Filter needs at least two generations of one entry");
+        }
+
+        this.generationSize = generationSize;
+        this.generationAgeMillis = generationAgeMillis;
+        this.generations = new Generation[generations];
+        this.generations[0] = new Generation(now());
+    }
+
+    public boolean isDuplicate(Delivery delivery) {
+        Uuid uuid = delivery.getUuid();
+
+        while (true) {
+            Generation[] snapshot = generations;
+            for (int i = 1; i < snapshot.length; i++) {
+                if (snapshot[i] != null && snapshot[i].uuids.contains(uuid)) {
+                    hits.incrementAndGet();
+                    return true;
+                }
+            }
+
+            Generation current = snapshot[0];
+            if (current.isExpired(now())) {
+                rotate(current);
+                continue;
+            }
+
+            if (!current.add(uuid)) {
+                hits.incrementAndGet();
+                return true;
+            }
+            if (generations == snapshot) {
+                misses.incrementAndGet();
+                return false;
+            }
+            current.remove(uuid);
+        }
+    }
+
+    synchronized private void rotate(Generation expired) {
+        Generation[] snapshot = generations;
+        if (snapshot[0] != expired) {
+            return;
+        }
+
+        Generation[] rotated = new Generation[snapshot.length];
+        rotated[0] = new Generation(now());
+        System.arraycopy(snapshot, 0, rotated, 1, snapshot.length - 1);
+        generations = rotated;
+
+        Generation evicted = snapshot[snapshot.length - 1];
+        if (evicted != null) {
+            evictions.addAndGet(evicted.size.get());
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Generation generation : generations) {
+            if (generation != null) {
+                size += generation.size.get();
+            }
+        }
+        return size;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    protected long now() {
+        return System.currentTimeMillis();
+    }
+
+    private class Generation {
+
+        private final Set<Uuid> uuids = Collections.newSetFromMap(new ConcurrentHashMap<Uuid, Boolean>());
+        private final AtomicInteger size = new AtomicInteger();
+        private final long started;
+
+        Generation(long started) {
+            this.started = started;
+        }
+
+        boolean add(Uuid uuid) {
+            if (!uuids.add(uuid)) {
+                return false;
+            }
+            size.incrementAndGet();
+            return true;
+        }
+
+        void remove(Uuid uuid) {
+            if (uuids.remove(uuid)) {
+                size.decrementAndGet();
+            }
+        }
+
+        boolean isExpired(long now) {
+            return size.get() >= generationSize || now - started >= generationAgeMillis;
+        }
+    }
+}
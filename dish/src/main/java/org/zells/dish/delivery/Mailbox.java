@@ -0,0 +1,216 @@
+package org.zells.dish.delivery;
+
+import org.zells.dish.Zell;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class Mailbox implements Zell {
+
+    public static final int DEFAULT_BATCH_SIZE = 64;
+    public static final int DEFAULT_CAPACITY = 65536;
+
+    private final Zell zell;
+    private final Executor executor;
+    private final Queue<Message> queue = new ConcurrentLinkedQueue<Message>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final AtomicInteger depth = new AtomicInteger();
+    private final AtomicInteger maxDepth = new AtomicInteger();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong drains = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicInteger blocked = new AtomicInteger();
+    private final Object space = new Object();
+    private final Runnable drain = new Runnable() {
+        public void run() {
+            drain();
+        }
+    };
+
+    private volatile int batchSize = DEFAULT_BATCH_SIZE;
+    private volatile int capacity = DEFAULT_CAPACITY;
+    private volatile Overflow overflow = Overflow.FAIL;
+
+    public Mailbox(Zell zell, Executor executor) {
+        this.zell = zell;
+        this.executor = executor;
+    }
+
+    public Mailbox setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public Mailbox setCapacity(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        return this;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public Mailbox setOverflow(Overflow overflow) {
+        this.overflow = overflow;
+        return this;
+    }
+
+    public Overflow getOverflow() {
+        return overflow;
+    }
+
+    public Zell getZell() {
+        return zell;
+    }
+
+    public int getDepth() {
+        return depth.get();
+    }
+
+    public int getMaxDepth() {
+        return maxDepth.get();
+    }
+
+    public long getProcessed() {
+        return processed.get();
+    }
+
+    public long getDrains() {
+        return drains.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public void receive(Message message) {
+        if (!admit()) {
+            return;
+        }
+        queue.offer(message);
+        schedule();
+    }
+
+    private boolean admit() {
+        while (true) {
+            int current = depth.get();
+            if (current < capacity) {
+                if (depth.compareAndSet(current, current + 1)) {
+                    recordDepth(current + 1);
+                    return true;
+                }
+                continue;
+            }
+
+            switch (overflow) {
+                case BLOCK:
+                    awaitSpace();
+                    break;
+                case DROP_OLDEST:
+                    if (queue.poll() != null) {
+                        depth.decrementAndGet();
+                        dropped.incrementAndGet();
+                    }
+                    break;
+                case DROP_NEWEST:
+                    dropped.incrementAndGet();
+                    return false;
+                default:
+                    rejected.incrementAndGet();
+                    throw new BusyException("Mailbox is full");
+            }
+        }
+    }
+
+    private void awaitSpace() {
+        synchronized (space) {
+            blocked.incrementAndGet();
+            try {
+                while (depth.get() >= capacity) {
+                    space.wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                rejected.incrementAndGet();
+                throw new BusyException("Interrupted while waiting for Mailbox");
+            } finally {
+                blocked.decrementAndGet();
+            }
+        }
+    }
+
+    private void schedule() {
+        if (!scheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(drain);
+        } catch (RejectedExecutionException e) {
+            scheduled.set(false);
+            throw e;
+        }
+    }
+
+    private void drain() {
+        drains.incrementAndGet();
+
+        int count = 0;
+        int limit = batchSize;
+        while (count < limit) {
+            Message message = queue.poll();
+            if (message == null) {
+                break;
+            }
+            depth.decrementAndGet();
+            count++;
+            try {
+                zell.receive(message);
+            } catch (Exception e) {
+                logError(e, message);
+            }
+        }
+        processed.addAndGet(count);
+        if (blocked.get() > 0) {
+            synchronized (space) {
+                space.notifyAll();
+            }
+        }
+
+        scheduled.set(false);
+        if (!queue.isEmpty()) {
+            schedule();
+        }
+    }
+
+    private void recordDepth(int current) {
+        int max = maxDepth.get();
+        while (current > max && !maxDepth.compareAndSet(max, current)) {
+            max = maxDepth.get();
+        }
+    }
+
+    protected void logError(Exception e, Message message) {
+        System.err.println("Caught\n  " + e + "\n  while receiving\n  " + message);
+        e.printStackTrace();
+    }
+}
@@ -2,7 +2,7 @@ package org.zells.dish.delivery;
 
 import org.zells.dish.delivery.messages.NullMessage;
 
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.Set;
 
 public abstract class Message {
@@ -32,17 +32,21 @@ public abstract class Message {
     }
 
     public Set<String> keys() {
-        return new HashSet<String>();
+        return Collections.emptySet();
     }
 
     public Message read(String key) {
-        return new NullMessage();
+        return NullMessage.INSTANCE;
     }
 
     public Message read(int key) {
         return read(Integer.toString(key));
     }
 
+    public Message freeze() {
+        return this;
+    }
+
     @Override
     public String toString() {
         return asString();
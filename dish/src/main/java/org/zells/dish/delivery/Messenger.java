@@ -1,67 +1,138 @@
 package org.zells.dish.delivery;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class Messenger {
 
     private static final int DEFAULT_TIME_OUT_SEC = 5;
 
-    private boolean running;
-    private Failed failureHandler;
-    private Delivered successHandler;
-    private boolean wasDelivered = false;
+    private static final int RUNNING = 0;
+    private static final int DELIVERED = 1;
+    private static final int FAILED = 2;
+
+    private int state = RUNNING;
+    private boolean settled = false;
     private Exception hasFailedWith;
+    private Handler handlers;
+
+    public Messenger() {
+    }
 
     public Messenger(final Runnable deliverer) {
-        running = true;
-        new Thread() {
-            @Override
-            public void run() {
-                try {
-                    deliverer.run();
-                    delivered();
-                } catch (Exception e) {
-                    failed(e);
-                }
-                running = false;
-            }
-        }.start();
+        this(deliverer, DeliveryExecutors.shared());
     }
 
-    private void delivered() {
-        if (successHandler != null) {
-            successHandler.then();
+    public Messenger(final Runnable deliverer, Executor executor) {
+        try {
+            executor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        deliverer.run();
+                        delivered();
+                    } catch (Exception e) {
+                        failed(e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            failed(e);
         }
-        wasDelivered = true;
     }
 
-    private void failed(Exception e) {
-        if (failureHandler != null) {
-            failureHandler.then(e);
+    public boolean delivered() {
+        return settle(DELIVERED, null);
+    }
+
+    public boolean failed(Exception e) {
+        return settle(FAILED, e);
+    }
+
+    private boolean settle(int outcome, Exception e) {
+        Handler pending;
+        synchronized (this) {
+            if (state != RUNNING) {
+                return false;
+            }
+            state = outcome;
+            hasFailedWith = e;
+            pending = handlers;
+            handlers = null;
         }
-        hasFailedWith = e;
+
+        try {
+            for (Handler handler = pending; handler != null; handler = handler.next) {
+                handler.fire(outcome, e);
+            }
+        } finally {
+            synchronized (this) {
+                settled = true;
+                notifyAll();
+            }
+        }
+        return true;
     }
 
     public Messenger when(Failed failed) {
-        failureHandler = failed;
-        if (hasFailedWith != null) {
-            failed.then(hasFailedWith);
-        }
-        return this;
+        return addHandler(new Handler(failed, null));
     }
 
     public Messenger when(Delivered delivered) {
-        successHandler = delivered;
-        if (wasDelivered) {
-            delivered.then();
+        return addHandler(new Handler(null, delivered));
+    }
+
+    private Messenger addHandler(Handler handler) {
+        int outcome;
+        Exception e;
+        synchronized (this) {
+            if (state == RUNNING) {
+                if (handlers == null) {
+                    handlers = handler;
+                } else {
+                    handlers.append(handler);
+                }
+                return this;
+            }
+            outcome = state;
+            e = hasFailedWith;
         }
+
+        handler.fire(outcome, e);
         return this;
     }
 
+    synchronized public boolean isDone() {
+        return state != RUNNING;
+    }
+
+    synchronized public boolean wasDelivered() {
+        return state == DELIVERED;
+    }
+
+    synchronized public Exception getFailure() {
+        return hasFailedWith;
+    }
+
     public Messenger sync(int timeOutSec) {
-        long start = System.currentTimeMillis();
-        while (running) {
-            Thread.yield();
-            if (System.currentTimeMillis() - start > timeOutSec * 1000) {
-                throw new RuntimeException("Message delivery timed out");
+        long deadline = System.currentTimeMillis() + timeOutSec * 1000L;
+        synchronized (this) {
+            while (!settled) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    throw new RuntimeException("Message delivery timed out");
+                }
+                try {
+                    wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while waiting for delivery", e);
+                }
             }
         }
         return this;
@@ -71,6 +142,114 @@ public class Messenger {
         return sync(DEFAULT_TIME_OUT_SEC);
     }
 
+    public Messenger timeout(int timeOutSec) {
+        final ScheduledFuture<?> timer = DeliveryExecutors.scheduler().schedule(new Runnable() {
+            public void run() {
+                failed(new TimeoutException("Message delivery timed out"));
+            }
+        }, timeOutSec, TimeUnit.SECONDS);
+
+        return when(new Delivered() {
+            public void then() {
+                timer.cancel(false);
+            }
+        }).when(new Failed() {
+            public void then(Exception e) {
+                timer.cancel(false);
+            }
+        });
+    }
+
+    public Messenger thenSend(final Next next) {
+        final Messenger following = new Messenger();
+
+        when(new Delivered() {
+            public void then() {
+                try {
+                    following.follow(next.send());
+                } catch (Exception e) {
+                    following.failed(e);
+                }
+            }
+        });
+        when(new Failed() {
+            public void then(Exception e) {
+                following.failed(e);
+            }
+        });
+
+        return following;
+    }
+
+    public Messenger follow(Messenger messenger) {
+        messenger.when(new Delivered() {
+            public void then() {
+                delivered();
+            }
+        }).when(new Failed() {
+            public void then(Exception e) {
+                failed(e);
+            }
+        });
+        return this;
+    }
+
+    public static Messenger allOf(Messenger... messengers) {
+        return allOf(Arrays.asList(messengers));
+    }
+
+    public static Messenger allOf(Collection<Messenger> messengers) {
+        final Messenger all = new Messenger();
+        final AtomicInteger remaining = new AtomicInteger(messengers.size());
+
+        if (messengers.isEmpty()) {
+            all.delivered();
+        }
+
+        for (Messenger messenger : messengers) {
+            messenger.when(new Delivered() {
+                public void then() {
+                    if (remaining.decrementAndGet() == 0) {
+                        all.delivered();
+                    }
+                }
+            }).when(new Failed() {
+                public void then(Exception e) {
+                    all.failed(e);
+                }
+            });
+        }
+
+        return all;
+    }
+
+    public static Messenger allSettled(Collection<Messenger> messengers) {
+        final Messenger all = new Messenger();
+        final AtomicInteger remaining = new AtomicInteger(messengers.size());
+
+        if (messengers.isEmpty()) {
+            all.delivered();
+        }
+
+        for (Messenger messenger : messengers) {
+            messenger.when(new Delivered() {
+                public void then() {
+                    if (remaining.decrementAndGet() == 0) {
+                        all.delivered();
+                    }
+                }
+            }).when(new Failed() {
+                public void then(Exception e) {
+                    if (remaining.decrementAndGet() == 0) {
+                        all.delivered();
+                    }
+                }
+            });
+        }
+
+        return all;
+    }
+
     public interface Failed {
         void then(Exception e);
     }
@@ -78,4 +257,36 @@ public class Messenger {
     public interface Delivered {
         void then();
     }
+
+    public interface Next {
+        Messenger send();
+    }
+
+    private static class Handler {
+
+        private final Failed failed;
+        private final Delivered delivered;
+        private Handler next;
+
+        Handler(Failed failed, Delivered delivered) {
+            this.failed = failed;
+            this.delivered = delivered;
+        }
+
+        void append(Handler handler) {
+            Handler last = this;
+            while (last.next != null) {
+                last = last.next;
+            }
+            last.next = handler;
+        }
+
+        void fire(int outcome, Exception e) {
+            if (outcome == DELIVERED && delivered != null) {
+                delivered.then();
+            } else if (outcome == FAILED && failed != null) {
+                failed.then(e);
+            }
+        }
+    }
 }
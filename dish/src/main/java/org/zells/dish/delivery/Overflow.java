@@ -0,0 +1,8 @@
+package org.zells.dish.delivery;
+
+public enum Overflow {
+    BLOCK,
+    DROP_OLDEST,
+    DROP_NEWEST,
+    FAIL
+}
@@ -9,49 +9,88 @@ import java.util.Arrays;
 
 public class BinaryMessage extends Message {
 
-    private byte[] value;
+    private final byte[] buffer;
+    private final int offset;
+    private final int length;
 
     public BinaryMessage(byte[] value) {
-        this.value = value;
+        this(value, 0, value.length);
+    }
+
+    public BinaryMessage(byte[] buffer, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > buffer.length) {
+            throw new IndexOutOfBoundsException("Invalid view: " + offset + "+" + length + " of " + buffer.length);
+        }
+
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
     }
 
     @Override
     public String asString() {
-        return ByteArray.toHexString(value);
+        return ByteArray.toHexString(asBytes());
     }
 
     @Override
     public boolean isTrue() {
-        return value.length != 0;
+        return length != 0;
     }
 
     @Override
     public int asInteger() {
-        if (value.length == 0) {
+        if (length == 0) {
             return 0;
         }
-        return ByteBuffer.wrap(value).getShort();
+        return asByteBuffer().getShort();
     }
 
     @Override
     public byte[] asBytes() {
-        return value;
+        if (offset == 0 && length == buffer.length) {
+            return buffer;
+        }
+        return Arrays.copyOfRange(buffer, offset, offset + length);
+    }
+
+    public ByteBuffer asByteBuffer() {
+        return ByteBuffer.wrap(buffer, offset, length).slice();
+    }
+
+    public int getLength() {
+        return length;
     }
 
     @Override
     public Address asAddress() {
-        return Address.fromBytes(value);
+        return Address.fromBytes(asBytes());
     }
 
     @Override
     public int hashCode() {
-        return Arrays.hashCode(value);
+        int hash = 1;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + buffer[i];
+        }
+        return hash;
     }
 
     @Override
     public boolean equals(Object obj) {
-        return obj instanceof BinaryMessage
-                && Arrays.equals(value, ((BinaryMessage) obj).value);
+        if (!(obj instanceof BinaryMessage)) {
+            return false;
+        }
+
+        BinaryMessage other = (BinaryMessage) obj;
+        if (length != other.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer[offset + i] != other.buffer[other.offset + i]) {
+                return false;
+            }
+        }
+        return true;
     }
 
     public static BinaryMessage fromString(String hexString) {
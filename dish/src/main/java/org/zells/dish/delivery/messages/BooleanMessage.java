@@ -5,12 +5,19 @@ import org.zells.dish.delivery.Message;
 
 public class BooleanMessage extends Message {
 
-    private boolean value;
+    public static final BooleanMessage TRUE = new BooleanMessage(true);
+    public static final BooleanMessage FALSE = new BooleanMessage(false);
+
+    private final boolean value;
 
     public BooleanMessage(boolean value) {
         this.value = value;
     }
 
+    public static BooleanMessage valueOf(boolean value) {
+        return value ? TRUE : FALSE;
+    }
+
     @Override
     public String asString() {
         return value ? "true" : "";
@@ -2,28 +2,105 @@ package org.zells.dish.delivery.messages;
 
 import org.zells.dish.delivery.Message;
 
+import java.util.AbstractSet;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 public class CompositeMessage extends Message {
 
-    private Map<String, Message> map = new HashMap<String, Message>();
+    private static final Message[] EMPTY = new Message[0];
+    private static final String[] INDEX_KEYS = new String[256];
+
+    static {
+        for (int i = 0; i < INDEX_KEYS.length; i++) {
+            INDEX_KEYS[i] = Integer.toString(i);
+        }
+    }
+
+    private Message[] elements = EMPTY;
+    private int size = 0;
+    private Map<String, Message> named;
+    private Keys keys;
+    private boolean frozen = false;
+    private int hash = 0;
 
     public CompositeMessage(Message... messages) {
-        int i = 0;
-        for (Message message : messages) {
-            put(i++, message);
+        if (messages.length > 0) {
+            elements = Arrays.copyOf(messages, messages.length);
+            size = messages.length;
+            for (Message message : messages) {
+                share(message);
+            }
         }
     }
 
     public CompositeMessage put(String key, Message value) {
-        map.put(key, value);
+        int index = toIndex(key);
+        if (index >= 0) {
+            return put(index, value);
+        }
+
+        checkNotFrozen();
+        if (named == null) {
+            named = new HashMap<String, Message>();
+        }
+        named.put(key, share(value));
+        hash = 0;
         return this;
     }
 
     public CompositeMessage put(int key, Message value) {
-        return put(Integer.toString(key), value);
+        checkNotFrozen();
+        share(value);
+        hash = 0;
+        if (key >= 0 && key < size) {
+            elements[key] = value;
+        } else if (key == size) {
+            append(value);
+            while (named != null && named.containsKey(keyOf(size))) {
+                append(named.remove(keyOf(size)));
+            }
+        } else {
+            if (named == null) {
+                named = new HashMap<String, Message>();
+            }
+            named.put(keyOf(key), value);
+        }
+        return this;
+    }
+
+    public CompositeMessage with(String key, Message value) {
+        int index = toIndex(key);
+        if (index >= 0) {
+            return with(index, value);
+        }
+        return derive(key, value, copy().put(key, value));
+    }
+
+    public CompositeMessage with(int key, Message value) {
+        return derive(keyOf(key), value, copy().put(key, value));
+    }
+
+    @Override
+    public CompositeMessage freeze() {
+        frozen = true;
+        return this;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public boolean isList() {
+        return named == null || named.isEmpty();
     }
 
     @Override
@@ -47,25 +124,192 @@ public class CompositeMessage extends Message {
 
     @Override
     public Set<String> keys() {
-        return map.keySet();
+        if (keys == null) {
+            keys = new Keys();
+        }
+        return keys;
     }
 
     @Override
     public Message read(String key) {
-        if (!map.containsKey(key)) {
-            return new NullMessage();
+        int index = toIndex(key);
+        if (index >= 0) {
+            return read(index);
         }
-        return map.get(key);
+        if (named == null || !named.containsKey(key)) {
+            return NullMessage.INSTANCE;
+        }
+        return named.get(key);
+    }
+
+    @Override
+    public Message read(int key) {
+        if (key >= 0 && key < size) {
+            return elements[key];
+        }
+        if (named == null || !named.containsKey(keyOf(key))) {
+            return NullMessage.INSTANCE;
+        }
+        return named.get(keyOf(key));
     }
 
     @Override
     public int hashCode() {
-        return map.hashCode();
+        int hash = this.hash;
+        if (hash == 0) {
+            for (String key : keys()) {
+                hash += entryHash(key, read(key));
+            }
+            this.hash = hash;
+        }
+        return hash;
     }
 
     @Override
     public boolean equals(Object obj) {
-        return obj instanceof CompositeMessage
-                && map.equals(((CompositeMessage) obj).map);
+        if (obj == this) {
+            return true;
+        }
+        if (obj instanceof CompositeMessage && hash != 0 && ((CompositeMessage) obj).hash != 0
+                && hash != ((CompositeMessage) obj).hash) {
+            return false;
+        }
+        if (obj != null && getClass() == CompositeMessage.class && obj.getClass() == CompositeMessage.class) {
+            return equalsEager((CompositeMessage) obj);
+        }
+        if (!(obj instanceof CompositeMessage) || !keys().equals(((CompositeMessage) obj).keys())) {
+            return false;
+        }
+        for (String key : keys()) {
+            if (!read(key).equals(((CompositeMessage) obj).read(key))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean equalsEager(CompositeMessage other) {
+        if (size != other.size || isList() != other.isList()) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (elements[i] == null ? other.elements[i] != null : !elements[i].equals(other.elements[i])) {
+                return false;
+            }
+        }
+        return isList() || named.equals(other.named);
+    }
+
+    protected void checkNotFrozen() {
+        if (frozen) {
+            throw new IllegalStateException("Message is shared and cannot be modified");
+        }
+    }
+
+    private CompositeMessage copy() {
+        CompositeMessage copy = new CompositeMessage();
+        if (getClass() != CompositeMessage.class) {
+            for (String key : keys()) {
+                copy.put(key, read(key));
+            }
+            return copy;
+        }
+
+        copy.elements = Arrays.copyOf(elements, size);
+        copy.size = size;
+        if (named != null) {
+            copy.named = new HashMap<String, Message>(named);
+        }
+        return copy;
+    }
+
+    private CompositeMessage derive(String key, Message value, CompositeMessage derived) {
+        if (hash != 0) {
+            int replaced = keys().contains(key) ? entryHash(key, read(key)) : 0;
+            derived.hash = hash - replaced + entryHash(key, value);
+        }
+        return derived;
+    }
+
+    private static int entryHash(String key, Message value) {
+        return key.hashCode() ^ (value == null ? 0 : value.hashCode());
+    }
+
+    private static Message share(Message value) {
+        return value == null ? null : value.freeze();
+    }
+
+    private void append(Message value) {
+        if (size == elements.length) {
+            elements = Arrays.copyOf(elements, Math.max(4, size * 2));
+        }
+        elements[size++] = value;
+    }
+
+    public static String keyOf(int index) {
+        return index >= 0 && index < INDEX_KEYS.length ? INDEX_KEYS[index] : Integer.toString(index);
+    }
+
+    private static int toIndex(String key) {
+        int length = key.length();
+        if (length == 0 || length > 9 || (length > 1 && key.charAt(0) == '0')) {
+            return -1;
+        }
+
+        int index = 0;
+        for (int i = 0; i < length; i++) {
+            char c = key.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            index = index * 10 + (c - '0');
+        }
+        return index;
+    }
+
+    private class Keys extends AbstractSet<String> {
+
+        @Override
+        public Iterator<String> iterator() {
+            final Iterator<String> names = named == null ? null : named.keySet().iterator();
+            return new Iterator<String>() {
+                private int next = 0;
+
+                public boolean hasNext() {
+                    return next < size || (names != null && names.hasNext());
+                }
+
+                public String next() {
+                    if (next < size) {
+                        return keyOf(next++);
+                    }
+                    if (names == null) {
+                        throw new NoSuchElementException();
+                    }
+                    return names.next();
+                }
+
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return size + (named == null ? 0 : named.size());
+        }
+
+        @Override
+        public boolean contains(Object key) {
+            if (!(key instanceof String)) {
+                return false;
+            }
+            int index = toIndex((String) key);
+            if (index >= 0 && index < size) {
+                return true;
+            }
+            return named != null && named.containsKey(key);
+        }
     }
 }
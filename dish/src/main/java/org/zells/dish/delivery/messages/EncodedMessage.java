@@ -0,0 +1,122 @@
+package org.zells.dish.delivery.messages;
+
+import org.zells.dish.delivery.Address;
+import org.zells.dish.delivery.Message;
+
+import java.nio.ByteBuffer;
+import java.util.Set;
+
+public class EncodedMessage extends Message {
+
+    private final int format;
+    private final byte[] buffer;
+    private final int offset;
+    private final int length;
+    private final Decoder decoder;
+
+    private volatile Message decoded;
+
+    public EncodedMessage(int format, byte[] buffer, int offset, int length, Decoder decoder) {
+        if (offset < 0 || length < 0 || offset + length > buffer.length) {
+            throw new IndexOutOfBoundsException("Invalid view: " + offset + "+" + length + " of " + buffer.length);
+        }
+
+        this.format = format;
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+        this.decoder = decoder;
+    }
+
+    public static Message decoded(Message message) {
+        return message instanceof EncodedMessage ? ((EncodedMessage) message).decode() : message;
+    }
+
+    public int getFormat() {
+        return format;
+    }
+
+    public ByteBuffer getEncoded() {
+        return ByteBuffer.wrap(buffer, offset, length).slice();
+    }
+
+    public boolean isDecoded() {
+        return decoded != null;
+    }
+
+    public Message decode() {
+        Message message = decoded;
+        if (message == null) {
+            message = decoder.decode(buffer, offset, length).freeze();
+            decoded = message;
+        }
+        return message;
+    }
+
+    @Override
+    public boolean isNull() {
+        return decode().isNull();
+    }
+
+    @Override
+    public String asString() {
+        return decode().asString();
+    }
+
+    @Override
+    public boolean isTrue() {
+        return decode().isTrue();
+    }
+
+    @Override
+    public int asInteger() {
+        return decode().asInteger();
+    }
+
+    @Override
+    public byte[] asBytes() {
+        return decode().asBytes();
+    }
+
+    @Override
+    public Address asAddress() {
+        return decode().asAddress();
+    }
+
+    @Override
+    public Set<String> keys() {
+        return decode().keys();
+    }
+
+    @Override
+    public Message read(String key) {
+        return decode().read(key);
+    }
+
+    @Override
+    public Message read(int key) {
+        return decode().read(key);
+    }
+
+    @Override
+    public String toString() {
+        return decode().toString();
+    }
+
+    @Override
+    public int hashCode() {
+        return decode().hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof EncodedMessage) {
+            obj = ((EncodedMessage) obj).decode();
+        }
+        return decode().equals(obj);
+    }
+
+    public interface Decoder {
+        Message decode(byte[] buffer, int offset, int length);
+    }
+}
@@ -6,12 +6,29 @@ import java.nio.ByteBuffer;
 
 public class IntegerMessage extends Message {
 
-    private int value;
+    private static final int CACHE_LOW = -128;
+    private static final int CACHE_HIGH = 1024;
+    private static final IntegerMessage[] cache = new IntegerMessage[CACHE_HIGH - CACHE_LOW + 1];
+
+    static {
+        for (int i = 0; i < cache.length; i++) {
+            cache[i] = new IntegerMessage(CACHE_LOW + i);
+        }
+    }
+
+    private final int value;
 
     public IntegerMessage(int value) {
         this.value = value;
     }
 
+    public static IntegerMessage valueOf(int value) {
+        if (value >= CACHE_LOW && value <= CACHE_HIGH) {
+            return cache[value - CACHE_LOW];
+        }
+        return new IntegerMessage(value);
+    }
+
     @Override
     public String asString() {
         return Integer.toString(value);
@@ -4,6 +4,8 @@ import org.zells.dish.delivery.Message;
 
 public class NullMessage extends Message {
 
+    public static final NullMessage INSTANCE = new NullMessage();
+
     @Override
     public boolean isNull() {
         return true;
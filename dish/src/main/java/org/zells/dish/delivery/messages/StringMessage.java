@@ -4,7 +4,9 @@ import org.zells.dish.delivery.Message;
 
 public class StringMessage extends Message {
 
-    private String value;
+    public static final StringMessage EMPTY = new StringMessage("");
+
+    private final String value;
 
     public StringMessage(String value) {
         this.value = value;
@@ -1,30 +1,351 @@
 package org.zells.dish.network;
 
+import org.zells.dish.delivery.BusyException;
+import org.zells.dish.delivery.DeliveryExecutors;
 import org.zells.dish.delivery.Delivery;
+import org.zells.dish.delivery.Messenger;
+import org.zells.dish.delivery.Overflow;
+import org.zells.dish.delivery.ReceiverNotFoundException;
+import org.zells.dish.network.connecting.AsyncConnection;
 import org.zells.dish.network.connecting.Connection;
 import org.zells.dish.network.connecting.Packet;
+import org.zells.dish.network.encoding.CompressingEncoding;
+import org.zells.dish.network.encoding.CompressionStats;
+import org.zells.dish.network.encoding.Encoding;
 import org.zells.dish.network.encoding.EncodingRepository;
 import org.zells.dish.network.signals.*;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class Peer {
 
+    public static final int DEFAULT_WINDOW = 256;
+    public static final int DEFAULT_QUEUE_CAPACITY = 4096;
+    public static final int DEFAULT_LINGER_MILLIS = 1;
+
     private Connection connection;
     private EncodingRepository encodings;
+    private Executor executor;
+    private volatile Encoding encoding;
+    private CompressionStats compression = new CompressionStats();
+
+    private volatile int window = DEFAULT_WINDOW;
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    private Overflow overflow = Overflow.FAIL;
+    private int inFlight = 0;
+    private int blocked = 0;
+    private Queue<Transmission> waiting = new LinkedList<Transmission>();
+    private AtomicLong drops = new AtomicLong();
+
+    private volatile int batchSize = 1;
+    private volatile long lingerMillis = DEFAULT_LINGER_MILLIS;
+    private volatile boolean batchingSupported = true;
+    private final Object batching = new Object();
+    private Batch gathering;
 
     public Peer(EncodingRepository encodings, Connection connection) {
+        this(encodings, connection, DeliveryExecutors.shared());
+    }
+
+    public Peer(EncodingRepository encodings, Connection connection, Executor executor) {
         this.connection = connection;
         this.encodings = encodings;
+        this.executor = executor;
+        setEncoding(encodings.getDefault());
+    }
+
+    public Connection getConnection() {
+        return connection;
+    }
+
+    public Encoding getEncoding() {
+        return encoding;
+    }
+
+    public Peer setEncoding(Encoding encoding) {
+        if (encoding instanceof CompressingEncoding) {
+            encoding = ((CompressingEncoding) encoding).withStats(compression);
+        }
+        this.encoding = encoding;
+        return this;
+    }
+
+    public CompressionStats getCompressionStats() {
+        return compression;
+    }
+
+    public Peer setWindow(int window) {
+        this.window = window;
+        return this;
+    }
+
+    synchronized public Peer setQueueCapacity(int queueCapacity) {
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be positive: " + queueCapacity);
+        }
+        this.queueCapacity = queueCapacity;
+        return this;
+    }
+
+    synchronized public Peer setOverflow(Overflow overflow) {
+        this.overflow = overflow;
+        return this;
+    }
+
+    public Peer setBatching(int batchSize, long lingerMillis) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.batchSize = batchSize;
+        this.lingerMillis = lingerMillis;
+        return this;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public Peer setBatchingSupported(boolean batchingSupported) {
+        this.batchingSupported = batchingSupported;
+        return this;
+    }
+
+    public boolean isBatchingSupported() {
+        return batchingSupported;
+    }
+
+    synchronized public int getInFlight() {
+        return inFlight;
     }
 
-    public boolean deliver(Delivery delivery) {
-        Signal response = signal(new DeliverSignal(delivery));
-        return response instanceof OkSignal;
+    synchronized public int getQueued() {
+        return waiting.size();
+    }
+
+    public long getDropped() {
+        return drops.get();
+    }
+
+    public Messenger deliver(Delivery delivery) {
+        Messenger messenger = new Messenger();
+
+        if (!(connection instanceof AsyncConnection)) {
+            Signal response = signal(new DeliverSignal(delivery));
+            settle(messenger, delivery, response);
+            return messenger;
+        }
+
+        if (batchSize > 1 && batchingSupported) {
+            gather(delivery, messenger);
+        } else {
+            transmit(delivery, messenger);
+        }
+        return messenger;
+    }
+
+    public List<Messenger> deliverAll(List<Delivery> deliveries) {
+        if (!(connection instanceof AsyncConnection) || !batchingSupported) {
+            List<Messenger> messengers = new ArrayList<Messenger>(deliveries.size());
+            for (Delivery delivery : deliveries) {
+                messengers.add(deliver(delivery));
+            }
+            return messengers;
+        }
+
+        Batch batch = new Batch();
+        for (Delivery delivery : deliveries) {
+            batch.deliveries.add(delivery);
+            batch.messengers.add(new Messenger());
+        }
+        if (!deliveries.isEmpty()) {
+            transmit(batch);
+        }
+        return batch.messengers;
+    }
+
+    private void transmit(Delivery delivery, Messenger messenger) {
+        Packet packet;
+        try {
+            packet = encodings.encode(new DeliverSignal(delivery), encoding);
+        } catch (Exception e) {
+            messenger.failed(e);
+            return;
+        }
+
+        dispatch(new Transmission(packet, Collections.singletonList(messenger), Collections.singletonList(delivery), false),
+                delivery.getHops() == 0);
+    }
+
+    private void gather(Delivery delivery, Messenger messenger) {
+        Batch full = null;
+        synchronized (batching) {
+            if (gathering == null) {
+                gathering = new Batch();
+                gathering.timer = DeliveryExecutors.scheduler().schedule(
+                        new Flush(gathering), lingerMillis, TimeUnit.MILLISECONDS);
+            }
+            gathering.deliveries.add(delivery);
+            gathering.messengers.add(messenger);
+            if (gathering.deliveries.size() >= batchSize) {
+                full = gathering;
+                gathering = null;
+            }
+        }
+        if (full != null) {
+            full.timer.cancel(false);
+            transmit(full);
+        }
+    }
+
+    private void transmit(Batch batch) {
+        if (batch.deliveries.size() == 1) {
+            transmit(batch.deliveries.get(0), batch.messengers.get(0));
+            return;
+        }
+
+        Transmission transmission = new Transmission(null, batch.messengers, batch.deliveries, true);
+        try {
+            transmission.packet = encodings.encode(batched(batch.deliveries), encoding);
+        } catch (Exception e) {
+            transmission.fail(e);
+            return;
+        }
+        dispatch(transmission, mayBlock(batch.deliveries));
+    }
+
+    private Signal batched(List<Delivery> deliveries) {
+        if (MulticastSignal.isPossible(deliveries)) {
+            return new MulticastSignal(deliveries);
+        }
+
+        List<Signal> signals = new ArrayList<Signal>(deliveries.size());
+        for (Delivery delivery : deliveries) {
+            signals.add(new DeliverSignal(delivery));
+        }
+        return new BatchSignal(signals);
+    }
+
+    private boolean mayBlock(List<Delivery> deliveries) {
+        for (Delivery delivery : deliveries) {
+            if (delivery.getHops() > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void dispatch(Transmission transmission, boolean mayBlock) {
+        Transmission next = null;
+        Transmission dropped = null;
+        synchronized (this) {
+            while (next == null && dropped == null) {
+                if (inFlight < window) {
+                    inFlight++;
+                    next = transmission;
+                } else if (waiting.size() < queueCapacity) {
+                    waiting.add(transmission);
+                    return;
+                } else if (overflow == Overflow.BLOCK && mayBlock) {
+                    if (!awaitSpace()) {
+                        dropped = transmission;
+                    }
+                } else if (overflow == Overflow.DROP_OLDEST) {
+                    dropped = waiting.poll();
+                    waiting.add(transmission);
+                } else {
+                    dropped = transmission;
+                }
+            }
+        }
+        if (dropped != null) {
+            dropped.drop();
+        }
+        if (next != null) {
+            proceed(next);
+        }
+    }
+
+    private boolean awaitSpace() {
+        blocked++;
+        try {
+            wait();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            blocked--;
+        }
+    }
+
+    private void done() {
+        proceed(next());
+    }
+
+    private void proceed(Transmission next) {
+        while (next != null) {
+            if (next.isSettled()) {
+                next.packet.release();
+            } else if (!next.send()) {
+                return;
+            }
+            next = next();
+        }
+    }
+
+    synchronized private Transmission next() {
+        Transmission next = waiting.poll();
+        if (next == null) {
+            inFlight--;
+        } else if (blocked > 0) {
+            notifyAll();
+        }
+        return next;
+    }
+
+    private void complete(Transmission transmission, Runnable settling) {
+        try {
+            executor.execute(settling);
+        } catch (RejectedExecutionException e) {
+            transmission.fail(e);
+        }
+    }
+
+    private void settle(Messenger messenger, Delivery delivery, Signal response) {
+        if (response instanceof OkSignal) {
+            messenger.delivered();
+        } else if (response instanceof FailedSignal && ((FailedSignal) response).isNotFound()) {
+            messenger.failed(new ReceiverNotFoundException(delivery));
+        } else if (response instanceof FailedSignal && ((FailedSignal) response).isBusy()) {
+            messenger.failed(new BusyException("Peer is busy"));
+        } else if (response instanceof FailedSignal) {
+            messenger.failed(new IOException(((FailedSignal) response).getCause()));
+        } else {
+            messenger.failed(new IOException("Unexpected response: " + response.getClass()));
+        }
     }
 
     public void join() {
-        signal(new JoinSignal());
+        Signal response = signal(new JoinSignal(encodings.getTags()));
+        if (!(response instanceof OkSignal)) {
+            return;
+        }
+
+        Integer tag = ((OkSignal) response).getEncoding();
+        batchingSupported = tag != null;
+        if (tag != null && encodings.get(tag) != null) {
+            setEncoding(encodings.get(tag));
+        }
     }
 
     public void leave() {
@@ -33,11 +354,164 @@ public class Peer {
 
     private Signal signal(Signal signal) {
         try {
-            Packet packet = encodings.encode(signal);
+            Packet packet = encodings.encode(signal, encoding);
             Packet response = connection.transmit(packet);
-            return encodings.decode(response);
+            try {
+                return encodings.decode(response);
+            } finally {
+                response.release();
+            }
         } catch (IOException e) {
-            return new FailedSignal(e.getMessage());
+            return FailedSignal.causedBy(e);
+        }
+    }
+
+    private class Transmission {
+
+        private Packet packet;
+        private final List<Messenger> messengers;
+        private final List<Delivery> deliveries;
+        private final boolean batched;
+        private boolean sending;
+        private Runnable finished;
+
+        Transmission(Packet packet, List<Messenger> messengers, List<Delivery> deliveries, boolean batched) {
+            this.packet = packet;
+            this.messengers = messengers;
+            this.deliveries = deliveries;
+            this.batched = batched;
+        }
+
+        boolean send() {
+            synchronized (this) {
+                sending = true;
+            }
+            ((AsyncConnection) connection).transmit(packet, new AsyncConnection.Callback() {
+                public void received(final Packet response) {
+                    finish(new Runnable() {
+                        public void run() {
+                            try {
+                                settle(encodings.decode(response));
+                            } catch (Exception e) {
+                                fail(e);
+                            } finally {
+                                response.release();
+                            }
+                        }
+                    });
+                }
+
+                public void failed(final Exception e) {
+                    finish(new Runnable() {
+                        public void run() {
+                            fail(e);
+                        }
+                    });
+                }
+            });
+
+            Runnable settling;
+            synchronized (this) {
+                sending = false;
+                settling = finished;
+            }
+            if (settling == null) {
+                return false;
+            }
+            complete(this, settling);
+            return true;
+        }
+
+        private void finish(Runnable settling) {
+            synchronized (this) {
+                if (sending) {
+                    finished = settling;
+                    return;
+                }
+            }
+            done();
+            complete(this, settling);
+        }
+
+        private boolean isSettled() {
+            for (Messenger messenger : messengers) {
+                if (!messenger.isDone()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void settle(Signal response) {
+            if (!batched) {
+                Peer.this.settle(messengers.get(0), deliveries.get(0), response);
+            } else if (response instanceof BatchSignal
+                    && ((BatchSignal) response).getSignals().size() == messengers.size()) {
+                List<Signal> responses = ((BatchSignal) response).getSignals();
+                for (int i = 0; i < messengers.size(); i++) {
+                    Peer.this.settle(messengers.get(i), deliveries.get(i), responses.get(i));
+                }
+            } else if (response instanceof FailedSignal && (((FailedSignal) response).isUnsupported("BATCH")
+                    || ((FailedSignal) response).isUnsupported("MULTICAST"))) {
+                batchingSupported = false;
+                for (int i = 0; i < messengers.size(); i++) {
+                    transmit(deliveries.get(i), messengers.get(i));
+                }
+            } else if (response instanceof FailedSignal) {
+                for (int i = 0; i < messengers.size(); i++) {
+                    Peer.this.settle(messengers.get(i), deliveries.get(i), response);
+                }
+            } else {
+                fail(new IOException("Unexpected response to batch: " + response.getClass()));
+            }
+        }
+
+        void fail(Exception e) {
+            for (Messenger messenger : messengers) {
+                messenger.failed(e);
+            }
+        }
+
+        void drop() {
+            drops.addAndGet(messengers.size());
+            packet.release();
+            fail(new BusyException("Queue of Peer is full"));
+        }
+    }
+
+    private class Batch {
+
+        private final List<Delivery> deliveries = new ArrayList<Delivery>();
+        private final List<Messenger> messengers = new ArrayList<Messenger>();
+        private ScheduledFuture<?> timer;
+    }
+
+    private class Flush implements Runnable {
+
+        private final Batch batch;
+
+        Flush(Batch batch) {
+            this.batch = batch;
+        }
+
+        public void run() {
+            synchronized (batching) {
+                if (gathering != batch) {
+                    return;
+                }
+                gathering = null;
+            }
+            try {
+                executor.execute(new Runnable() {
+                    public void run() {
+                        transmit(batch);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                for (Messenger messenger : batch.messengers) {
+                    messenger.failed(e);
+                }
+            }
         }
     }
 }
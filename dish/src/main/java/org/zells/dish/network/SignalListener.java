@@ -1,13 +1,19 @@
 package org.zells.dish.network;
 
 import org.zells.dish.delivery.Delivery;
+import org.zells.dish.delivery.Messenger;
 import org.zells.dish.network.connecting.Connection;
+import org.zells.dish.network.encoding.Encoding;
+
+import java.util.List;
 
 public interface SignalListener {
 
     boolean onDeliver(Delivery delivery);
 
-    boolean onJoin(Connection connection);
+    List<Messenger> onDeliverAll(List<Delivery> deliveries);
+
+    boolean onJoin(Connection connection, Encoding encoding, boolean negotiated);
 
     boolean onLeave(Connection connection);
 }
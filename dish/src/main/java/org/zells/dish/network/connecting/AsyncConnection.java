@@ -0,0 +1,13 @@
+package org.zells.dish.network.connecting;
+
+public interface AsyncConnection extends Connection {
+
+    void transmit(Packet packet, Callback callback);
+
+    interface Callback {
+
+        void received(Packet response);
+
+        void failed(Exception e);
+    }
+}
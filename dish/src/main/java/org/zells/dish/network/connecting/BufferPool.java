@@ -0,0 +1,116 @@
+package org.zells.dish.network.connecting;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class BufferPool {
+
+    public static final int SMALLEST_SIZE_CLASS = 256;
+    public static final int DEFAULT_LARGEST_SIZE_CLASS = 1024 * 1024;
+    public static final int DEFAULT_BUFFERS_PER_SIZE_CLASS = 64;
+
+    private final boolean direct;
+    private final int buffersPerSizeClass;
+    private final SizeClass[] sizeClasses;
+
+    private final AtomicLong allocations = new AtomicLong();
+    private final AtomicLong reuses = new AtomicLong();
+
+    public BufferPool() {
+        this(false, DEFAULT_LARGEST_SIZE_CLASS, DEFAULT_BUFFERS_PER_SIZE_CLASS);
+    }
+
+    public BufferPool(boolean direct, int largestSizeClass, int buffersPerSizeClass) {
+        if (largestSizeClass < SMALLEST_SIZE_CLASS) {
+            throw new IllegalArgumentException("Largest size class must be at least " + SMALLEST_SIZE_CLASS);
+        }
+
+        this.direct = direct;
+        this.buffersPerSizeClass = buffersPerSizeClass;
+        this.sizeClasses = new SizeClass[indexOf(largestSizeClass) + 1];
+        for (int i = 0; i < sizeClasses.length; i++) {
+            sizeClasses[i] = new SizeClass(SMALLEST_SIZE_CLASS << i);
+        }
+    }
+
+    public static BufferPool shared() {
+        return Shared.pool;
+    }
+
+    public ByteBuffer acquire(int size) {
+        int index = indexOf(size);
+        if (index >= sizeClasses.length) {
+            allocations.incrementAndGet();
+            return allocate(size);
+        }
+
+        SizeClass sizeClass = sizeClasses[index];
+        ByteBuffer buffer = sizeClass.buffers.poll();
+        if (buffer == null) {
+            allocations.incrementAndGet();
+            buffer = allocate(sizeClass.size);
+        } else {
+            sizeClass.count.decrementAndGet();
+            reuses.incrementAndGet();
+        }
+
+        buffer.clear();
+        buffer.limit(size);
+        return buffer;
+    }
+
+    public void release(ByteBuffer buffer) {
+        if (buffer.isDirect() != direct) {
+            return;
+        }
+
+        int index = indexOf(buffer.capacity());
+        if (index >= sizeClasses.length || sizeClasses[index].size != buffer.capacity()) {
+            return;
+        }
+
+        SizeClass sizeClass = sizeClasses[index];
+        if (sizeClass.count.incrementAndGet() > buffersPerSizeClass) {
+            sizeClass.count.decrementAndGet();
+            return;
+        }
+        sizeClass.buffers.add(buffer);
+    }
+
+    public long getAllocations() {
+        return allocations.get();
+    }
+
+    public long getReuses() {
+        return reuses.get();
+    }
+
+    private ByteBuffer allocate(int capacity) {
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    private static int indexOf(int size) {
+        if (size <= SMALLEST_SIZE_CLASS) {
+            return 0;
+        }
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - Integer.numberOfTrailingZeros(SMALLEST_SIZE_CLASS);
+    }
+
+    private static class SizeClass {
+
+        private final int size;
+        private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<ByteBuffer>();
+        private final AtomicInteger count = new AtomicInteger();
+
+        SizeClass(int size) {
+            this.size = size;
+        }
+    }
+
+    private static class Shared {
+        static final BufferPool pool = new BufferPool();
+    }
+}
@@ -1,5 +1,6 @@
 package org.zells.dish.network.connecting;
 
+import org.zells.dish.network.connecting.implementations.nio.NioTransport;
 import org.zells.dish.network.connecting.implementations.socket.TcpSocketConnection;
 
 import java.io.IOException;
@@ -59,6 +60,17 @@ public class ConnectionRepository {
                 return new TcpSocketConnection(new Socket(hostPort[0], Integer.parseInt(hostPort[1])));
             }
         });
+        factories.add(new ConnectionFactory() {
+
+            public boolean canBuild(String description) {
+                return description.startsWith("nio:");
+            }
+
+            public Connection build(String description) throws IOException {
+                String[] hostPort = description.substring(4).split(":");
+                return NioTransport.shared().connect(hostPort[0], Integer.parseInt(hostPort[1]));
+            }
+        });
         return factories;
     }
 
@@ -1,14 +1,91 @@
 package org.zells.dish.network.connecting;
 
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class Packet {
 
-    private byte[] bytes;
+    public static final int MAX_TAG = 127;
+
+    private final ByteBuffer buffer;
+    private final BufferPool pool;
+    private int tag = 0;
+
+    private final AtomicInteger references = new AtomicInteger(1);
+    private volatile boolean pinned = false;
+    private Packet parent;
 
     public Packet(byte[] bytes) {
-        this.bytes = bytes;
+        this(ByteBuffer.wrap(bytes), null);
+    }
+
+    public Packet(ByteBuffer buffer, BufferPool pool) {
+        this.buffer = buffer.position() == 0 ? buffer : buffer.slice();
+        this.pool = pool;
+    }
+
+    public static Packet allocate(BufferPool pool, int length) {
+        return new Packet(pool.acquire(length), pool);
     }
 
     public byte[] getBytes() {
+        if (pool == null && buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.array().length == buffer.limit()) {
+            return buffer.array();
+        }
+
+        byte[] bytes = new byte[buffer.limit()];
+        getBuffer().get(bytes);
         return bytes;
     }
+
+    public ByteBuffer getBuffer() {
+        return buffer.duplicate();
+    }
+
+    public int getLength() {
+        return buffer.limit();
+    }
+
+    public Packet slice(int offset) {
+        ByteBuffer sliced = getBuffer();
+        sliced.position(offset);
+
+        Packet packet = new Packet(sliced.slice(), null).setTag(tag);
+        packet.parent = this;
+        return packet;
+    }
+
+    public int getTag() {
+        return tag;
+    }
+
+    public Packet setTag(int tag) {
+        if (tag < 0 || tag > MAX_TAG) {
+            throw new IllegalArgumentException("Invalid tag: " + tag);
+        }
+        this.tag = tag;
+        return this;
+    }
+
+    public Packet retain() {
+        references.incrementAndGet();
+        return this;
+    }
+
+    public void release() {
+        int remaining = references.decrementAndGet();
+        if (remaining < 0) {
+            throw new IllegalStateException("Packet released too often");
+        }
+        if (remaining == 0 && pool != null && !pinned) {
+            pool.release(buffer);
+        }
+    }
+
+    public void pin() {
+        pinned = true;
+        if (parent != null) {
+            parent.pin();
+        }
+    }
 }
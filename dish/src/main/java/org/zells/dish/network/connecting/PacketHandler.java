@@ -1,44 +1,141 @@
 package org.zells.dish.network.connecting;
 
+import org.zells.dish.delivery.BusyException;
+import org.zells.dish.delivery.Delivery;
+import org.zells.dish.delivery.Messenger;
+import org.zells.dish.delivery.ReceiverNotFoundException;
 import org.zells.dish.network.Signal;
 import org.zells.dish.network.SignalListener;
+import org.zells.dish.network.encoding.Encoding;
 import org.zells.dish.network.encoding.EncodingRepository;
 import org.zells.dish.network.signals.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 public class PacketHandler {
 
     private EncodingRepository encodings;
     private SignalListener listener;
     private Connection connection;
 
+    private volatile Encoding encoding;
+
     public PacketHandler(EncodingRepository encodings, Connection connection, SignalListener listener) {
         this.encodings = encodings;
         this.listener = listener;
         this.connection = connection;
+        this.encoding = encodings.getDefault();
+    }
+
+    public Encoding getEncoding() {
+        return encoding;
     }
 
     public Packet handle(Packet packet) {
-        Signal signal = encodings.decode(packet);
+        Encoding requested = encodings.get(packet.getTag());
+        Signal signal;
+        try {
+            signal = encodings.decode(packet);
+        } catch (RuntimeException e) {
+            return refuse(e.getMessage());
+        } finally {
+            packet.release();
+        }
         Signal response = respond(signal);
-        return encodings.encode(response);
+        return encodings.encode(response, requested);
+    }
+
+    public Packet refuse(String cause) {
+        return encodings.encode(new FailedSignal(cause), encoding);
     }
 
     private Signal respond(Signal signal) {
         try {
-            if (onSignal(signal)) {
+            if (signal instanceof BatchSignal) {
+                return batch((BatchSignal) signal);
+            } else if (signal instanceof MulticastSignal) {
+                return multicast((MulticastSignal) signal);
+            } else if (signal instanceof JoinSignal) {
+                return join((JoinSignal) signal);
+            } else if (onSignal(signal)) {
                 return new OkSignal();
             } else {
                 return new FailedSignal();
             }
+        } catch (BusyException e) {
+            return FailedSignal.busy();
         } catch (Exception e) {
-            return new FailedSignal(e.getMessage());
+            return FailedSignal.causedBy(e);
+        }
+    }
+
+    private Signal batch(BatchSignal signal) {
+        List<Signal> batched = signal.getSignals();
+        Signal[] responses = new Signal[batched.size()];
+        List<Integer> delivering = new ArrayList<Integer>();
+        List<Delivery> deliveries = new ArrayList<Delivery>();
+
+        for (int i = 0; i < batched.size(); i++) {
+            if (batched.get(i) instanceof BatchSignal) {
+                responses[i] = new FailedSignal("nested batch");
+            } else if (batched.get(i) instanceof DeliverSignal) {
+                delivering.add(i);
+                deliveries.add(((DeliverSignal) batched.get(i)).getDelivery());
+            } else {
+                responses[i] = respond(batched.get(i));
+            }
+        }
+
+        if (!deliveries.isEmpty()) {
+            List<Messenger> messengers = listener.onDeliverAll(deliveries);
+            for (int i = 0; i < messengers.size(); i++) {
+                responses[delivering.get(i)] = outcome(messengers.get(i));
+            }
+        }
+        return new BatchSignal(Arrays.asList(responses));
+    }
+
+    private Signal multicast(MulticastSignal signal) {
+        List<Messenger> messengers = listener.onDeliverAll(signal.getDeliveries());
+        List<Signal> responses = new ArrayList<Signal>(messengers.size());
+        for (Messenger messenger : messengers) {
+            responses.add(outcome(messenger));
+        }
+        return new BatchSignal(responses);
+    }
+
+    private Signal outcome(Messenger messenger) {
+        Exception failure = messenger.getFailure();
+        if (!messenger.isDone()) {
+            return new FailedSignal("Message delivery timed out");
+        } else if (messenger.wasDelivered()) {
+            return new OkSignal();
+        } else if (failure instanceof ReceiverNotFoundException) {
+            return new FailedSignal();
+        } else if (failure instanceof BusyException) {
+            return FailedSignal.busy();
+        }
+        return FailedSignal.causedBy(failure);
+    }
+
+    private Signal join(JoinSignal signal) {
+        Encoding negotiated = encodings.negotiate(signal.getEncodings());
+        if (negotiated != null) {
+            encoding = negotiated;
+        }
+
+        if (!listener.onJoin(connection, encoding, negotiated != null)) {
+            return new FailedSignal();
+        } else if (negotiated == null) {
+            return new OkSignal();
         }
+        return new OkSignal(negotiated.getTag());
     }
 
     private boolean onSignal(Signal signal) {
-        if (signal instanceof JoinSignal) {
-            return listener.onJoin(connection);
-        } else if (signal instanceof LeaveSignal) {
+        if (signal instanceof LeaveSignal) {
             return listener.onLeave(connection);
         } else if (signal instanceof DeliverSignal) {
             return listener.onDeliver(((DeliverSignal) signal).getDelivery());
@@ -46,4 +143,4 @@ public class PacketHandler {
 
         throw new RuntimeException("Unexpected signal: " + signal.getClass());
     }
-}
\ No newline at end of file
+}
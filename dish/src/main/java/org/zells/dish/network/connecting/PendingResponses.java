@@ -0,0 +1,130 @@
+package org.zells.dish.network.connecting;
+
+import org.zells.dish.delivery.DeliveryExecutors;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PendingResponses {
+
+    private final Map<Integer, Response> pending = new ConcurrentHashMap<Integer, Response>();
+    private final AtomicInteger nextId = new AtomicInteger(1);
+
+    public Response expect() {
+        Response response = new Response(nextId.getAndIncrement(), null);
+        pending.put(response.id, response);
+        return response;
+    }
+
+    public Response expect(AsyncConnection.Callback callback, long timeOutMillis) {
+        final Response response = new Response(nextId.getAndIncrement(), callback);
+        pending.put(response.id, response);
+        response.timer = DeliveryExecutors.scheduler().schedule(new Runnable() {
+            public void run() {
+                forget(response);
+                response.resolve(null, new IOException("Response timed out"));
+            }
+        }, timeOutMillis, TimeUnit.MILLISECONDS);
+        return response;
+    }
+
+    public boolean resolve(int id, Packet packet) {
+        Response response = pending.remove(id);
+        return response != null && response.resolve(packet, null);
+    }
+
+    public void forget(Response response) {
+        pending.remove(response.id);
+    }
+
+    public void failAll(IOException cause) {
+        List<Response> failed = new ArrayList<Response>(pending.values());
+        for (Response response : failed) {
+            pending.remove(response.id);
+            response.resolve(null, cause);
+        }
+    }
+
+    public int size() {
+        return pending.size();
+    }
+
+    public class Response {
+
+        private final int id;
+        private final AsyncConnection.Callback callback;
+        private ScheduledFuture<?> timer;
+        private Packet packet;
+        private IOException failure;
+        private boolean resolved = false;
+
+        private Response(int id, AsyncConnection.Callback callback) {
+            this.id = id;
+            this.callback = callback;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public boolean fail(IOException failure) {
+            forget(this);
+            return resolve(null, failure);
+        }
+
+        private boolean resolve(Packet packet, IOException failure) {
+            synchronized (this) {
+                if (resolved) {
+                    return false;
+                }
+                this.packet = packet;
+                this.failure = failure;
+                resolved = true;
+                notifyAll();
+            }
+
+            if (timer != null) {
+                timer.cancel(false);
+            }
+            if (callback != null) {
+                if (failure != null) {
+                    callback.failed(failure);
+                } else {
+                    callback.received(packet);
+                }
+            }
+            return true;
+        }
+
+        public Packet await(long timeOutMillis) throws IOException {
+            long deadline = System.currentTimeMillis() + timeOutMillis;
+            synchronized (this) {
+                while (!resolved) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        forget(this);
+                        throw new IOException("Response timed out");
+                    }
+                    try {
+                        wait(remaining);
+                    } catch (InterruptedException e) {
+                        forget(this);
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while waiting for response");
+                    }
+                }
+            }
+
+            if (failure != null) {
+                throw new IOException(failure.getMessage(), failure);
+            }
+            return packet;
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package org.zells.dish.network.connecting.implementations.nio;
+
+import org.zells.dish.network.connecting.AsyncConnection;
+import org.zells.dish.network.connecting.BufferPool;
+import org.zells.dish.network.connecting.Packet;
+import org.zells.dish.network.connecting.PacketHandler;
+import org.zells.dish.network.connecting.PendingResponses;
+import org.zells.dish.network.signals.FailedSignal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+public class NioConnection implements AsyncConnection, EventLoop.Selectable {
+
+    public static final long DEFAULT_RESPONSE_TIME_OUT_MILLIS = 30 * 1000;
+    public static final int DEFAULT_MAX_FRAME_SIZE = 16 * 1024 * 1024;
+
+    private static final int HEADER_SIZE = 9;
+    private static final int INITIAL_READ_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_GATHERED_FRAMES = 32;
+
+    private final SocketChannel channel;
+    private final EventLoop loop;
+    private final Executor handlers;
+
+    private PacketHandler handler;
+    private SelectionKey key;
+
+    private final PendingResponses responses = new PendingResponses();
+    private final Queue<Frame> outgoing = new ConcurrentLinkedQueue<Frame>();
+    private ByteBuffer incoming = ByteBuffer.allocate(INITIAL_READ_BUFFER_SIZE);
+
+    private long responseTimeOutMillis = DEFAULT_RESPONSE_TIME_OUT_MILLIS;
+    private int maxFrameSize = DEFAULT_MAX_FRAME_SIZE;
+    private BufferPool pool = BufferPool.shared();
+    private volatile boolean open = false;
+    private volatile Runnable onClose;
+    private final Object sending = new Object();
+
+    NioConnection(SocketChannel channel, EventLoop loop, Executor handlers) {
+        this.channel = channel;
+        this.loop = loop;
+        this.handlers = handlers;
+    }
+
+    public NioConnection open() {
+        try {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        open = true;
+        loop.execute(new Runnable() {
+            public void run() {
+                try {
+                    key = channel.register(loop.getSelector(), SelectionKey.OP_READ, NioConnection.this);
+                    flush();
+                } catch (ClosedChannelException e) {
+                    close();
+                }
+            }
+        });
+
+        return this;
+    }
+
+    public void close() {
+        synchronized (sending) {
+            open = false;
+        }
+        Runnable closed = onClose;
+        if (closed != null) {
+            closed.run();
+        }
+        loop.execute(new Runnable() {
+            public void run() {
+                if (key != null) {
+                    key.cancel();
+                }
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                }
+
+                Frame unsent;
+                while ((unsent = outgoing.poll()) != null) {
+                    unsent.packet.release();
+                }
+            }
+        });
+        responses.failAll(new IOException("Connection closed"));
+    }
+
+    public void setHandler(PacketHandler handler) {
+        this.handler = handler;
+    }
+
+    public NioConnection setResponseTimeOut(long millis) {
+        this.responseTimeOutMillis = millis;
+        return this;
+    }
+
+    public NioConnection setMaxFrameSize(int bytes) {
+        this.maxFrameSize = bytes;
+        return this;
+    }
+
+    public NioConnection setBufferPool(BufferPool pool) {
+        this.pool = pool;
+        return this;
+    }
+
+    NioConnection onClose(Runnable onClose) {
+        this.onClose = onClose;
+        return this;
+    }
+
+    public Packet transmit(Packet packet) throws IOException {
+        if (!open) {
+            packet.release();
+            throw new IOException("Connection not open");
+        }
+
+        PendingResponses.Response response = responses.expect();
+        try {
+            send(false, response.getId(), packet);
+        } catch (IOException e) {
+            responses.forget(response);
+            throw e;
+        }
+        return response.await(responseTimeOutMillis);
+    }
+
+    public void transmit(Packet packet, Callback callback) {
+        PendingResponses.Response response = responses.expect(callback, responseTimeOutMillis);
+        try {
+            send(false, response.getId(), packet);
+        } catch (IOException e) {
+            response.fail(e);
+        }
+    }
+
+    private void send(boolean isResponse, int id, Packet packet) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.put((byte) (packet.getTag() << 1 | (isResponse ? 1 : 0))).putInt(id).putInt(packet.getLength());
+        header.flip();
+
+        synchronized (sending) {
+            if (!open) {
+                packet.release();
+                throw new IOException("Connection not open");
+            }
+            outgoing.add(new Frame(header, packet));
+        }
+        loop.execute(new Runnable() {
+            public void run() {
+                flush();
+            }
+        });
+    }
+
+    public void onSelected(SelectionKey key) {
+        try {
+            if (key.isReadable()) {
+                read();
+            }
+            if (key.isValid() && key.isWritable()) {
+                flush();
+            }
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    private void flush() {
+        if (key == null || !key.isValid()) {
+            return;
+        }
+
+        try {
+            while (!outgoing.isEmpty()) {
+                List<Frame> gathered = new ArrayList<Frame>();
+                List<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+                for (Frame frame : outgoing) {
+                    gathered.add(frame);
+                    buffers.add(frame.header);
+                    buffers.add(frame.body);
+                    if (gathered.size() == MAX_GATHERED_FRAMES) {
+                        break;
+                    }
+                }
+
+                channel.write(buffers.toArray(new ByteBuffer[buffers.size()]));
+
+                for (Frame frame : gathered) {
+                    if (frame.header.hasRemaining() || frame.body.hasRemaining()) {
+                        key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                        return;
+                    }
+                    outgoing.poll();
+                    frame.packet.release();
+                }
+            }
+            key.interestOps(SelectionKey.OP_READ);
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    private void read() throws IOException {
+        if (channel.read(incoming) < 0) {
+            close();
+            return;
+        }
+
+        incoming.flip();
+        while (incoming.remaining() >= HEADER_SIZE) {
+            int start = incoming.position();
+            int flags = incoming.get(start) & 0xff;
+            int id = incoming.getInt(start + 1);
+            int length = incoming.getInt(start + 5);
+
+            if (length < 0 || length > maxFrameSize) {
+                throw new IOException("Invalid frame length: " + length);
+            }
+            if (incoming.remaining() < HEADER_SIZE + length) {
+                ensureCapacity(HEADER_SIZE + length);
+                break;
+            }
+
+            ByteBuffer frame = incoming.duplicate();
+            frame.position(start + HEADER_SIZE).limit(start + HEADER_SIZE + length);
+            incoming.position(start + HEADER_SIZE + length);
+
+            Packet packet = Packet.allocate(pool, length).setTag(flags >> 1);
+            packet.getBuffer().put(frame);
+            received((flags & 1) != 0, id, packet);
+        }
+        incoming.compact();
+        shrink();
+    }
+
+    private void ensureCapacity(int frameSize) {
+        if (incoming.capacity() >= frameSize) {
+            return;
+        }
+
+        ByteBuffer larger = ByteBuffer.allocate(frameSize);
+        larger.put(incoming);
+        larger.flip();
+        incoming = larger;
+    }
+
+    private void shrink() {
+        if (incoming.capacity() <= INITIAL_READ_BUFFER_SIZE) {
+            return;
+        }
+
+        int pending = incoming.position();
+        if (pending >= HEADER_SIZE) {
+            pending = HEADER_SIZE + incoming.getInt(5);
+        }
+        if (pending > INITIAL_READ_BUFFER_SIZE) {
+            return;
+        }
+
+        ByteBuffer smaller = ByteBuffer.allocate(INITIAL_READ_BUFFER_SIZE);
+        incoming.flip();
+        smaller.put(incoming);
+        incoming = smaller;
+    }
+
+    private void received(boolean isResponse, final int id, final Packet packet) {
+        if (isResponse) {
+            if (!responses.resolve(id, packet)) {
+                packet.release();
+            }
+            return;
+        }
+        if (packet.getLength() == 0) {
+            packet.release();
+            return;
+        }
+
+        try {
+            handlers.execute(new Runnable() {
+                public void run() {
+                    try {
+                        send(true, id, handler.handle(packet));
+                    } catch (IOException ignored) {
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            packet.release();
+            try {
+                send(true, id, handler.refuse(FailedSignal.BUSY));
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static class Frame {
+
+        private final ByteBuffer header;
+        private final ByteBuffer body;
+        private final Packet packet;
+
+        Frame(ByteBuffer header, Packet packet) {
+            this.header = header;
+            this.body = packet.getBuffer();
+            this.packet = packet;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package org.zells.dish.network.connecting.implementations.nio;
+
+import org.zells.dish.Dish;
+import org.zells.dish.network.connecting.Server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class NioServer implements Server, EventLoop.Selectable {
+
+    private final NioTransport transport;
+    private final ServerSocketChannel server;
+    private final EventLoop loop;
+
+    private Dish dish;
+    private SelectionKey key;
+    private Set<NioConnection> connections =
+            Collections.newSetFromMap(new ConcurrentHashMap<NioConnection, Boolean>());
+
+    NioServer(NioTransport transport, int port) throws IOException {
+        this.transport = transport;
+        this.loop = transport.nextLoop();
+
+        server = ServerSocketChannel.open();
+        server.socket().bind(new InetSocketAddress(port));
+        server.configureBlocking(false);
+    }
+
+    public NioServer start(Dish dish) {
+        this.dish = dish;
+        loop.execute(new Runnable() {
+            public void run() {
+                try {
+                    key = server.register(loop.getSelector(), SelectionKey.OP_ACCEPT, NioServer.this);
+                } catch (ClosedChannelException ignored) {
+                }
+            }
+        });
+        return this;
+    }
+
+    public void onSelected(SelectionKey key) {
+        try {
+            SocketChannel channel;
+            while ((channel = server.accept()) != null) {
+                final NioConnection connection = transport.wrap(channel);
+                connections.add(connection);
+                connection.onClose(new Runnable() {
+                    public void run() {
+                        connections.remove(connection);
+                    }
+                });
+                dish.listen(connection);
+                connection.open();
+            }
+        } catch (IOException ignored) {
+        }
+    }
+
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    public void stop() {
+        loop.execute(new Runnable() {
+            public void run() {
+                if (key != null) {
+                    key.cancel();
+                }
+                try {
+                    server.close();
+                } catch (IOException ignored) {
+                }
+            }
+        });
+        for (NioConnection connection : connections) {
+            connection.close();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.zells.dish.network.connecting.implementations.nio;
+
+import org.zells.dish.delivery.DeliveryExecutors;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class NioTransport {
+
+    public static final int DEFAULT_HANDLER_THREADS = 64;
+    public static final int DEFAULT_HANDLER_QUEUE = 1024;
+
+    private static NioTransport shared;
+
+    private final EventLoop[] loops;
+    private final ExecutorService handlers;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public NioTransport(int loopCount, int handlerThreads, int handlerQueue) throws IOException {
+        loops = new EventLoop[loopCount];
+        for (int i = 0; i < loopCount; i++) {
+            loops[i] = new EventLoop("zells-nio-" + i);
+        }
+        handlers = DeliveryExecutors.fixed(handlerThreads, handlerQueue, DeliveryExecutors.Rejection.FAIL);
+    }
+
+    synchronized public static NioTransport shared() {
+        if (shared == null) {
+            try {
+                shared = new NioTransport(Math.min(4, Runtime.getRuntime().availableProcessors()),
+                        DEFAULT_HANDLER_THREADS, DEFAULT_HANDLER_QUEUE);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return shared;
+    }
+
+    public NioConnection connect(String host, int port) throws IOException {
+        return wrap(SocketChannel.open(new InetSocketAddress(host, port)));
+    }
+
+    public NioServer serve(int port) throws IOException {
+        return new NioServer(this, port);
+    }
+
+    NioConnection wrap(SocketChannel channel) {
+        return new NioConnection(channel, nextLoop(), handlers);
+    }
+
+    EventLoop nextLoop() {
+        return loops[(next.getAndIncrement() & Integer.MAX_VALUE) % loops.length];
+    }
+
+    public void shutdown() {
+        for (EventLoop loop : loops) {
+            loop.stop();
+        }
+        handlers.shutdown();
+    }
+}
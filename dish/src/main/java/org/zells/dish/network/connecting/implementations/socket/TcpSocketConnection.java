@@ -1,28 +1,49 @@
 package org.zells.dish.network.connecting.implementations.socket;
 
-import org.zells.dish.network.connecting.Connection;
+import org.zells.dish.delivery.DeliveryExecutors;
+import org.zells.dish.network.connecting.AsyncConnection;
+import org.zells.dish.network.connecting.BufferPool;
 import org.zells.dish.network.connecting.Packet;
 import org.zells.dish.network.connecting.PacketHandler;
+import org.zells.dish.network.connecting.PendingResponses;
+import org.zells.dish.network.signals.FailedSignal;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.Socket;
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 
-public class TcpSocketConnection implements Connection {
+public class TcpSocketConnection implements AsyncConnection {
 
-    private int packetId = 1;
+    public static final long DEFAULT_RESPONSE_TIME_OUT_MILLIS = 30 * 1000;
+    public static final int DEFAULT_MAX_FRAME_SIZE = 16 * 1024 * 1024;
 
-    private DataOutputStream out;
+    private static final int HEADER_SIZE = 9;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int CHUNK_SIZE = 8 * 1024;
+
+    private OutputStream out;
     private DataInputStream in;
+    private BlockingQueue<Transmission> outgoing = new LinkedBlockingQueue<Transmission>();
+    private Writer writer;
 
     private PacketHandler handler;
     private Socket socket;
 
-    private Map<Integer, Packet> responses = new HashMap<Integer, Packet>();
-    private boolean open = false;
+    private PendingResponses responses = new PendingResponses();
+    private long responseTimeOutMillis = DEFAULT_RESPONSE_TIME_OUT_MILLIS;
+    private int maxFrameSize = DEFAULT_MAX_FRAME_SIZE;
+    private BufferPool pool = BufferPool.shared();
+    private volatile boolean open = false;
+    private final Object sending = new Object();
 
     public static boolean loggingEnabled = false;
     private int logCounter = 0;
@@ -34,77 +55,167 @@ public class TcpSocketConnection implements Connection {
     public TcpSocketConnection open() {
         log("Open");
         try {
-            out = new DataOutputStream(socket.getOutputStream());
-            in = new DataInputStream(socket.getInputStream());
+            socket.setTcpNoDelay(true);
+            out = new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
 
         open = true;
+        writer = new Writer();
+        writer.start();
         new Receiver().start();
 
         return this;
     }
 
     public void close() {
-        open = false;
+        synchronized (sending) {
+            open = false;
+        }
+        if (writer != null) {
+            writer.interrupt();
+        }
         try {
             in.close();
             out.close();
             socket.close();
         } catch (IOException ignored) {
         }
+        responses.failAll(new IOException("Connection closed"));
+
+        Transmission unsent;
+        while ((unsent = outgoing.poll()) != null) {
+            unsent.packet.release();
+        }
     }
 
     public void setHandler(PacketHandler handler) {
         this.handler = handler;
     }
 
+    public TcpSocketConnection setResponseTimeOut(long millis) {
+        this.responseTimeOutMillis = millis;
+        return this;
+    }
+
+    public TcpSocketConnection setMaxFrameSize(int bytes) {
+        this.maxFrameSize = bytes;
+        return this;
+    }
+
+    public TcpSocketConnection setBufferPool(BufferPool pool) {
+        this.pool = pool;
+        return this;
+    }
+
     public Packet transmit(Packet packet) throws IOException {
         if (!open) {
+            packet.release();
             throw new IOException("Connection not open");
         }
 
-        int id = packetId++;
-        log("Send " + packet.getBytes().length + " @" + id + " >> " + new String(packet.getBytes()));
-        send(new Transmission(packet, id, false));
+        PendingResponses.Response response = responses.expect();
+        logPacket("Send", packet, response.getId());
+        try {
+            send(new Transmission(packet, response.getId(), false));
+        } catch (IOException e) {
+            responses.forget(response);
+            throw e;
+        }
+
+        Packet received = response.await(responseTimeOutMillis);
+        logPacket("Got", received, response.getId());
+        return received;
+    }
 
-        return waitForResponse(id);
+    public void transmit(Packet packet, Callback callback) {
+        PendingResponses.Response response = responses.expect(callback, responseTimeOutMillis);
+        logPacket("Send", packet, response.getId());
+        try {
+            send(new Transmission(packet, response.getId(), false));
+        } catch (IOException e) {
+            response.fail(e);
+        }
     }
 
-    synchronized private void send(Transmission transmission) throws IOException {
-        byte[] bytes = transmission.packet.getBytes();
-        out.writeBoolean(transmission.isResponse);
-        out.writeInt(transmission.id);
-        out.writeInt(bytes.length);
-        out.write(bytes);
+    private void send(Transmission transmission) throws IOException {
+        synchronized (sending) {
+            if (open) {
+                outgoing.add(transmission);
+                return;
+            }
+        }
+        transmission.packet.release();
+        throw new IOException("Connection not open");
     }
 
     private Transmission receive() throws IOException {
-        final boolean isResponse = in.readBoolean();
+        final int flags = in.readUnsignedByte();
         final int id = in.readInt();
         int length = in.readInt();
-        byte[] message = new byte[length];
-        in.readFully(message, 0, message.length);
+        if (length < 0 || length > maxFrameSize) {
+            throw new IOException("Invalid frame length: " + length);
+        }
 
-        return new Transmission(new Packet(message), id, isResponse);
+        Packet packet = Packet.allocate(pool, length).setTag(flags >> 1);
+        try {
+            readFully(packet.getBuffer());
+        } catch (IOException e) {
+            packet.release();
+            throw e;
+        }
+
+        return new Transmission(packet, id, (flags & 1) != 0);
     }
 
-    private Packet waitForResponse(int id) {
-        while (!responses.containsKey(id)) {
-            try {
-                Thread.sleep(20);
-            } catch (InterruptedException ignored) {
-            }
+    private void readFully(ByteBuffer buffer) throws IOException {
+        if (buffer.hasArray()) {
+            in.readFully(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            return;
+        }
+
+        byte[] chunk = new byte[Math.min(CHUNK_SIZE, buffer.remaining())];
+        while (buffer.hasRemaining()) {
+            int length = Math.min(chunk.length, buffer.remaining());
+            in.readFully(chunk, 0, length);
+            buffer.put(chunk, 0, length);
+        }
+    }
+
+    private void write(byte[] header, Transmission transmission) throws IOException {
+        ByteBuffer buffer = transmission.packet.getBuffer();
+        ByteBuffer.wrap(header)
+                .put((byte) (transmission.packet.getTag() << 1 | (transmission.isResponse ? 1 : 0)))
+                .putInt(transmission.id)
+                .putInt(buffer.remaining());
+        out.write(header);
+
+        if (buffer.hasArray()) {
+            out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            return;
         }
 
-        log("Got " + responses.get(id).getBytes().length + " @" + id);
-        return responses.remove(id);
+        byte[] chunk = new byte[Math.min(CHUNK_SIZE, buffer.remaining())];
+        while (buffer.hasRemaining()) {
+            int length = Math.min(chunk.length, buffer.remaining());
+            buffer.get(chunk, 0, length);
+            out.write(chunk, 0, length);
+        }
     }
 
-    synchronized private void log(String message) {
+    private void logPacket(String action, Packet packet, int id) {
         if (loggingEnabled) {
-            System.out.println(logCounter++ + " [" + socket.getLocalPort() + ">" + socket.getPort() + "] " + message);
+            log(action + " " + packet.getLength() + " @" + id + " >> " + new String(packet.getBytes()));
+        }
+    }
+
+    private void log(String message) {
+        if (loggingEnabled) {
+            synchronized (this) {
+                System.out.println(logCounter++ + " [" + socket.getLocalPort() + ">" + socket.getPort() + "] " + message);
+            }
         }
     }
 
@@ -113,20 +224,66 @@ public class TcpSocketConnection implements Connection {
             while (open) {
                 try {
                     final Transmission transmission = receive();
-                    log("Received " + transmission.packet.getBytes().length + " @" + transmission.id + " >> " + new String(transmission.packet.getBytes()));
+                    logPacket("Received", transmission.packet, transmission.id);
 
                     if (transmission.isResponse) {
-                        responses.put(transmission.id, transmission.packet);
-                    } else if (transmission.packet.getBytes().length > 0) {
-                        new Responder(transmission).start();
+                        if (!responses.resolve(transmission.id, transmission.packet)) {
+                            transmission.packet.release();
+                        }
+                    } else if (transmission.packet.getLength() > 0) {
+                        respond(transmission);
+                    } else {
+                        transmission.packet.release();
+                    }
+                } catch (IOException e) {
+                    if (open) {
+                        log("Lost connection: " + e);
+                        close();
+                    }
+                }
+            }
+        }
+    }
+
+    private void respond(Transmission transmission) throws IOException {
+        try {
+            DeliveryExecutors.responders().execute(new Responder(transmission));
+        } catch (RejectedExecutionException e) {
+            transmission.packet.release();
+            send(transmission.response(handler.refuse(FailedSignal.BUSY)));
+        }
+    }
+
+    private class Writer extends Thread {
+        public void run() {
+            byte[] header = new byte[HEADER_SIZE];
+            List<Transmission> frames = new ArrayList<Transmission>();
+            while (open) {
+                try {
+                    frames.add(outgoing.take());
+                    outgoing.drainTo(frames);
+                    for (Transmission frame : frames) {
+                        write(header, frame);
+                    }
+                    out.flush();
+                } catch (InterruptedException e) {
+                    return;
+                } catch (IOException e) {
+                    if (open) {
+                        log("Lost connection: " + e);
+                        close();
+                    }
+                } finally {
+                    for (Transmission frame : frames) {
+                        frame.packet.release();
                     }
-                } catch (IOException ignored) {
+                    frames.clear();
                 }
             }
         }
     }
 
-    private class Responder extends Thread {
+    private class Responder implements Runnable {
 
         private Transmission transmission;
 
@@ -138,7 +295,7 @@ public class TcpSocketConnection implements Connection {
             try {
                 Packet response = handler.handle(transmission.packet);
 
-                log("Reply " + response.getBytes().length + " @" + transmission.id + " >> " + new String(response.getBytes()));
+                logPacket("Reply", response, transmission.id);
                 send(transmission.response(response));
             } catch (IOException ignored) {
             }
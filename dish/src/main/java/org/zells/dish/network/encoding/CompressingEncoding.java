@@ -0,0 +1,8 @@
+package org.zells.dish.network.encoding;
+
+public interface CompressingEncoding extends Encoding {
+
+    CompressionStats getStats();
+
+    CompressingEncoding withStats(CompressionStats stats);
+}
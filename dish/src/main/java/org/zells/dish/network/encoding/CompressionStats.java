@@ -0,0 +1,56 @@
+package org.zells.dish.network.encoding;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class CompressionStats {
+
+    private final AtomicLong packets = new AtomicLong();
+    private final AtomicLong compressedPackets = new AtomicLong();
+    private final AtomicLong rawBytes = new AtomicLong();
+    private final AtomicLong sentBytes = new AtomicLong();
+    private final AtomicLong compressionNanos = new AtomicLong();
+    private final AtomicLong decompressionNanos = new AtomicLong();
+
+    public void compressed(int raw, int sent, boolean compressed, long nanos) {
+        packets.incrementAndGet();
+        if (compressed) {
+            compressedPackets.incrementAndGet();
+        }
+        rawBytes.addAndGet(raw);
+        sentBytes.addAndGet(sent);
+        compressionNanos.addAndGet(nanos);
+    }
+
+    public void decompressed(long nanos) {
+        decompressionNanos.addAndGet(nanos);
+    }
+
+    public long getPackets() {
+        return packets.get();
+    }
+
+    public long getCompressedPackets() {
+        return compressedPackets.get();
+    }
+
+    public long getRawBytes() {
+        return rawBytes.get();
+    }
+
+    public long getSentBytes() {
+        return sentBytes.get();
+    }
+
+    public double getRatio() {
+        long sent = sentBytes.get();
+        return sent == 0 ? 1 : rawBytes.get() / (double) sent;
+    }
+
+    public long getCompressionNanos() {
+        return compressionNanos.get();
+    }
+
+    public long getDecompressionNanos() {
+        return decompressionNanos.get();
+    }
+}
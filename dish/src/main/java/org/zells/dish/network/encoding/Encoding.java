@@ -5,6 +5,8 @@ import org.zells.dish.network.Signal;
 
 public interface Encoding {
 
+    int getTag();
+
     Packet encode(Signal signal);
 
     Signal decode(Packet packet);
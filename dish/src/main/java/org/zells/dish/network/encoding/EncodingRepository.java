@@ -3,12 +3,15 @@ package org.zells.dish.network.encoding;
 import org.zells.dish.network.connecting.Packet;
 import org.zells.dish.network.Signal;
 import org.zells.dish.network.encoding.implementations.MsgpackEncoding;
+import org.zells.dish.network.encoding.implementations.StreamingMsgpackEncoding;
 
 import java.util.ArrayList;
 import java.util.List;
 
 public class EncodingRepository {
 
+    public static final int LEGACY_TAG = MsgpackEncoding.TAG;
+
     private List<Encoding> encodings = new ArrayList<Encoding>();
 
     public EncodingRepository add(Encoding encoding) {
@@ -23,16 +26,59 @@ public class EncodingRepository {
         return this;
     }
 
+    public Encoding get(int tag) {
+        for (Encoding encoding : encodings) {
+            if (encoding.getTag() == tag) {
+                return encoding;
+            }
+        }
+        return null;
+    }
+
+    public Encoding getDefault() {
+        Encoding legacy = get(LEGACY_TAG);
+        return legacy != null ? legacy : encodings.get(0);
+    }
+
+    public List<Integer> getTags() {
+        List<Integer> tags = new ArrayList<Integer>();
+        for (Encoding encoding : encodings) {
+            if (!tags.contains(encoding.getTag())) {
+                tags.add(encoding.getTag());
+            }
+        }
+        return tags;
+    }
+
+    public Encoding negotiate(List<Integer> offered) {
+        for (Encoding encoding : encodings) {
+            if (offered.contains(encoding.getTag())) {
+                return encoding;
+            }
+        }
+        return null;
+    }
+
     public Packet encode(Signal signal) {
-        return encodings.get(0).encode(signal);
+        return encode(signal, getDefault());
+    }
+
+    public Packet encode(Signal signal, Encoding encoding) {
+        return encoding.encode(signal).setTag(encoding.getTag());
     }
 
     public Signal decode(Packet packet) {
-        return encodings.get(0).decode(packet);
+        Encoding encoding = get(packet.getTag());
+        if (encoding == null) {
+            throw new RuntimeException("unsupported encoding: " + packet.getTag());
+        }
+        return encoding.decode(packet);
     }
 
     public static List<Encoding> supportedEncodings() {
         ArrayList<Encoding> encodings = new ArrayList<Encoding>();
+        encodings.add(new StreamingMsgpackEncoding().setPackArrays(true));
+        encodings.add(new StreamingMsgpackEncoding());
         encodings.add(new MsgpackEncoding());
         return encodings;
     }
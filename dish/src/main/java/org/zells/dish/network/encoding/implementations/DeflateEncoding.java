@@ -0,0 +1,225 @@
+package org.zells.dish.network.encoding.implementations;
+
+import org.zells.dish.network.Signal;
+import org.zells.dish.network.connecting.BufferPool;
+import org.zells.dish.network.connecting.Packet;
+import org.zells.dish.network.encoding.CompressingEncoding;
+import org.zells.dish.network.encoding.CompressionStats;
+import org.zells.dish.network.encoding.Encoding;
+
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+public class DeflateEncoding implements CompressingEncoding {
+
+    public static final int COMPRESSED = 64;
+    public static final int DEFAULT_THRESHOLD = 1024;
+    public static final int DEFAULT_MAX_INFLATED_SIZE = 16 * 1024 * 1024;
+
+    private static final byte RAW = 0;
+    private static final byte DEFLATED = 1;
+    private static final int DEFLATED_HEADER_SIZE = 5;
+
+    private static final ThreadLocal<Deflater> deflaters = new ThreadLocal<Deflater>() {
+        protected Deflater initialValue() {
+            return new Deflater(Deflater.BEST_SPEED);
+        }
+    };
+
+    private static final ThreadLocal<Inflater> inflaters = new ThreadLocal<Inflater>() {
+        protected Inflater initialValue() {
+            return new Inflater();
+        }
+    };
+
+    private static final ThreadLocal<byte[]> scratches = new ThreadLocal<byte[]>() {
+        protected byte[] initialValue() {
+            return new byte[64 * 1024];
+        }
+    };
+
+    private final Encoding encoding;
+    private final CompressionStats stats;
+
+    private int threshold = DEFAULT_THRESHOLD;
+    private int level = Deflater.BEST_SPEED;
+    private int maxInflatedSize = DEFAULT_MAX_INFLATED_SIZE;
+    private BufferPool pool = BufferPool.shared();
+
+    public DeflateEncoding(Encoding encoding) {
+        this(encoding, new CompressionStats());
+    }
+
+    private DeflateEncoding(Encoding encoding, CompressionStats stats) {
+        if (encoding.getTag() >= COMPRESSED) {
+            throw new IllegalArgumentException("Cannot compress encoding with tag " + encoding.getTag());
+        }
+        this.encoding = encoding;
+        this.stats = stats;
+    }
+
+    public DeflateEncoding setThreshold(int bytes) {
+        this.threshold = bytes;
+        return this;
+    }
+
+    public DeflateEncoding setLevel(int level) {
+        this.level = level;
+        return this;
+    }
+
+    public DeflateEncoding setMaxInflatedSize(int bytes) {
+        this.maxInflatedSize = bytes;
+        return this;
+    }
+
+    public DeflateEncoding setBufferPool(BufferPool pool) {
+        this.pool = pool;
+        return this;
+    }
+
+    public int getTag() {
+        return COMPRESSED | encoding.getTag();
+    }
+
+    public CompressionStats getStats() {
+        return stats;
+    }
+
+    public DeflateEncoding withStats(CompressionStats stats) {
+        return new DeflateEncoding(encoding, stats)
+                .setThreshold(threshold)
+                .setLevel(level)
+                .setMaxInflatedSize(maxInflatedSize)
+                .setBufferPool(pool);
+    }
+
+    public Packet encode(Signal signal) {
+        Packet inner = encoding.encode(signal);
+        try {
+            long start = System.nanoTime();
+            Packet packet = inner.getLength() < threshold ? null : deflate(inner);
+            boolean compressed = packet != null;
+            if (!compressed) {
+                packet = raw(inner);
+            }
+
+            stats.compressed(inner.getLength(), packet.getLength(), compressed, System.nanoTime() - start);
+            return packet;
+        } finally {
+            inner.release();
+        }
+    }
+
+    public Signal decode(Packet packet) {
+        ByteBuffer buffer = packet.getBuffer();
+        if (!buffer.hasRemaining()) {
+            throw new RuntimeException("invalid format");
+        }
+
+        byte mode = buffer.get();
+        if (mode == RAW) {
+            return encoding.decode(packet.slice(1));
+        } else if (mode != DEFLATED || buffer.remaining() < DEFLATED_HEADER_SIZE - 1) {
+            throw new RuntimeException("invalid format");
+        }
+
+        int length = buffer.getInt();
+        if (length < 0 || length > maxInflatedSize) {
+            throw new RuntimeException("invalid inflated size: " + length);
+        }
+
+        long start = System.nanoTime();
+        Packet inflated = inflate(buffer, length);
+        stats.decompressed(System.nanoTime() - start);
+        try {
+            return encoding.decode(inflated);
+        } finally {
+            inflated.release();
+        }
+    }
+
+    private Packet raw(Packet inner) {
+        Packet packet = Packet.allocate(pool, inner.getLength() + 1);
+        packet.getBuffer().put(RAW).put(inner.getBuffer());
+        return packet;
+    }
+
+    private Packet deflate(Packet inner) {
+        ByteBuffer input = inner.getBuffer();
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        deflater.setLevel(level);
+        if (input.hasArray()) {
+            deflater.setInput(input.array(), input.arrayOffset(), input.remaining());
+        } else {
+            deflater.setInput(inner.getBytes());
+        }
+        deflater.finish();
+
+        int limit = inner.getLength() - DEFLATED_HEADER_SIZE;
+        byte[] output = scratches.get();
+        int written = 0;
+        while (!deflater.finished()) {
+            if (written >= limit) {
+                return null;
+            }
+            if (written == output.length) {
+                byte[] larger = new byte[Math.min(output.length * 2, limit + 1)];
+                System.arraycopy(output, 0, larger, 0, written);
+                output = larger;
+            }
+            written += deflater.deflate(output, written, Math.min(output.length, limit + 1) - written);
+        }
+        if (written >= limit) {
+            return null;
+        }
+
+        Packet packet = Packet.allocate(pool, DEFLATED_HEADER_SIZE + written);
+        packet.getBuffer().put(DEFLATED).putInt(inner.getLength()).put(output, 0, written);
+        return packet;
+    }
+
+    private Packet inflate(ByteBuffer input, int length) {
+        Inflater inflater = inflaters.get();
+        inflater.reset();
+        if (input.hasArray()) {
+            inflater.setInput(input.array(), input.arrayOffset() + input.position(), input.remaining());
+        } else {
+            byte[] bytes = new byte[input.remaining()];
+            input.get(bytes);
+            inflater.setInput(bytes);
+        }
+
+        Packet packet = Packet.allocate(pool, length);
+        try {
+            ByteBuffer output = packet.getBuffer();
+            byte[] target = output.hasArray() ? output.array() : new byte[length];
+            int offset = output.hasArray() ? output.arrayOffset() : 0;
+
+            int inflated = 0;
+            while (inflated < length && !inflater.finished()) {
+                int read = inflater.inflate(target, offset + inflated, length - inflated);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += read;
+            }
+            if (inflated != length) {
+                throw new RuntimeException("invalid format");
+            }
+            if (!output.hasArray()) {
+                output.put(target);
+            }
+            return packet;
+        } catch (DataFormatException e) {
+            packet.release();
+            throw new RuntimeException(e);
+        } catch (RuntimeException e) {
+            packet.release();
+            throw e;
+        }
+    }
+}
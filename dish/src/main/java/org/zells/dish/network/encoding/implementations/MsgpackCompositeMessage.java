@@ -0,0 +1,148 @@
+package org.zells.dish.network.encoding.implementations;
+
+import org.zells.dish.delivery.Message;
+import org.zells.dish.delivery.messages.CompositeMessage;
+import org.zells.dish.delivery.messages.NullMessage;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+public class MsgpackCompositeMessage extends CompositeMessage {
+
+    private final StreamingMsgpackEncoding encoding;
+    private final byte[] buffer;
+    private final int offset;
+    private final int length;
+
+    private Map<String, int[]> index;
+    private Set<String> keys;
+    private Map<String, Message> decoded;
+    private boolean modified = false;
+
+    MsgpackCompositeMessage(StreamingMsgpackEncoding encoding, byte[] buffer, int offset, int length) {
+        this.encoding = encoding;
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    synchronized public boolean isModified() {
+        return modified;
+    }
+
+    public ByteBuffer getEncoded() {
+        return ByteBuffer.wrap(buffer, offset, length).slice();
+    }
+
+    StreamingMsgpackEncoding getEncoding() {
+        return encoding;
+    }
+
+    @Override
+    public boolean isTrue() {
+        return true;
+    }
+
+    @Override
+    synchronized public CompositeMessage put(String key, Message value) {
+        checkNotFrozen();
+        materialize();
+        return super.put(key, value);
+    }
+
+    @Override
+    synchronized public CompositeMessage put(int key, Message value) {
+        checkNotFrozen();
+        materialize();
+        return super.put(key, value);
+    }
+
+    @Override
+    synchronized public int getSize() {
+        if (modified) {
+            return super.getSize();
+        }
+
+        int size = 0;
+        while (index().containsKey(keyOf(size))) {
+            size++;
+        }
+        return size;
+    }
+
+    @Override
+    synchronized public boolean isList() {
+        if (modified) {
+            return super.isList();
+        }
+        return getSize() == index().size();
+    }
+
+    @Override
+    synchronized public Set<String> keys() {
+        if (modified) {
+            return super.keys();
+        }
+        if (keys == null) {
+            keys = Collections.unmodifiableSet(index().keySet());
+        }
+        return keys;
+    }
+
+    @Override
+    synchronized public Message read(String key) {
+        if (modified) {
+            return super.read(key);
+        }
+
+        Message value = decoded == null ? null : decoded.get(key);
+        if (value != null) {
+            return value;
+        }
+
+        int[] range = index().get(key);
+        if (range == null) {
+            return NullMessage.INSTANCE;
+        }
+
+        value = encoding.decodeValue(buffer, range[0], range[1]).freeze();
+        if (decoded == null) {
+            decoded = new HashMap<String, Message>();
+        }
+        decoded.put(key, value);
+        return value;
+    }
+
+    @Override
+    synchronized public Message read(int key) {
+        if (modified) {
+            return super.read(key);
+        }
+        return read(keyOf(key));
+    }
+
+    private void materialize() {
+        if (modified) {
+            return;
+        }
+        Map<String, Message> values = new LinkedHashMap<String, Message>();
+        for (String existing : index().keySet()) {
+            values.put(existing, read(existing));
+        }
+        modified = true;
+        for (Map.Entry<String, Message> entry : values.entrySet()) {
+            super.put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private Map<String, int[]> index() {
+        if (index == null) {
+            index = encoding.index(buffer, offset, length);
+        }
+        return index;
+    }
+}
@@ -15,19 +15,27 @@ import org.zells.dish.network.signals.*;
 import org.zells.dish.util.Uuid;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 public class MsgpackEncoding implements Encoding {
 
+    public static final int TAG = 0;
+
     private final ObjectMapper objectMapper;
 
     public MsgpackEncoding() {
         objectMapper = new ObjectMapper(new MessagePackFactory());
     }
 
+    public int getTag() {
+        return TAG;
+    }
+
     public Packet encode(Signal signal) {
         try {
             return new Packet(objectMapper.writeValueAsBytes(deflate(signal)));
@@ -38,7 +46,11 @@ public class MsgpackEncoding implements Encoding {
 
     public Signal decode(Packet packet) {
         try {
-            Object payload = objectMapper.readValue(packet.getBytes(), new TypeReference<List<Object>>() {
+            ByteBuffer buffer = packet.getBuffer();
+            byte[] bytes = buffer.hasArray() ? buffer.array() : packet.getBytes();
+            int offset = buffer.hasArray() ? buffer.arrayOffset() : 0;
+
+            Object payload = objectMapper.readValue(bytes, offset, buffer.remaining(), new TypeReference<List<Object>>() {
             });
             if (!(payload instanceof List)) {
                 throw new RuntimeException("invalid format");
@@ -54,6 +66,9 @@ public class MsgpackEncoding implements Encoding {
 
         if (signal instanceof OkSignal) {
             payload.add("OK");
+            if (((OkSignal) signal).getEncoding() != null) {
+                payload.add(((OkSignal) signal).getEncoding());
+            }
         } else if (signal instanceof FailedSignal) {
             payload.add("FAILED");
             payload.add(((FailedSignal) signal).getCause());
@@ -64,10 +79,31 @@ public class MsgpackEncoding implements Encoding {
             payload.add(delivery.getUuid().getBytes());
             payload.add(delivery.getReceiver().toBytes());
             payload.add(deflateMessage(delivery.getMessage()));
+            if (delivery.getHops() > 0) {
+                payload.add(delivery.getHops());
+            }
+        } else if (signal instanceof MulticastSignal) {
+            List<Delivery> deliveries = ((MulticastSignal) signal).getDeliveries();
+
+            payload.add("MULTICAST");
+            payload.add(deflateMessage(deliveries.get(0).getMessage()));
+            payload.add(deliveries.get(0).getHops());
+            for (Delivery delivery : deliveries) {
+                payload.add(delivery.getUuid().getBytes());
+                payload.add(delivery.getReceiver().toBytes());
+            }
         } else if (signal instanceof JoinSignal) {
             payload.add("JOIN");
+            if (!((JoinSignal) signal).getEncodings().isEmpty()) {
+                payload.add(((JoinSignal) signal).getEncodings());
+            }
         } else if (signal instanceof LeaveSignal) {
             payload.add("LEAVE");
+        } else if (signal instanceof BatchSignal) {
+            payload.add("BATCH");
+            for (Signal batched : ((BatchSignal) signal).getSignals()) {
+                payload.add(deflate(batched));
+            }
         } else {
             throw new RuntimeException("unsupported signal type: " + signal.getClass());
         }
@@ -81,6 +117,9 @@ public class MsgpackEncoding implements Encoding {
         }
 
         if (payload.get(0).equals("OK")) {
+            if (payload.size() > 1 && payload.get(1) instanceof Number) {
+                return new OkSignal(((Number) payload.get(1)).intValue());
+            }
             return new OkSignal();
         } else if (payload.get(0).equals("FAILED")) {
             if (payload.size() == 1) {
@@ -89,26 +128,62 @@ public class MsgpackEncoding implements Encoding {
                 return new FailedSignal((String) payload.get(1));
             }
         } else if (payload.get(0).equals("DELIVER")) {
-            if (payload.size() != 4) {
+            if (payload.size() != 4 && payload.size() != 5) {
                 throw new RuntimeException("invalid format");
             }
 
             return new DeliverSignal(new Delivery(
                     new Uuid((byte[]) payload.get(1)),
                     Address.fromBytes((byte[]) payload.get(2)),
-                    inflateMessage(payload.get(3))
+                    inflateMessage(payload.get(3)),
+                    payload.size() == 5 ? ((Number) payload.get(4)).intValue() : 0
             ));
+        } else if (payload.get(0).equals("MULTICAST")) {
+            if (payload.size() < 5 || payload.size() % 2 == 0) {
+                throw new RuntimeException("invalid format");
+            }
+
+            Message message = inflateMessage(payload.get(1));
+            int hops = ((Number) payload.get(2)).intValue();
+            List<Delivery> deliveries = new ArrayList<Delivery>((payload.size() - 3) / 2);
+            for (int i = 3; i < payload.size(); i += 2) {
+                deliveries.add(new Delivery(
+                        new Uuid((byte[]) payload.get(i)),
+                        Address.fromBytes((byte[]) payload.get(i + 1)),
+                        message,
+                        hops
+                ));
+            }
+            return new MulticastSignal(deliveries);
         } else if (payload.get(0).equals("JOIN")) {
+            if (payload.size() > 1 && payload.get(1) instanceof List) {
+                List<Integer> encodings = new ArrayList<Integer>();
+                for (Object tag : (List) payload.get(1)) {
+                    encodings.add(((Number) tag).intValue());
+                }
+                return new JoinSignal(encodings);
+            }
             return new JoinSignal();
         } else if (payload.get(0).equals("LEAVE")) {
             return new LeaveSignal();
+        } else if (payload.get(0).equals("BATCH")) {
+            List<Signal> signals = new ArrayList<Signal>(payload.size() - 1);
+            for (Object batched : payload.subList(1, payload.size())) {
+                if (!(batched instanceof List)) {
+                    throw new RuntimeException("invalid format");
+                }
+                signals.add(inflate((List) batched));
+            }
+            return new BatchSignal(signals);
         } else {
-            throw new RuntimeException("unsupported signal: " + payload.get(0));
+            throw new RuntimeException(FailedSignal.UNSUPPORTED + payload.get(0));
         }
     }
 
     private Object deflateMessage(Message message) {
-        if (message instanceof NullMessage) {
+        if (message instanceof EncodedMessage) {
+            return deflateMessage(((EncodedMessage) message).decode());
+        } else if (message instanceof NullMessage) {
             return null;
         } else if (message instanceof StringMessage) {
             return message.asString();
@@ -117,11 +192,13 @@ public class MsgpackEncoding implements Encoding {
         } else if (message instanceof IntegerMessage) {
             return message.asInteger();
         } else if (message instanceof BinaryMessage) {
-            return prefixed(0, message.asBytes());
+            ByteBuffer bytes = ((BinaryMessage) message).asByteBuffer();
+            return prefixed(0, bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
         } else if (message instanceof AddressMessage) {
-            return prefixed(1, message.asBytes());
+            byte[] bytes = message.asBytes();
+            return prefixed(1, bytes, 0, bytes.length);
         } else if (message instanceof CompositeMessage) {
-            HashMap<String, Object> map = new HashMap<String, Object>();
+            Map<String, Object> map = new LinkedHashMap<String, Object>();
             for (String key : message.keys()) {
                 map.put(key, deflateMessage(message.read(key)));
             }
@@ -131,34 +208,30 @@ public class MsgpackEncoding implements Encoding {
         throw new RuntimeException("unsupported message type: " + message.getClass());
     }
 
-    private Object prefixed(int prefix, byte[] bytes) {
-        byte[] prefixed = new byte[bytes.length + 1];
+    private Object prefixed(int prefix, byte[] bytes, int offset, int length) {
+        byte[] prefixed = new byte[length + 1];
         prefixed[0] = (byte) prefix;
-        System.arraycopy(bytes, 0, prefixed, 1, bytes.length);
+        System.arraycopy(bytes, offset, prefixed, 1, length);
         return prefixed;
     }
 
-    private byte[] unPrefix(byte[] bytes) {
-        byte[] slice = new byte[bytes.length - 1];
-        System.arraycopy(bytes, 1, slice, 0, bytes.length - 1);
-        return slice;
-    }
-
     private Message inflateMessage(Object object) {
         if (object == null) {
-            return new NullMessage();
+            return NullMessage.INSTANCE;
         } else if (object instanceof String) {
             return new StringMessage((String) object);
         } else if (object instanceof Boolean) {
-            return new BooleanMessage((Boolean) object);
+            return BooleanMessage.valueOf((Boolean) object);
         } else if (object instanceof Integer) {
-            return new IntegerMessage((Integer) object);
+            return IntegerMessage.valueOf((Integer) object);
         } else if (object instanceof byte[]) {
             byte[] bytes = (byte[]) object;
-            if (bytes[0] == 0) {
-                return new BinaryMessage(unPrefix(bytes));
+            if (bytes.length == 0) {
+                throw new RuntimeException("unsupported message type");
+            } else if (bytes[0] == 0) {
+                return new BinaryMessage(bytes, 1, bytes.length - 1);
             } else if (bytes[0] == 1) {
-                return new AddressMessage(Address.fromBytes(unPrefix(bytes)));
+                return new AddressMessage(Address.fromBytes(Arrays.copyOfRange(bytes, 1, bytes.length)));
             }
         } else if (object instanceof Map) {
             CompositeMessage message = new CompositeMessage();
@@ -166,6 +239,12 @@ public class MsgpackEncoding implements Encoding {
                 message.put((String) key, inflateMessage(((Map) object).get(key)));
             }
             return message;
+        } else if (object instanceof List) {
+            CompositeMessage message = new CompositeMessage();
+            for (Object element : (List) object) {
+                message.put(message.getSize(), inflateMessage(element));
+            }
+            return message;
         }
 
         throw new RuntimeException("unsupported message type");
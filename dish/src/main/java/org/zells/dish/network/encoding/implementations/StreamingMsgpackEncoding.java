@@ -0,0 +1,557 @@
+package org.zells.dish.network.encoding.implementations;
+
+import org.msgpack.core.MessageBufferPacker;
+import org.msgpack.core.MessageFormat;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessagePacker;
+import org.msgpack.core.MessageUnpacker;
+import org.msgpack.core.buffer.ArrayBufferInput;
+import org.msgpack.core.buffer.MessageBuffer;
+import org.msgpack.value.ValueType;
+import org.zells.dish.delivery.Address;
+import org.zells.dish.delivery.Delivery;
+import org.zells.dish.delivery.Message;
+import org.zells.dish.delivery.messages.*;
+import org.zells.dish.network.Signal;
+import org.zells.dish.network.connecting.BufferPool;
+import org.zells.dish.network.connecting.Packet;
+import org.zells.dish.network.encoding.Encoding;
+import org.zells.dish.network.signals.*;
+import org.zells.dish.util.Interner;
+import org.zells.dish.util.Uuid;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class StreamingMsgpackEncoding implements Encoding {
+
+    public static final int ARRAYS_TAG = 1;
+
+    private static final int INITIAL_BUFFER_SIZE = 512;
+    private static final int VIEW_THRESHOLD = 1024;
+    private static final int VIEW_MIN_SHARE = 4;
+
+    private static final ThreadLocal<MessageBufferPacker> packers = new ThreadLocal<MessageBufferPacker>() {
+        protected MessageBufferPacker initialValue() {
+            return new MessagePack.PackerConfig().withBufferSize(INITIAL_BUFFER_SIZE).newBufferPacker();
+        }
+    };
+
+    private static final ThreadLocal<MessageUnpacker> unpackers = new ThreadLocal<MessageUnpacker>() {
+        protected MessageUnpacker initialValue() {
+            return MessagePack.newDefaultUnpacker(new byte[0]);
+        }
+    };
+
+    private static final ThreadLocal<byte[]> scratches = new ThreadLocal<byte[]>() {
+        protected byte[] initialValue() {
+            return new byte[Uuid.LENGTH];
+        }
+    };
+
+    private static final ThreadLocal<ArrayBufferInput> inputs = new ThreadLocal<ArrayBufferInput>() {
+        protected ArrayBufferInput initialValue() {
+            return new ArrayBufferInput(new byte[0]);
+        }
+    };
+
+    private BufferPool pool = BufferPool.shared();
+    private Interner interner = Interner.shared();
+    private boolean packArrays = false;
+
+    private final EncodedMessage.Decoder decoder = new EncodedMessage.Decoder() {
+        public Message decode(byte[] buffer, int offset, int length) {
+            return decodeMessage(buffer, offset, length);
+        }
+    };
+
+    public int getTag() {
+        return packArrays ? ARRAYS_TAG : MsgpackEncoding.TAG;
+    }
+
+    public StreamingMsgpackEncoding setBufferPool(BufferPool pool) {
+        this.pool = pool;
+        return this;
+    }
+
+    public StreamingMsgpackEncoding setInterner(Interner interner) {
+        this.interner = interner;
+        return this;
+    }
+
+    public StreamingMsgpackEncoding setPackArrays(boolean packArrays) {
+        this.packArrays = packArrays;
+        return this;
+    }
+
+    boolean isPackingArrays() {
+        return packArrays;
+    }
+
+    public Packet encode(Signal signal) {
+        MessageBufferPacker packer = packers.get();
+        packer.clear();
+        try {
+            packSignal(packer, signal);
+            List<MessageBuffer> written = packer.toBufferList();
+
+            int length = 0;
+            for (MessageBuffer buffer : written) {
+                length += buffer.size();
+            }
+
+            Packet packet = Packet.allocate(pool, length);
+            ByteBuffer target = packet.getBuffer();
+            for (MessageBuffer buffer : written) {
+                buffer.getBytes(0, buffer.size(), target);
+            }
+            return packet;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public Signal decode(Packet packet) {
+        MessageUnpacker unpacker = unpackers.get();
+        ByteBuffer buffer = packet.getBuffer();
+        Source source = buffer.hasArray()
+                ? new Source(packet, buffer)
+                : new Source(null, ByteBuffer.wrap(packet.getBytes()));
+        try {
+            ArrayBufferInput input = inputs.get();
+            input.reset(source.buffer.array(), source.buffer.arrayOffset(), source.buffer.remaining());
+            unpacker.reset(input);
+            if (!unpacker.hasNext() || unpacker.getNextFormat().getValueType() != ValueType.ARRAY) {
+                throw new RuntimeException("invalid format");
+            }
+            return unpackSignal(unpacker, unpacker.unpackArrayHeader(), source);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private Message decodeMessage(byte[] buffer, int offset, int length) {
+        MessageUnpacker unpacker = unpackers.get();
+        try {
+            ArrayBufferInput input = inputs.get();
+            input.reset(buffer, offset, length);
+            unpacker.reset(input);
+            return unpackMessage(unpacker, new Source(null, ByteBuffer.wrap(buffer, offset, length).slice()));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    Message decodeValue(byte[] buffer, int offset, int length) {
+        return decodeMessage(buffer, offset, length);
+    }
+
+    Map<String, int[]> index(byte[] buffer, int offset, int length) {
+        MessageUnpacker unpacker = unpackers.get();
+        try {
+            ArrayBufferInput input = inputs.get();
+            input.reset(buffer, offset, length);
+            unpacker.reset(input);
+
+            boolean array = unpacker.getNextFormat().getValueType() == ValueType.ARRAY;
+            int size = array ? unpacker.unpackArrayHeader() : unpacker.unpackMapHeader();
+            Map<String, int[]> index = new LinkedHashMap<String, int[]>();
+            for (int i = 0; i < size; i++) {
+                String key = array ? CompositeMessage.keyOf(i) : unpackKey(unpacker, buffer, offset);
+                int start = (int) unpacker.getTotalReadBytes();
+                unpacker.skipValue();
+                index.put(key, new int[]{offset + start, (int) unpacker.getTotalReadBytes() - start});
+            }
+            return index;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private String unpackKey(MessageUnpacker unpacker, byte[] buffer, int offset) throws IOException {
+        if (unpacker.getNextFormat().getValueType() != ValueType.STRING) {
+            throw new RuntimeException("invalid format");
+        }
+
+        int start = skip(unpacker);
+        int end = (int) unpacker.getTotalReadBytes();
+        int header = headerSize(buffer[offset + start]);
+        return interner.intern(buffer, offset + start + header, end - start - header);
+    }
+
+    private static int headerSize(byte format) {
+        switch (format) {
+            case (byte) 0xc4:
+            case (byte) 0xd9:
+                return 2;
+            case (byte) 0xc5:
+            case (byte) 0xda:
+                return 3;
+            case (byte) 0xc6:
+            case (byte) 0xdb:
+                return 5;
+            default:
+                return 1;
+        }
+    }
+
+    private void packSignal(MessagePacker packer, Signal signal) throws IOException {
+        if (signal instanceof OkSignal) {
+            Integer encoding = ((OkSignal) signal).getEncoding();
+            packer.packArrayHeader(encoding == null ? 1 : 2).packString("OK");
+            if (encoding != null) {
+                packer.packInt(encoding);
+            }
+        } else if (signal instanceof FailedSignal) {
+            packer.packArrayHeader(2).packString("FAILED");
+            packString(packer, ((FailedSignal) signal).getCause());
+        } else if (signal instanceof DeliverSignal) {
+            Delivery delivery = ((DeliverSignal) signal).getDelivery();
+            packDelivery(packer, delivery, delivery.getMessage());
+        } else if (signal instanceof MulticastSignal) {
+            List<Delivery> deliveries = ((MulticastSignal) signal).getDeliveries();
+            packer.packArrayHeader(deliveries.size() * 2 + 3).packString("MULTICAST");
+            packMessage(packer, deliveries.get(0).getMessage());
+            packer.packInt(deliveries.get(0).getHops());
+            for (Delivery delivery : deliveries) {
+                packUuid(packer, delivery.getUuid());
+                packUuid(packer, delivery.getReceiver().getUuid());
+            }
+        } else if (signal instanceof JoinSignal) {
+            List<Integer> encodings = ((JoinSignal) signal).getEncodings();
+            packer.packArrayHeader(encodings.isEmpty() ? 1 : 2).packString("JOIN");
+            if (!encodings.isEmpty()) {
+                packer.packArrayHeader(encodings.size());
+                for (int tag : encodings) {
+                    packer.packInt(tag);
+                }
+            }
+        } else if (signal instanceof LeaveSignal) {
+            packer.packArrayHeader(1).packString("LEAVE");
+        } else if (signal instanceof BatchSignal) {
+            List<Signal> signals = ((BatchSignal) signal).getSignals();
+            Map<Message, Message> shared = shareRepeatedMessages(signals);
+            packer.packArrayHeader(signals.size() + 1).packString("BATCH");
+            for (Signal batched : signals) {
+                Message message = batched instanceof DeliverSignal
+                        ? shared.get(((DeliverSignal) batched).getDelivery().getMessage())
+                        : null;
+                if (message != null) {
+                    packDelivery(packer, ((DeliverSignal) batched).getDelivery(), message);
+                } else {
+                    packSignal(packer, batched);
+                }
+            }
+        } else {
+            throw new RuntimeException("unsupported signal type: " + signal.getClass());
+        }
+    }
+
+    private void packDelivery(MessagePacker packer, Delivery delivery, Message message) throws IOException {
+        boolean relayed = delivery.getHops() > 0;
+
+        packer.packArrayHeader(relayed ? 5 : 4).packString("DELIVER");
+        packUuid(packer, delivery.getUuid());
+        packUuid(packer, delivery.getReceiver().getUuid());
+        packMessage(packer, message);
+        if (relayed) {
+            packer.packInt(delivery.getHops());
+        }
+    }
+
+    private Map<Message, Message> shareRepeatedMessages(List<Signal> signals) throws IOException {
+        Map<Message, Message> shared = new IdentityHashMap<Message, Message>();
+        Set<Message> seen = Collections.newSetFromMap(new IdentityHashMap<Message, Boolean>());
+        for (Signal signal : signals) {
+            if (!(signal instanceof DeliverSignal)) {
+                continue;
+            }
+            Message message = ((DeliverSignal) signal).getDelivery().getMessage();
+            if (!seen.add(message) && !shared.containsKey(message) && !(message instanceof EncodedMessage)) {
+                MessageBufferPacker packer = MessagePack.newDefaultBufferPacker();
+                packMessage(packer, message);
+                byte[] bytes = packer.toByteArray();
+                shared.put(message, new EncodedMessage(MsgpackEncoding.TAG, bytes, 0, bytes.length, decoder));
+            }
+        }
+        return shared;
+    }
+
+    private Signal unpackSignal(MessageUnpacker unpacker, int size, Source source) throws IOException {
+        if (size == 0) {
+            throw new RuntimeException("invalid format");
+        }
+
+        String type = unpackType(unpacker);
+        if (type.equals("OK")) {
+            if (size > 1 && unpacker.getNextFormat().getValueType() == ValueType.INTEGER) {
+                int encoding = unpacker.unpackInt();
+                unpacker.skipValue(size - 2);
+                return new OkSignal(encoding);
+            }
+            unpacker.skipValue(size - 1);
+            return new OkSignal();
+        } else if (type.equals("FAILED")) {
+            if (size == 1) {
+                return new FailedSignal();
+            }
+            String cause = unpackNullableString(unpacker);
+            unpacker.skipValue(size - 2);
+            return new FailedSignal(cause);
+        } else if (type.equals("DELIVER")) {
+            if (size != 4 && size != 5) {
+                throw new RuntimeException("invalid format");
+            }
+
+            Uuid uuid = unpackUuid(unpacker, source);
+            Address receiver = new Address(unpackUuid(unpacker, source));
+            Message message = unpackDeliveredMessage(unpacker, source);
+            int hops = size == 5 ? unpacker.unpackInt() : 0;
+
+            return new DeliverSignal(new Delivery(uuid, receiver, message, hops));
+        } else if (type.equals("MULTICAST")) {
+            if (size < 5 || size % 2 == 0) {
+                throw new RuntimeException("invalid format");
+            }
+
+            Message message = unpackDeliveredMessage(unpacker, source);
+            int hops = unpacker.unpackInt();
+            List<Delivery> deliveries = new ArrayList<Delivery>((size - 3) / 2);
+            for (int i = 3; i < size; i += 2) {
+                Uuid uuid = unpackUuid(unpacker, source);
+                Address receiver = new Address(unpackUuid(unpacker, source));
+                deliveries.add(new Delivery(uuid, receiver, message, hops));
+            }
+            return new MulticastSignal(deliveries);
+        } else if (type.equals("JOIN")) {
+            if (size > 1 && unpacker.getNextFormat().getValueType() == ValueType.ARRAY) {
+                int count = unpacker.unpackArrayHeader();
+                List<Integer> encodings = new ArrayList<Integer>(count);
+                for (int i = 0; i < count; i++) {
+                    encodings.add(unpacker.unpackInt());
+                }
+                unpacker.skipValue(size - 2);
+                return new JoinSignal(encodings);
+            }
+            unpacker.skipValue(size - 1);
+            return new JoinSignal();
+        } else if (type.equals("LEAVE")) {
+            unpacker.skipValue(size - 1);
+            return new LeaveSignal();
+        } else if (type.equals("BATCH")) {
+            List<Signal> signals = new ArrayList<Signal>(size - 1);
+            for (int i = 1; i < size; i++) {
+                if (unpacker.getNextFormat().getValueType() != ValueType.ARRAY) {
+                    throw new RuntimeException("invalid format");
+                }
+                signals.add(unpackSignal(unpacker, unpacker.unpackArrayHeader(), source));
+            }
+            return new BatchSignal(signals);
+        } else {
+            throw new RuntimeException(FailedSignal.UNSUPPORTED + type);
+        }
+    }
+
+    private void packMessage(MessagePacker packer, Message message) throws IOException {
+        if (message instanceof EncodedMessage) {
+            EncodedMessage encoded = (EncodedMessage) message;
+            if (encoded.getFormat() != MsgpackEncoding.TAG) {
+                packMessage(packer, encoded.decode());
+                return;
+            }
+            ByteBuffer bytes = encoded.getEncoded();
+            packer.addPayload(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+        } else if (message instanceof NullMessage) {
+            packer.packNil();
+        } else if (message instanceof StringMessage) {
+            packer.packString(message.asString());
+        } else if (message instanceof BooleanMessage) {
+            packer.packBoolean(message.isTrue());
+        } else if (message instanceof IntegerMessage) {
+            packer.packInt(message.asInteger());
+        } else if (message instanceof BinaryMessage) {
+            ByteBuffer bytes = ((BinaryMessage) message).asByteBuffer();
+            packPrefixed(packer, 0, bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+        } else if (message instanceof AddressMessage) {
+            byte[] bytes = message.asBytes();
+            packPrefixed(packer, 1, bytes, 0, bytes.length);
+        } else if (message instanceof MsgpackCompositeMessage && isForwardable((MsgpackCompositeMessage) message)) {
+            ByteBuffer bytes = ((MsgpackCompositeMessage) message).getEncoded();
+            packer.addPayload(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+        } else if (message instanceof CompositeMessage && packArrays && ((CompositeMessage) message).isList()
+                && ((CompositeMessage) message).getSize() > 0) {
+            int size = ((CompositeMessage) message).getSize();
+            packer.packArrayHeader(size);
+            for (int i = 0; i < size; i++) {
+                packMessage(packer, message.read(i));
+            }
+        } else if (message instanceof CompositeMessage) {
+            packer.packMapHeader(message.keys().size());
+            for (String key : message.keys()) {
+                packer.packString(key);
+                packMessage(packer, message.read(key));
+            }
+        } else {
+            throw new RuntimeException("unsupported message type: " + message.getClass());
+        }
+    }
+
+    private boolean isForwardable(MsgpackCompositeMessage message) {
+        return !message.isModified() && (packArrays || !message.getEncoding().isPackingArrays());
+    }
+
+    private Message unpackDeliveredMessage(MessageUnpacker unpacker, Source source) throws IOException {
+        if (unpacker.getNextFormat().getValueType() != ValueType.STRING) {
+            return unpackMessage(unpacker, source);
+        }
+
+        ByteBuffer encoded = source.own(skip(unpacker), (int) unpacker.getTotalReadBytes());
+        return new EncodedMessage(MsgpackEncoding.TAG, encoded.array(), encoded.arrayOffset(), encoded.remaining(), decoder);
+    }
+
+    private int skip(MessageUnpacker unpacker) throws IOException {
+        int offset = (int) unpacker.getTotalReadBytes();
+        unpacker.skipValue();
+        return offset;
+    }
+
+    private Message unpackMessage(MessageUnpacker unpacker, Source source) throws IOException {
+        MessageFormat format = unpacker.getNextFormat();
+        switch (format.getValueType()) {
+            case NIL:
+                unpacker.unpackNil();
+                return NullMessage.INSTANCE;
+            case STRING:
+                return new StringMessage(unpacker.unpackString());
+            case BOOLEAN:
+                return BooleanMessage.valueOf(unpacker.unpackBoolean());
+            case INTEGER:
+                long value = unpacker.unpackLong();
+                if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+                    throw new RuntimeException("unsupported message type");
+                }
+                return IntegerMessage.valueOf((int) value);
+            case BINARY:
+                return unpackPrefixed(unpacker, source);
+            case MAP:
+            case ARRAY:
+                ByteBuffer encoded = source.own(skip(unpacker), (int) unpacker.getTotalReadBytes());
+                return new MsgpackCompositeMessage(this, encoded.array(), encoded.arrayOffset(), encoded.remaining());
+            default:
+                throw new RuntimeException("unsupported message type");
+        }
+    }
+
+    private void packPrefixed(MessagePacker packer, int prefix, byte[] bytes, int offset, int length) throws IOException {
+        packer.packBinaryHeader(length + 1);
+        packer.writePayload(new byte[]{(byte) prefix});
+        packer.addPayload(bytes, offset, length);
+    }
+
+    private Message unpackPrefixed(MessageUnpacker unpacker, Source source) throws IOException {
+        int length = unpacker.unpackBinaryHeader();
+        if (length == 0) {
+            throw new RuntimeException("unsupported message type");
+        }
+
+        int offset = (int) unpacker.getTotalReadBytes();
+        unpacker.readPayloadAsReference(length);
+
+        byte prefix = source.buffer.get(offset);
+        if (prefix == 0) {
+            return source.binary(offset + 1, length - 1);
+        } else if (prefix == 1) {
+            return new AddressMessage(Address.fromBytes(source.copy(offset + 1, length - 1)));
+        }
+        throw new RuntimeException("unsupported message type");
+    }
+
+    private void packUuid(MessagePacker packer, Uuid uuid) throws IOException {
+        byte[] scratch = uuid.getLength() > Uuid.LENGTH ? new byte[uuid.getLength()] : scratches.get();
+        packer.packBinaryHeader(uuid.getLength());
+        packer.writePayload(scratch, 0, uuid.copyTo(scratch, 0));
+    }
+
+    private Uuid unpackUuid(MessageUnpacker unpacker, Source source) throws IOException {
+        if (unpacker.getNextFormat().getValueType() != ValueType.BINARY) {
+            throw new RuntimeException("invalid format");
+        }
+
+        int start = skip(unpacker);
+        int end = (int) unpacker.getTotalReadBytes();
+        int header = headerSize(source.buffer.get(start));
+        return Uuid.fromBytes(source.buffer.array(), source.buffer.arrayOffset() + start + header, end - start - header);
+    }
+
+    private void packString(MessagePacker packer, String string) throws IOException {
+        if (string == null) {
+            packer.packNil();
+        } else {
+            packer.packString(string);
+        }
+    }
+
+    private String unpackType(MessageUnpacker unpacker) throws IOException {
+        if (unpacker.getNextFormat().getValueType() != ValueType.STRING) {
+            throw new RuntimeException(FailedSignal.UNSUPPORTED + unpacker.unpackValue());
+        }
+        return unpacker.unpackString();
+    }
+
+    private String unpackNullableString(MessageUnpacker unpacker) throws IOException {
+        if (unpacker.getNextFormat() == MessageFormat.NIL) {
+            unpacker.unpackNil();
+            return null;
+        }
+        return unpacker.unpackString();
+    }
+
+    private static class Source {
+
+        private final Packet packet;
+        private final ByteBuffer buffer;
+
+        Source(Packet packet, ByteBuffer buffer) {
+            this.packet = packet;
+            this.buffer = buffer;
+        }
+
+        BinaryMessage binary(int offset, int length) {
+            if (copies(length)) {
+                return new BinaryMessage(copy(offset, length));
+            }
+            if (packet != null) {
+                packet.pin();
+            }
+            return new BinaryMessage(buffer.array(), buffer.arrayOffset() + offset, length);
+        }
+
+        ByteBuffer own(int start, int end) {
+            if (copies(end - start)) {
+                return ByteBuffer.wrap(copy(start, end - start));
+            }
+            if (packet != null) {
+                packet.pin();
+            }
+            return ByteBuffer.wrap(buffer.array(), buffer.arrayOffset() + start, end - start).slice();
+        }
+
+        private boolean copies(int length) {
+            return packet != null
+                    && (length < VIEW_THRESHOLD || (long) length * VIEW_MIN_SHARE < buffer.array().length);
+        }
+
+        byte[] copy(int offset, int length) {
+            int start = buffer.arrayOffset() + offset;
+            return Arrays.copyOfRange(buffer.array(), start, start + length);
+        }
+    }
+}
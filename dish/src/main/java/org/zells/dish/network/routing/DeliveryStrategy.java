@@ -0,0 +1,19 @@
+package org.zells.dish.network.routing;
+
+import org.zells.dish.delivery.Delivery;
+import org.zells.dish.delivery.Messenger;
+import org.zells.dish.network.Peer;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface DeliveryStrategy {
+
+    Messenger deliver(Delivery delivery, Collection<Peer> peers);
+
+    List<Messenger> deliverAll(List<Delivery> deliveries, Collection<Peer> peers);
+
+    void onConnect(Peer peer);
+
+    void onDisconnect(Peer peer);
+}
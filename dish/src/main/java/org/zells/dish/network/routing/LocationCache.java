@@ -0,0 +1,137 @@
+package org.zells.dish.network.routing;
+
+import org.zells.dish.delivery.Address;
+import org.zells.dish.network.Peer;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class LocationCache {
+
+    public static final int DEFAULT_CAPACITY = 10000;
+    public static final long DEFAULT_TIME_TO_LIVE_MILLIS = 5 * 60 * 1000;
+    public static final long DEFAULT_UNREACHABLE_TIME_TO_LIVE_MILLIS = 1000;
+
+    private final long timeToLiveMillis;
+    private final long unreachableTimeToLiveMillis;
+    private final Map<Address, Location> locations;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong unreachableHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public LocationCache() {
+        this(DEFAULT_CAPACITY, DEFAULT_TIME_TO_LIVE_MILLIS, DEFAULT_UNREACHABLE_TIME_TO_LIVE_MILLIS);
+    }
+
+    public LocationCache(final int capacity, long timeToLiveMillis, long unreachableTimeToLiveMillis) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Cache needs room for at least one location");
+        }
+
+        this.timeToLiveMillis = timeToLiveMillis;
+        this.unreachableTimeToLiveMillis = unreachableTimeToLiveMillis;
+        this.locations = new LinkedHashMap<Address, Location>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<Address, Location> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    synchronized public Location find(Address address) {
+        Location location = locations.get(address);
+        if (location != null && location.expiresAt <= now()) {
+            locations.remove(address);
+            location = null;
+        }
+
+        if (location == null) {
+            misses.incrementAndGet();
+        } else if (location.isUnreachable()) {
+            unreachableHits.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return location;
+    }
+
+    synchronized public void learn(Address address, Peer peer) {
+        locations.put(address, new Location(peer, expiry(timeToLiveMillis)));
+    }
+
+    synchronized public void unreachable(Address address) {
+        locations.put(address, new Location(null, expiry(unreachableTimeToLiveMillis)));
+    }
+
+    synchronized public void forget(Address address, Peer peer) {
+        Location location = locations.get(address);
+        if (location != null && location.peer == peer) {
+            locations.remove(address);
+        }
+    }
+
+    synchronized public void forget(Peer peer) {
+        Iterator<Location> iterator = locations.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().peer == peer) {
+                iterator.remove();
+            }
+        }
+    }
+
+    synchronized public void forgetUnreachable() {
+        forget((Peer) null);
+    }
+
+    synchronized public int size() {
+        return locations.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getUnreachableHits() {
+        return unreachableHits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public double getHitRate() {
+        long hits = getHits() + getUnreachableHits();
+        long total = hits + getMisses();
+        return total == 0 ? 0 : hits / (double) total;
+    }
+
+    private long expiry(long timeToLiveMillis) {
+        long now = now();
+        return timeToLiveMillis > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + timeToLiveMillis;
+    }
+
+    protected long now() {
+        return System.currentTimeMillis();
+    }
+
+    public static class Location {
+
+        private final Peer peer;
+        private final long expiresAt;
+
+        private Location(Peer peer, long expiresAt) {
+            this.peer = peer;
+            this.expiresAt = expiresAt;
+        }
+
+        public Peer getPeer() {
+            return peer;
+        }
+
+        public boolean isUnreachable() {
+            return peer == null;
+        }
+    }
+}
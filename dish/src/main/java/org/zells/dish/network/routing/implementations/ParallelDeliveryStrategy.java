@@ -0,0 +1,96 @@
+package org.zells.dish.network.routing.implementations;
+
+import org.zells.dish.delivery.BusyException;
+import org.zells.dish.delivery.Delivery;
+import org.zells.dish.delivery.Messenger;
+import org.zells.dish.delivery.ReceiverNotFoundException;
+import org.zells.dish.network.Peer;
+import org.zells.dish.network.routing.DeliveryStrategy;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ParallelDeliveryStrategy implements DeliveryStrategy {
+
+    public Messenger deliver(final Delivery delivery, Collection<Peer> peers) {
+        final Messenger messenger = new Messenger();
+        if (peers.isEmpty()) {
+            messenger.failed(new ReceiverNotFoundException(delivery));
+            return messenger;
+        }
+
+        final AtomicInteger pending = new AtomicInteger(peers.size());
+        final AtomicBoolean accepted = new AtomicBoolean();
+        final AtomicBoolean busy = new AtomicBoolean();
+        final AtomicReference<Exception> unreachable = new AtomicReference<Exception>();
+        final Queue<Messenger> attempts = new ConcurrentLinkedQueue<Messenger>();
+
+        for (final Peer peer : peers) {
+            if (messenger.isDone()) {
+                break;
+            }
+
+            Messenger attempt = peer.deliver(delivery);
+            attempts.add(attempt);
+
+            attempt.when(new Messenger.Delivered() {
+                public void then() {
+                    if (accepted.compareAndSet(false, true)) {
+                        deliveredBy(peer, delivery);
+                        messenger.delivered();
+                        cancel(attempts);
+                    }
+                }
+            }).when(new Messenger.Failed() {
+                public void then(Exception e) {
+                    if (e instanceof BusyException) {
+                        busy.set(true);
+                    } else if (!(e instanceof ReceiverNotFoundException)) {
+                        unreachable.compareAndSet(null, e);
+                    }
+                    if (pending.decrementAndGet() == 0) {
+                        if (busy.get()) {
+                            messenger.failed(new BusyException("Receiver is busy"));
+                        } else if (unreachable.get() != null) {
+                            messenger.failed(unreachable.get());
+                        } else {
+                            messenger.failed(new ReceiverNotFoundException(delivery));
+                        }
+                    }
+                }
+            });
+        }
+
+        return messenger;
+    }
+
+    public List<Messenger> deliverAll(List<Delivery> deliveries, Collection<Peer> peers) {
+        List<Messenger> messengers = new ArrayList<Messenger>(deliveries.size());
+        for (Delivery delivery : deliveries) {
+            messengers.add(deliver(delivery, peers));
+        }
+        return messengers;
+    }
+
+    protected void deliveredBy(Peer peer, Delivery delivery) {
+    }
+
+    private void cancel(Queue<Messenger> attempts) {
+        for (Messenger attempt : attempts) {
+            attempt.failed(new CancellationException("Delivered by another peer"));
+        }
+    }
+
+    public void onConnect(Peer peer) {
+    }
+
+    public void onDisconnect(Peer peer) {
+    }
+}
@@ -0,0 +1,143 @@
+package org.zells.dish.network.routing.implementations;
+
+import org.zells.dish.delivery.Address;
+import org.zells.dish.delivery.BusyException;
+import org.zells.dish.delivery.Delivery;
+import org.zells.dish.delivery.Messenger;
+import org.zells.dish.delivery.ReceiverNotFoundException;
+import org.zells.dish.network.Peer;
+import org.zells.dish.network.routing.LocationCache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class RoutedDeliveryStrategy extends ParallelDeliveryStrategy {
+
+    private LocationCache locations;
+
+    public RoutedDeliveryStrategy() {
+        this(new LocationCache());
+    }
+
+    public RoutedDeliveryStrategy(LocationCache locations) {
+        this.locations = locations;
+    }
+
+    public LocationCache getLocations() {
+        return locations;
+    }
+
+    public Messenger deliver(final Delivery delivery, final Collection<Peer> peers) {
+        final Address receiver = delivery.getReceiver();
+        LocationCache.Location location = locations.find(receiver);
+
+        if (location == null) {
+            return discover(delivery, peers);
+        } else if (location.isUnreachable()) {
+            Messenger messenger = new Messenger();
+            messenger.failed(new ReceiverNotFoundException(delivery));
+            return messenger;
+        }
+
+        final Peer known = location.getPeer();
+        if (!peers.contains(known)) {
+            locations.forget(receiver, known);
+            return discover(delivery, peers);
+        }
+
+        return followKnown(known.deliver(delivery), delivery, known, peers);
+    }
+
+    @Override
+    public List<Messenger> deliverAll(List<Delivery> deliveries, Collection<Peer> peers) {
+        Messenger[] messengers = new Messenger[deliveries.size()];
+        Map<Peer, List<Integer>> grouped = new LinkedHashMap<Peer, List<Integer>>();
+
+        for (int i = 0; i < deliveries.size(); i++) {
+            LocationCache.Location location = locations.find(deliveries.get(i).getReceiver());
+            if (location == null || location.isUnreachable() || !peers.contains(location.getPeer())) {
+                messengers[i] = deliver(deliveries.get(i), peers);
+                continue;
+            }
+            if (!grouped.containsKey(location.getPeer())) {
+                grouped.put(location.getPeer(), new ArrayList<Integer>());
+            }
+            grouped.get(location.getPeer()).add(i);
+        }
+
+        for (Peer known : grouped.keySet()) {
+            List<Delivery> batch = new ArrayList<Delivery>();
+            for (int i : grouped.get(known)) {
+                batch.add(deliveries.get(i));
+            }
+            List<Messenger> attempts = known.deliverAll(batch);
+            for (int j = 0; j < batch.size(); j++) {
+                messengers[grouped.get(known).get(j)] = followKnown(attempts.get(j), batch.get(j), known, peers);
+            }
+        }
+
+        return Arrays.asList(messengers);
+    }
+
+    private Messenger followKnown(Messenger attempt, final Delivery delivery, final Peer known,
+                                  final Collection<Peer> peers) {
+        final Messenger messenger = new Messenger();
+        attempt.when(new Messenger.Delivered() {
+            public void then() {
+                messenger.delivered();
+            }
+        }).when(new Messenger.Failed() {
+            public void then(Exception e) {
+                if (e instanceof BusyException) {
+                    messenger.failed(e);
+                    return;
+                }
+                locations.forget(delivery.getReceiver(), known);
+                messenger.follow(discover(delivery, without(peers, known)));
+            }
+        });
+        return messenger;
+    }
+
+    private Messenger discover(final Delivery delivery, Collection<Peer> peers) {
+        final Messenger messenger = new Messenger();
+        super.deliver(delivery, peers).when(new Messenger.Delivered() {
+            public void then() {
+                messenger.delivered();
+            }
+        }).when(new Messenger.Failed() {
+            public void then(Exception e) {
+                if (e instanceof ReceiverNotFoundException && delivery.getHops() == 0) {
+                    locations.unreachable(delivery.getReceiver());
+                }
+                messenger.failed(e);
+            }
+        });
+        return messenger;
+    }
+
+    @Override
+    protected void deliveredBy(Peer peer, Delivery delivery) {
+        locations.learn(delivery.getReceiver(), peer);
+    }
+
+    @Override
+    public void onConnect(Peer peer) {
+        locations.forgetUnreachable();
+    }
+
+    @Override
+    public void onDisconnect(Peer peer) {
+        locations.forget(peer);
+    }
+
+    private List<Peer> without(Collection<Peer> peers, Peer excluded) {
+        List<Peer> remaining = new ArrayList<Peer>(peers);
+        remaining.remove(excluded);
+        return remaining;
+    }
+}
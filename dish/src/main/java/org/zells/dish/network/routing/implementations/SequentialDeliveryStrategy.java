@@ -0,0 +1,62 @@
+package org.zells.dish.network.routing.implementations;
+
+import org.zells.dish.delivery.BusyException;
+import org.zells.dish.delivery.Delivery;
+import org.zells.dish.delivery.Messenger;
+import org.zells.dish.delivery.ReceiverNotFoundException;
+import org.zells.dish.network.Peer;
+import org.zells.dish.network.routing.DeliveryStrategy;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+public class SequentialDeliveryStrategy implements DeliveryStrategy {
+
+    public Messenger deliver(Delivery delivery, Collection<Peer> peers) {
+        Messenger messenger = new Messenger();
+        probe(new ArrayList<Peer>(peers).iterator(), delivery, messenger, false, null);
+        return messenger;
+    }
+
+    private void probe(final Iterator<Peer> remaining, final Delivery delivery, final Messenger messenger,
+                       final boolean busy, final Exception unreachable) {
+        if (!remaining.hasNext()) {
+            if (busy) {
+                messenger.failed(new BusyException("Receiver is busy"));
+            } else if (unreachable != null) {
+                messenger.failed(unreachable);
+            } else {
+                messenger.failed(new ReceiverNotFoundException(delivery));
+            }
+            return;
+        }
+
+        remaining.next().deliver(delivery).when(new Messenger.Delivered() {
+            public void then() {
+                messenger.delivered();
+            }
+        }).when(new Messenger.Failed() {
+            public void then(Exception e) {
+                boolean explained = e instanceof BusyException || e instanceof ReceiverNotFoundException;
+                probe(remaining, delivery, messenger, busy || e instanceof BusyException,
+                        unreachable == null && !explained ? e : unreachable);
+            }
+        });
+    }
+
+    public List<Messenger> deliverAll(List<Delivery> deliveries, Collection<Peer> peers) {
+        List<Messenger> messengers = new ArrayList<Messenger>(deliveries.size());
+        for (Delivery delivery : deliveries) {
+            messengers.add(deliver(delivery, peers));
+        }
+        return messengers;
+    }
+
+    public void onConnect(Peer peer) {
+    }
+
+    public void onDisconnect(Peer peer) {
+    }
+}
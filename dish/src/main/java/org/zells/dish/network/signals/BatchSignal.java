@@ -0,0 +1,29 @@
+package org.zells.dish.network.signals;
+
+import org.zells.dish.network.Signal;
+
+import java.util.List;
+
+public class BatchSignal implements Signal {
+
+    private List<Signal> signals;
+
+    public BatchSignal(List<Signal> signals) {
+        this.signals = signals;
+    }
+
+    public List<Signal> getSignals() {
+        return signals;
+    }
+
+    @Override
+    public int hashCode() {
+        return getClass().hashCode() + signals.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof BatchSignal
+                && signals.equals(((BatchSignal) obj).signals);
+    }
+}
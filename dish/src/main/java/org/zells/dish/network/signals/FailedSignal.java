@@ -4,6 +4,9 @@ import org.zells.dish.network.Signal;
 
 public class FailedSignal implements Signal {
 
+    public static final String BUSY = "busy";
+    public static final String UNSUPPORTED = "unsupported signal: ";
+
     private String cause;
 
     public FailedSignal() {
@@ -13,10 +16,34 @@ public class FailedSignal implements Signal {
         this.cause = cause;
     }
 
+    public static FailedSignal busy() {
+        return new FailedSignal(BUSY);
+    }
+
+    public static FailedSignal causedBy(Exception e) {
+        return new FailedSignal(e.getMessage() == null ? e.getClass().getName() : e.getMessage());
+    }
+
+    public static FailedSignal unsupported(String type) {
+        return new FailedSignal(UNSUPPORTED + type);
+    }
+
     public String getCause() {
         return cause;
     }
 
+    public boolean isNotFound() {
+        return cause == null;
+    }
+
+    public boolean isBusy() {
+        return BUSY.equals(cause);
+    }
+
+    public boolean isUnsupported(String type) {
+        return (UNSUPPORTED + type).equals(cause);
+    }
+
     @Override
     public int hashCode() {
         return cause == null ? getClass().hashCode() : cause.hashCode();
@@ -2,15 +2,33 @@ package org.zells.dish.network.signals;
 
 import org.zells.dish.network.Signal;
 
+import java.util.Collections;
+import java.util.List;
+
 public class JoinSignal implements Signal {
 
+    private List<Integer> encodings;
+
+    public JoinSignal() {
+        this(Collections.<Integer>emptyList());
+    }
+
+    public JoinSignal(List<Integer> encodings) {
+        this.encodings = encodings;
+    }
+
+    public List<Integer> getEncodings() {
+        return encodings;
+    }
+
     @Override
     public int hashCode() {
-        return getClass().hashCode();
+        return getClass().hashCode() + encodings.hashCode();
     }
 
     @Override
     public boolean equals(Object obj) {
-        return obj instanceof JoinSignal;
+        return obj instanceof JoinSignal
+                && encodings.equals(((JoinSignal) obj).encodings);
     }
 }
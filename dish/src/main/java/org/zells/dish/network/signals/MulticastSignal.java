@@ -0,0 +1,43 @@
+package org.zells.dish.network.signals;
+
+import org.zells.dish.delivery.Delivery;
+import org.zells.dish.network.Signal;
+
+import java.util.List;
+
+public class MulticastSignal implements Signal {
+
+    private List<Delivery> deliveries;
+
+    public MulticastSignal(List<Delivery> deliveries) {
+        if (deliveries.isEmpty()) {
+            throw new IllegalArgumentException("Multicast needs at least one delivery");
+        }
+        this.deliveries = deliveries;
+    }
+
+    public List<Delivery> getDeliveries() {
+        return deliveries;
+    }
+
+    public static boolean isPossible(List<Delivery> deliveries) {
+        for (Delivery delivery : deliveries) {
+            if (delivery.getMessage() != deliveries.get(0).getMessage()
+                    || delivery.getHops() != deliveries.get(0).getHops()) {
+                return false;
+            }
+        }
+        return !deliveries.isEmpty();
+    }
+
+    @Override
+    public int hashCode() {
+        return getClass().hashCode() + deliveries.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof MulticastSignal
+                && deliveries.equals(((MulticastSignal) obj).deliveries);
+    }
+}
@@ -4,13 +4,28 @@ import org.zells.dish.network.Signal;
 
 public class OkSignal implements Signal {
 
+    private Integer encoding;
+
+    public OkSignal() {
+    }
+
+    public OkSignal(int encoding) {
+        this.encoding = encoding;
+    }
+
+    public Integer getEncoding() {
+        return encoding;
+    }
+
     @Override
     public int hashCode() {
-        return getClass().hashCode();
+        return encoding == null ? getClass().hashCode() : encoding.hashCode();
     }
 
     @Override
     public boolean equals(Object obj) {
-        return obj instanceof OkSignal;
+        return obj instanceof OkSignal
+                && (encoding == null && ((OkSignal) obj).encoding == null
+                || encoding != null && encoding.equals(((OkSignal) obj).encoding));
     }
 }
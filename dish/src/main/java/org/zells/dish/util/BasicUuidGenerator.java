@@ -1,10 +1,28 @@
 package org.zells.dish.util;
 
-import java.util.UUID;
+import java.security.SecureRandom;
 
 public class BasicUuidGenerator implements UuidGenerator {
 
+    private static final SecureRandom seeds = new SecureRandom();
+
+    private static final ThreadLocal<long[]> states = new ThreadLocal<long[]>() {
+        protected long[] initialValue() {
+            return new long[]{seeds.nextLong(), seeds.nextLong()};
+        }
+    };
+
     public Uuid generate() {
-        return Uuid.fromString(UUID.randomUUID().toString());
+        long[] state = states.get();
+        long high = next(state, 0);
+        long low = next(state, 1);
+        return new Uuid((high & ~0xF000L) | 0x4000L, (low & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L);
+    }
+
+    private static long next(long[] state, int half) {
+        long z = state[half] += 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
     }
 }
@@ -0,0 +1,107 @@
+package org.zells.dish.util;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public class Interner {
+
+    public static final int DEFAULT_CAPACITY = 4096;
+    public static final int MAX_LENGTH = 32;
+
+    private static final int MAX_PROBES = 8;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final AtomicReferenceArray<String> table;
+    private final int mask;
+
+    public Interner() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public Interner(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        table = new AtomicReferenceArray<String>(capacity);
+        mask = capacity - 1;
+    }
+
+    public static Interner shared() {
+        return Shared.INSTANCE;
+    }
+
+    public String intern(String key) {
+        int length = key.length();
+        if (length > MAX_LENGTH) {
+            return key;
+        }
+
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            char c = key.charAt(i);
+            if (c >= 0x80) {
+                return key;
+            }
+            hash = 31 * hash + c;
+        }
+
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int slot = (spread(hash) + probe) & mask;
+            String interned = table.get(slot);
+            if (interned == null) {
+                return table.compareAndSet(slot, null, key) ? key : intern(key);
+            }
+            if (interned.equals(key)) {
+                return interned;
+            }
+        }
+        return key;
+    }
+
+    public String intern(byte[] bytes, int offset, int length) {
+        if (length > MAX_LENGTH) {
+            return new String(bytes, offset, length, UTF8);
+        }
+
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            if (bytes[i] < 0) {
+                return new String(bytes, offset, length, UTF8);
+            }
+            hash = 31 * hash + bytes[i];
+        }
+
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int slot = (spread(hash) + probe) & mask;
+            String interned = table.get(slot);
+            if (interned == null) {
+                String key = new String(bytes, offset, length, UTF8);
+                return table.compareAndSet(slot, null, key) ? key : intern(key);
+            }
+            if (matches(interned, bytes, offset, length)) {
+                return interned;
+            }
+        }
+        return new String(bytes, offset, length, UTF8);
+    }
+
+    private static boolean matches(String interned, byte[] bytes, int offset, int length) {
+        if (interned.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (interned.charAt(i) != bytes[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static class Shared {
+        static final Interner INSTANCE = new Interner();
+    }
+}
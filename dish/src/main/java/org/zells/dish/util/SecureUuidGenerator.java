@@ -0,0 +1,11 @@
+package org.zells.dish.util;
+
+import java.util.UUID;
+
+public class SecureUuidGenerator implements UuidGenerator {
+
+    public Uuid generate() {
+        UUID uuid = UUID.randomUUID();
+        return new Uuid(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+}
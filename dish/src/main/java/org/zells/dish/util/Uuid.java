@@ -4,33 +4,106 @@ import java.util.Arrays;
 
 public class Uuid {
 
-    private byte[] bytes;
+    public static final int LENGTH = 16;
+
+    private final long high;
+    private final long low;
+    private final int length;
+    private final byte[] overflow;
+    private final int hash;
+
+    public Uuid(long high, long low) {
+        this(high, low, LENGTH, null);
+    }
 
     public Uuid(byte[] bytes) {
-        this.bytes = bytes;
+        this(bytes, 0, bytes.length);
+    }
+
+    private Uuid(long high, long low, int length, byte[] overflow) {
+        this.high = high;
+        this.low = low;
+        this.length = length;
+        this.overflow = overflow;
+        this.hash = overflow != null
+                ? Arrays.hashCode(overflow)
+                : (int) (high ^ (high >>> 32)) * 31 + (int) (low ^ (low >>> 32)) + length;
+    }
+
+    private Uuid(byte[] bytes, int offset, int length) {
+        this(pack(bytes, offset, length, 0), pack(bytes, offset, length, 8), length,
+                length > LENGTH ? Arrays.copyOfRange(bytes, offset, offset + length) : null);
+    }
+
+    public static Uuid fromBytes(byte[] bytes, int offset, int length) {
+        return new Uuid(bytes, offset, length);
     }
 
     public static Uuid fromString(String hexString) {
         return new Uuid(ByteArray.fromHexString(hexString));
     }
 
+    public long getHigh() {
+        return high;
+    }
+
+    public long getLow() {
+        return low;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
     public byte[] getBytes() {
+        byte[] bytes = new byte[length];
+        copyTo(bytes, 0);
         return bytes;
     }
 
+    public int copyTo(byte[] target, int offset) {
+        if (overflow != null) {
+            System.arraycopy(overflow, 0, target, offset, length);
+            return length;
+        }
+        for (int i = 0; i < length; i++) {
+            long word = i < 8 ? high : low;
+            target[offset + i] = (byte) (word >>> (56 - 8 * (i % 8)));
+        }
+        return length;
+    }
+
     @Override
     public String toString() {
-        return ByteArray.toHexString(bytes);
+        return ByteArray.toHexString(getBytes());
     }
 
     @Override
     public int hashCode() {
-        return Arrays.hashCode(bytes);
+        return hash;
     }
 
     @Override
     public boolean equals(Object obj) {
-        return obj instanceof Uuid
-                && Arrays.equals(bytes, ((Uuid) obj).bytes);
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof Uuid)) {
+            return false;
+        }
+        Uuid other = (Uuid) obj;
+        return hash == other.hash
+                && high == other.high
+                && low == other.low
+                && length == other.length
+                && (overflow == null || Arrays.equals(overflow, other.overflow));
+    }
+
+    private static long pack(byte[] bytes, int offset, int length, int start) {
+        long word = 0;
+        for (int i = start; i < start + 8 && i < length; i++) {
+            word |= (bytes[offset + i] & 0xFFL) << (56 - 8 * (i - start));
+        }
+        return word;
     }
 }
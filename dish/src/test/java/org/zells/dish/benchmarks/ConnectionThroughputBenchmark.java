@@ -0,0 +1,68 @@
+package org.zells.dish.benchmarks;
+
+import org.zells.dish.Dish;
+import org.zells.dish.Zell;
+import org.zells.dish.delivery.Address;
+import org.zells.dish.delivery.DeliveryExecutors;
+import org.zells.dish.delivery.Message;
+import org.zells.dish.delivery.Overflow;
+import org.zells.dish.delivery.messages.StringMessage;
+import org.zells.dish.network.Peer;
+import org.zells.dish.network.connecting.implementations.socket.TcpSocketConnection;
+import org.zells.dish.network.connecting.implementations.socket.TcpSocketServer;
+
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class ConnectionThroughputBenchmark {
+
+    private static final int PORT = 42498;
+    private static final int SENDERS = 64;
+    private static final int WARM_UP = 20000;
+    private static final int MESSAGES = 100000;
+
+    public static void main(String[] args) throws Exception {
+        int[] batchSizes = {1, 32};
+        for (int i = 0; i < batchSizes.length; i++) {
+            run(batchSizes[i], PORT - i);
+        }
+    }
+
+    private static void run(int batchSize, int port) throws Exception {
+        Dish one = Dish.buildDefault()
+                .setExecutor(DeliveryExecutors.fixed(SENDERS, 1000, DeliveryExecutors.Rejection.CALLER_RUNS))
+                .setPeerQueueCapacity(Peer.DEFAULT_QUEUE_CAPACITY, Overflow.BLOCK)
+                .setPeerBatching(batchSize, 1);
+        Dish two = Dish.buildDefault();
+
+        final CountDownLatch[] received = {null};
+        Address receiver = two.add(new Zell() {
+            public void receive(Message message) {
+                received[0].countDown();
+            }
+        });
+
+        TcpSocketServer server = new TcpSocketServer(new ServerSocket(port)).start(two);
+        TcpSocketConnection connection = new TcpSocketConnection(new Socket("localhost", port)).open();
+        one.join(connection);
+
+        Message message = new StringMessage("small");
+        for (int count : new int[]{WARM_UP, MESSAGES}) {
+            received[0] = new CountDownLatch(count);
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                one.send(receiver, message);
+            }
+            if (!received[0].await(5, TimeUnit.MINUTES)) {
+                throw new RuntimeException("Timed out");
+            }
+            System.out.printf("batches of %2d, %d messages: %.0f messages/sec%n",
+                    batchSize, count, count / ((System.nanoTime() - start) / 1e9));
+        }
+
+        connection.close();
+        server.stop();
+    }
+}
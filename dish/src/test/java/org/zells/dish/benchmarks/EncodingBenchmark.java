@@ -0,0 +1,127 @@
+package org.zells.dish.benchmarks;
+
+import org.zells.dish.delivery.Address;
+import org.zells.dish.delivery.Delivery;
+import org.zells.dish.delivery.Message;
+import org.zells.dish.delivery.messages.*;
+import org.zells.dish.network.Signal;
+import org.zells.dish.network.connecting.Packet;
+import org.zells.dish.network.encoding.Encoding;
+import org.zells.dish.network.encoding.implementations.DeflateEncoding;
+import org.zells.dish.network.encoding.implementations.MsgpackEncoding;
+import org.zells.dish.network.encoding.implementations.StreamingMsgpackEncoding;
+import org.zells.dish.network.signals.DeliverSignal;
+import org.zells.dish.util.Uuid;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class EncodingBenchmark {
+
+    private static final long WARM_UP_NANOS = 2000000000L;
+    private static final long MEASURE_NANOS = 3000000000L;
+
+    private static int sink;
+
+    public static void main(String[] args) {
+        Map<String, Encoding> encodings = new LinkedHashMap<String, Encoding>();
+        encodings.put("jackson", new MsgpackEncoding());
+        encodings.put("streaming", new StreamingMsgpackEncoding());
+        encodings.put("arrays", new StreamingMsgpackEncoding().setPackArrays(true));
+        encodings.put("deflate", new DeflateEncoding(new StreamingMsgpackEncoding()));
+
+        Map<String, Signal> payloads = new LinkedHashMap<String, Signal>();
+        payloads.put("string", deliver(new StringMessage("Hello World")));
+        payloads.put("command", deliver(command()));
+        payloads.put("lobby", deliver(lobby(20)));
+        payloads.put("binary 4k", deliver(new BinaryMessage(new byte[4096])));
+        payloads.put("binary 4m", deliver(new BinaryMessage(new byte[4 * 1024 * 1024])));
+
+        for (String payload : payloads.keySet()) {
+            for (String name : encodings.keySet()) {
+                Encoding encoding = encodings.get(name);
+                Signal signal = payloads.get(payload);
+                Packet packet = encoding.encode(signal);
+
+                measureEncode(encoding, signal, WARM_UP_NANOS);
+                double encodes = measureEncode(encoding, signal, MEASURE_NANOS);
+                measureDecode(encoding, packet, WARM_UP_NANOS);
+                double decodes = measureDecode(encoding, packet, MEASURE_NANOS);
+                measureRelay(encoding, packet, WARM_UP_NANOS);
+                double relays = measureRelay(encoding, packet, MEASURE_NANOS);
+
+                System.out.printf("%-10s %-10s %6d bytes  encode %10.0f ops/sec  decode %10.0f ops/sec  relay %10.0f ops/sec%n",
+                        payload, name, packet.getBytes().length, encodes, decodes, relays);
+            }
+        }
+    }
+
+    private static double measureEncode(Encoding encoding, Signal signal, long nanos) {
+        long start = System.nanoTime();
+        long end = start + nanos;
+        long operations = 0;
+        while (System.nanoTime() < end) {
+            for (int i = 0; i < 1000; i++) {
+                sink += encoding.encode(signal).getBytes().length;
+            }
+            operations += 1000;
+        }
+        return operations / ((System.nanoTime() - start) / 1e9);
+    }
+
+    private static double measureDecode(Encoding encoding, Packet packet, long nanos) {
+        long start = System.nanoTime();
+        long end = start + nanos;
+        long operations = 0;
+        while (System.nanoTime() < end) {
+            for (int i = 0; i < 1000; i++) {
+                DeliverSignal signal = (DeliverSignal) encoding.decode(packet);
+                sink += EncodedMessage.decoded(signal.getDelivery().getMessage()).hashCode();
+            }
+            operations += 1000;
+        }
+        return operations / ((System.nanoTime() - start) / 1e9);
+    }
+
+    private static double measureRelay(Encoding encoding, Packet packet, long nanos) {
+        long start = System.nanoTime();
+        long end = start + nanos;
+        long operations = 0;
+        while (System.nanoTime() < end) {
+            for (int i = 0; i < 1000; i++) {
+                DeliverSignal signal = (DeliverSignal) encoding.decode(packet);
+                sink += encoding.encode(new DeliverSignal(signal.getDelivery().relayed())).getLength();
+            }
+            operations += 1000;
+        }
+        return operations / ((System.nanoTime() - start) / 1e9);
+    }
+
+    private static Signal deliver(Message message) {
+        return new DeliverSignal(new Delivery(
+                Uuid.fromString("0123456789abcdef0123456789abcdef"),
+                Address.fromString("fedcba9876543210fedcba9876543210"),
+                message));
+    }
+
+    private static Message command() {
+        return new CompositeMessage()
+                .put("go", new IntegerMessage(42))
+                .put("turn", new StringMessage("left"))
+                .put("pen", new BooleanMessage(true))
+                .put("respond", new AddressMessage(Address.fromString("00112233445566778899aabbccddeeff")));
+    }
+
+    private static Message lobby(int members) {
+        CompositeMessage list = new CompositeMessage();
+        for (int i = 0; i < members; i++) {
+            list.put(i, new CompositeMessage()
+                    .put("name", new StringMessage("member number " + i))
+                    .put("address", new AddressMessage(Address.fromString("00112233445566778899aabbccddee" + (10 + i))))
+                    .put("joined", new IntegerMessage(1400000000 + i)));
+        }
+        return new CompositeMessage()
+                .put("say", new StringMessage("Welcome to the lobby"))
+                .put("members", list);
+    }
+}
@@ -0,0 +1,172 @@
+package org.zells.dish.benchmarks;
+
+import org.zells.dish.Dish;
+import org.zells.dish.delivery.Address;
+import org.zells.dish.delivery.messages.StringMessage;
+import org.zells.dish.network.connecting.AsyncConnection;
+import org.zells.dish.network.connecting.Connection;
+import org.zells.dish.network.connecting.Packet;
+import org.zells.dish.network.connecting.PacketHandler;
+import org.zells.dish.network.routing.DeliveryStrategy;
+import org.zells.dish.network.routing.implementations.ParallelDeliveryStrategy;
+import org.zells.dish.network.routing.implementations.RoutedDeliveryStrategy;
+import org.zells.dish.network.routing.implementations.SequentialDeliveryStrategy;
+import org.zells.dish.tests.fakes.FakeZell;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class MeshRoutingBenchmark {
+
+    private static final int DISHES = 50;
+    private static final int CHORDS = 2;
+    private static final int LOOKUPS = 20;
+    private static final long LATENCY_MICROS = 500;
+
+    private static final ScheduledExecutorService wire = Executors.newScheduledThreadPool(4);
+    private static final ExecutorService handlers = Executors.newCachedThreadPool();
+    private static final AtomicLong transmissions = new AtomicLong();
+
+    public static void main(String[] args) throws Exception {
+        run("sequential", new Strategies() {
+            public DeliveryStrategy create() {
+                return new SequentialDeliveryStrategy();
+            }
+        });
+        run("parallel", new Strategies() {
+            public DeliveryStrategy create() {
+                return new ParallelDeliveryStrategy();
+            }
+        });
+        run("routed", new Strategies() {
+            public DeliveryStrategy create() {
+                return new RoutedDeliveryStrategy();
+            }
+        });
+
+        wire.shutdownNow();
+        handlers.shutdownNow();
+    }
+
+    private static void run(String name, Strategies strategies) {
+        List<Dish> dishes = new ArrayList<Dish>();
+        List<Address> addresses = new ArrayList<Address>();
+        for (int i = 0; i < DISHES; i++) {
+            Dish dish = Dish.buildDefault().setDeliveryStrategy(strategies.create());
+            addresses.add(dish.add(new FakeZell()));
+            dishes.add(dish);
+        }
+
+        Random random = new Random(42);
+        for (int i = 0; i < DISHES; i++) {
+            link(dishes.get(i), dishes.get((i + 1) % DISHES));
+            for (int c = 0; c < CHORDS; c++) {
+                link(dishes.get(i), dishes.get(random.nextInt(DISHES)));
+            }
+        }
+
+        int[][] pairs = new int[LOOKUPS][];
+        for (int i = 0; i < LOOKUPS; i++) {
+            pairs[i] = new int[]{random.nextInt(DISHES), random.nextInt(DISHES)};
+        }
+
+        for (String round : new String[]{"cold", "warm"}) {
+            transmissions.set(0);
+            long start = System.nanoTime();
+            for (int[] pair : pairs) {
+                dishes.get(pair[0]).send(addresses.get(pair[1]), new StringMessage("hello")).sync(60);
+            }
+            System.out.printf("%-10s %s: %6.1f ms/lookup, %6.1f transmissions/lookup%n", name, round,
+                    (System.nanoTime() - start) / 1e6 / LOOKUPS, transmissions.get() / (double) LOOKUPS);
+        }
+
+        for (Dish dish : dishes) {
+            dish.leaveAll();
+        }
+    }
+
+    private static void link(Dish a, Dish b) {
+        if (a == b) {
+            return;
+        }
+
+        SimulatedLink ab = new SimulatedLink();
+        SimulatedLink ba = new SimulatedLink();
+        ab.other = ba;
+        ba.other = ab;
+
+        b.listen(ab);
+        a.join(ba);
+    }
+
+    private interface Strategies {
+        DeliveryStrategy create();
+    }
+
+    private static class SimulatedLink implements AsyncConnection {
+
+        private SimulatedLink other;
+        private PacketHandler handler;
+
+        public void transmit(final Packet packet, final Callback callback) {
+            transmissions.incrementAndGet();
+            wire.schedule(new Runnable() {
+                public void run() {
+                    handlers.execute(new Runnable() {
+                        public void run() {
+                            final Packet response = other.handler.handle(packet);
+                            wire.schedule(new Runnable() {
+                                public void run() {
+                                    callback.received(response);
+                                }
+                            }, LATENCY_MICROS, TimeUnit.MICROSECONDS);
+                        }
+                    });
+                }
+            }, LATENCY_MICROS, TimeUnit.MICROSECONDS);
+        }
+
+        public Packet transmit(Packet packet) throws IOException {
+            final Packet[] received = {null};
+            final CountDownLatch latch = new CountDownLatch(1);
+            transmit(packet, new Callback() {
+                public void received(Packet response) {
+                    received[0] = response;
+                    latch.countDown();
+                }
+
+                public void failed(Exception e) {
+                    latch.countDown();
+                }
+            });
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            if (received[0] == null) {
+                throw new IOException("No response");
+            }
+            return received[0];
+        }
+
+        public void setHandler(PacketHandler handler) {
+            this.handler = handler;
+        }
+
+        public Connection open() {
+            return this;
+        }
+
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package org.zells.dish.benchmarks;
+
+import org.zells.dish.Dish;
+import org.zells.dish.Zell;
+import org.zells.dish.delivery.Address;
+import org.zells.dish.delivery.Message;
+import org.zells.dish.delivery.messages.StringMessage;
+import org.zells.dish.network.connecting.implementations.socket.TcpSocketConnection;
+import org.zells.dish.network.connecting.implementations.socket.TcpSocketServer;
+
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+
+public class RoundTripLatencyBenchmark {
+
+    private static final int PORT = 42499;
+    private static final int WARM_UP = 2000;
+    private static final int ROUND_TRIPS = 10000;
+
+    public static void main(String[] args) throws Exception {
+        Dish one = Dish.buildDefault();
+        Dish two = Dish.buildDefault();
+        Address receiver = two.add(new Zell() {
+            public void receive(Message message) {
+            }
+        });
+
+        TcpSocketServer server = new TcpSocketServer(new ServerSocket(PORT)).start(two);
+        TcpSocketConnection connection = new TcpSocketConnection(new Socket("localhost", PORT)).open();
+        one.join(connection);
+
+        Message message = new StringMessage("ping");
+        for (int i = 0; i < WARM_UP; i++) {
+            one.send(receiver, message).sync();
+        }
+
+        long[] latencies = new long[ROUND_TRIPS];
+        for (int i = 0; i < ROUND_TRIPS; i++) {
+            long start = System.nanoTime();
+            one.send(receiver, message).sync();
+            latencies[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(latencies);
+
+        System.out.printf("median %8.3f ms%n", latencies[ROUND_TRIPS / 2] / 1e6);
+        System.out.printf("p99    %8.3f ms%n", latencies[ROUND_TRIPS * 99 / 100] / 1e6);
+        System.out.printf("max    %8.3f ms%n", latencies[ROUND_TRIPS - 1] / 1e6);
+
+        connection.close();
+        server.stop();
+    }
+}
@@ -0,0 +1,69 @@
+package org.zells.dish.benchmarks;
+
+import org.zells.dish.Dish;
+import org.zells.dish.Zell;
+import org.zells.dish.delivery.Address;
+import org.zells.dish.delivery.DeliveryExecutors;
+import org.zells.dish.delivery.Message;
+import org.zells.dish.delivery.messages.StringMessage;
+import org.zells.dish.network.encoding.EncodingRepository;
+import org.zells.dish.util.BasicUuidGenerator;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+public class SendThroughputBenchmark {
+
+    private static final int WARM_UP = 20000;
+    private static final int MESSAGES = 200000;
+
+    public static void main(String[] args) throws InterruptedException {
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        Map<String, Executor> modes = new LinkedHashMap<String, Executor>();
+        modes.put("thread per send", new Executor() {
+            public void execute(Runnable command) {
+                new Thread(command).start();
+            }
+        });
+        modes.put("cached pool", DeliveryExecutors.cached());
+        modes.put("fixed pool", DeliveryExecutors.fixed(cores, 10000, DeliveryExecutors.Rejection.BLOCK));
+        modes.put("work stealing", DeliveryExecutors.workStealing(cores));
+        if (DeliveryExecutors.supportsVirtualThreads()) {
+            modes.put("virtual threads", DeliveryExecutors.virtual());
+        }
+
+        for (String mode : modes.keySet()) {
+            for (boolean mailbox : new boolean[]{false, true}) {
+                run(modes.get(mode), WARM_UP, mailbox);
+                double rate = run(modes.get(mode), MESSAGES, mailbox);
+                System.out.printf("%-16s %-8s %12.0f messages/sec%n", mode, mailbox ? "mailbox" : "direct", rate);
+            }
+        }
+    }
+
+    private static double run(Executor executor, int count, boolean mailbox) throws InterruptedException {
+        final CountDownLatch received = new CountDownLatch(count);
+        Dish dish = new Dish(new BasicUuidGenerator(), new EncodingRepository()).setExecutor(executor);
+        Zell zell = new Zell() {
+            public void receive(Message message) {
+                received.countDown();
+            }
+        };
+        Address receiver = mailbox ? dish.addWithMailbox(zell) : dish.add(zell);
+
+        Message message = new StringMessage("benchmark");
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            dish.send(receiver, message);
+        }
+        if (!received.await(5, TimeUnit.MINUTES)) {
+            throw new RuntimeException("Timed out");
+        }
+
+        return count / ((System.nanoTime() - start) / 1e9);
+    }
+}
@@ -0,0 +1,75 @@
+package org.zells.dish.benchmarks;
+
+import org.zells.dish.util.BasicUuidGenerator;
+import org.zells.dish.util.SecureUuidGenerator;
+import org.zells.dish.util.Uuid;
+import org.zells.dish.util.UuidGenerator;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class UuidBenchmark {
+
+    private static final long MEASURE_NANOS = 2000000000L;
+
+    private static volatile int sink;
+
+    public static void main(String[] args) throws Exception {
+        for (int threads : new int[]{1, 4}) {
+            generate("secure", new SecureUuidGenerator(), threads);
+            generate("basic", new BasicUuidGenerator(), threads);
+        }
+        lookup();
+    }
+
+    private static void generate(String name, final UuidGenerator generator, int threads) throws Exception {
+        final AtomicLong operations = new AtomicLong();
+        final long end = System.nanoTime() + MEASURE_NANOS;
+
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread() {
+                public void run() {
+                    long count = 0;
+                    int hash = 0;
+                    while (System.nanoTime() < end) {
+                        for (int i = 0; i < 1000; i++) {
+                            hash += generator.generate().hashCode();
+                        }
+                        count += 1000;
+                    }
+                    sink += hash;
+                    operations.addAndGet(count);
+                }
+            };
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        System.out.printf("generate %-8s %d threads: %12.0f uuids/sec%n", name, threads, operations.get() / (MEASURE_NANOS / 1e9));
+    }
+
+    private static void lookup() {
+        BasicUuidGenerator generator = new BasicUuidGenerator();
+        Map<Uuid, Integer> map = new HashMap<Uuid, Integer>();
+        Uuid[] keys = new Uuid[10000];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = generator.generate();
+            map.put(keys[i], i);
+        }
+
+        long operations = 0;
+        long start = System.nanoTime();
+        long end = start + MEASURE_NANOS;
+        while (System.nanoTime() < end) {
+            for (Uuid key : keys) {
+                sink += map.get(new Uuid(key.getBytes()));
+            }
+            operations += keys.length;
+        }
+        System.out.printf("decode and look up: %12.0f ops/sec%n", operations / ((System.nanoTime() - start) / 1e9));
+    }
+}
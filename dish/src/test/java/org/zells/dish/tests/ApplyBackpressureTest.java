@@ -0,0 +1,237 @@
+package org.zells.dish.tests;
+
+import org.junit.Test;
+import org.zells.dish.Dish;
+import org.zells.dish.Zell;
+import org.zells.dish.delivery.Address;
+import org.zells.dish.delivery.BusyException;
+import org.zells.dish.delivery.Delivery;
+import org.zells.dish.delivery.Mailbox;
+import org.zells.dish.delivery.Message;
+import org.zells.dish.delivery.Messenger;
+import org.zells.dish.delivery.Overflow;
+import org.zells.dish.delivery.messages.StringMessage;
+import org.zells.dish.network.Peer;
+import org.zells.dish.network.Signal;
+import org.zells.dish.network.connecting.Connection;
+import org.zells.dish.network.encoding.EncodingRepository;
+import org.zells.dish.network.signals.FailedSignal;
+import org.zells.dish.network.signals.OkSignal;
+import org.zells.dish.tests.fakes.FakeAsyncConnection;
+import org.zells.dish.tests.fakes.FakeConnection;
+import org.zells.dish.util.BasicUuidGenerator;
+import org.zells.dish.util.Uuid;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+public class ApplyBackpressureTest {
+
+    private EncodingRepository encodings = new EncodingRepository().addAll(EncodingRepository.supportedEncodings());
+
+    private Executor direct = new Executor() {
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private List<Runnable> scheduled = new ArrayList<Runnable>();
+    private Executor held = new Executor() {
+        public void execute(Runnable command) {
+            scheduled.add(command);
+        }
+    };
+
+    private List<String> received = new ArrayList<String>();
+    private Zell recorder = new Zell() {
+        public void receive(Message message) {
+            received.add(message.asString());
+        }
+    };
+
+    @Test
+    public void failWhenMailboxIsFull() {
+        Mailbox mailbox = new Mailbox(recorder, held).setCapacity(2);
+
+        mailbox.receive(new StringMessage("one"));
+        mailbox.receive(new StringMessage("two"));
+        try {
+            mailbox.receive(new StringMessage("three"));
+            assert false;
+        } catch (BusyException ignored) {
+        }
+        drain();
+
+        assert received.toString().equals("[one, two]");
+        assert mailbox.getRejected() == 1;
+    }
+
+    @Test
+    public void dropNewestMessage() {
+        Mailbox mailbox = new Mailbox(recorder, held).setCapacity(2).setOverflow(Overflow.DROP_NEWEST);
+
+        mailbox.receive(new StringMessage("one"));
+        mailbox.receive(new StringMessage("two"));
+        mailbox.receive(new StringMessage("three"));
+        drain();
+
+        assert received.toString().equals("[one, two]");
+        assert mailbox.getDropped() == 1;
+    }
+
+    @Test
+    public void dropOldestMessage() {
+        Mailbox mailbox = new Mailbox(recorder, held).setCapacity(2).setOverflow(Overflow.DROP_OLDEST);
+
+        mailbox.receive(new StringMessage("one"));
+        mailbox.receive(new StringMessage("two"));
+        mailbox.receive(new StringMessage("three"));
+        drain();
+
+        assert received.toString().equals("[two, three]");
+        assert mailbox.getDropped() == 1;
+    }
+
+    @Test
+    public void blockSenderUntilMailboxHasSpace() throws InterruptedException {
+        final Mailbox mailbox = new Mailbox(recorder, held).setCapacity(1).setOverflow(Overflow.BLOCK);
+        mailbox.receive(new StringMessage("one"));
+
+        final CountDownLatch sent = new CountDownLatch(1);
+        new Thread() {
+            @Override
+            public void run() {
+                mailbox.receive(new StringMessage("two"));
+                sent.countDown();
+            }
+        }.start();
+
+        assert !sent.await(100, TimeUnit.MILLISECONDS);
+        drain();
+        assert sent.await(5, TimeUnit.SECONDS);
+        drain();
+
+        assert received.toString().equals("[one, two]");
+    }
+
+    @Test
+    public void failMessengerOfSender() {
+        Dish dish = new Dish(new BasicUuidGenerator(), encodings)
+                .setExecutor(direct)
+                .setMailboxExecutor(held)
+                .setMailboxCapacity(1, Overflow.FAIL);
+        Address receiver = dish.addWithMailbox(recorder);
+
+        assert dish.send(receiver, new StringMessage("one")).wasDelivered();
+        assert dish.send(receiver, new StringMessage("two")).getFailure() instanceof BusyException;
+    }
+
+    @Test
+    public void signalBusyOverTheWire() {
+        Dish one = new Dish(new BasicUuidGenerator(), encodings).setExecutor(direct);
+        Dish two = new Dish(new BasicUuidGenerator(), encodings)
+                .setExecutor(direct)
+                .setMailboxExecutor(held)
+                .setMailboxCapacity(1, Overflow.FAIL);
+        Address receiver = two.addWithMailbox(recorder);
+        one.join(connect(one, two));
+
+        assert one.send(receiver, new StringMessage("one")).sync().wasDelivered();
+        assert one.send(receiver, new StringMessage("two")).sync().getFailure() instanceof BusyException;
+    }
+
+    @Test
+    public void encodeBusySignal() {
+        Signal decoded = encodings.decode(encodings.encode(FailedSignal.busy()));
+
+        assert ((FailedSignal) decoded).isBusy();
+        assert !new FailedSignal("nope").isBusy();
+    }
+
+    @Test
+    public void failWhenQueueOfPeerIsFull() {
+        FakeAsyncConnection connection = new FakeAsyncConnection(encodings);
+        Peer peer = new Peer(encodings, connection, direct).setWindow(1).setQueueCapacity(1).setOverflow(Overflow.FAIL);
+
+        Messenger first = peer.deliver(aDelivery("01"));
+        Messenger second = peer.deliver(aDelivery("02"));
+        Messenger third = peer.deliver(aDelivery("03"));
+
+        assert third.getFailure() instanceof BusyException;
+        assert peer.getQueued() == 1;
+        assert peer.getDropped() == 1;
+
+        connection.respond(0, new OkSignal());
+        connection.respond(1, new OkSignal());
+        assert first.wasDelivered();
+        assert second.wasDelivered();
+    }
+
+    @Test
+    public void dropOldestQueuedDelivery() {
+        FakeAsyncConnection connection = new FakeAsyncConnection(encodings);
+        Peer peer = new Peer(encodings, connection, direct).setWindow(1).setQueueCapacity(1)
+                .setOverflow(Overflow.DROP_OLDEST);
+
+        peer.deliver(aDelivery("01"));
+        Messenger second = peer.deliver(aDelivery("02"));
+        Messenger third = peer.deliver(aDelivery("03"));
+
+        assert second.getFailure() instanceof BusyException;
+        assert !third.isDone();
+
+        connection.respond(0, new OkSignal());
+        connection.respond(1, new OkSignal());
+        assert third.wasDelivered();
+    }
+
+    @Test
+    public void neverBlockWhileRelaying() {
+        FakeAsyncConnection connection = new FakeAsyncConnection(encodings);
+        Peer peer = new Peer(encodings, connection, direct).setWindow(1).setQueueCapacity(1)
+                .setOverflow(Overflow.BLOCK);
+
+        peer.deliver(aDelivery("01"));
+        peer.deliver(aDelivery("02"));
+        Messenger relayed = peer.deliver(aDelivery("03").relayed());
+
+        assert relayed.getFailure() instanceof BusyException;
+        assert peer.getDropped() == 1;
+    }
+
+    @Test
+    public void failWithBusyPeer() {
+        FakeAsyncConnection connection = new FakeAsyncConnection(encodings);
+        Peer peer = new Peer(encodings, connection, direct);
+
+        Messenger messenger = peer.deliver(aDelivery("01"));
+        connection.respond(0, FailedSignal.busy());
+
+        assert messenger.getFailure() instanceof BusyException;
+    }
+
+    private void drain() {
+        while (!scheduled.isEmpty()) {
+            scheduled.remove(0).run();
+        }
+    }
+
+    private Delivery aDelivery(String uuid) {
+        return new Delivery(Uuid.fromString(uuid), new Address(Uuid.fromString("fade")), new StringMessage("foo"));
+    }
+
+    private Connection connect(Dish a, Dish b) {
+        FakeConnection ab = new FakeConnection();
+        FakeConnection ba = new FakeConnection();
+        ab.to(ba);
+        ba.to(ab);
+
+        b.listen(ab);
+        a.listen(ba);
+
+        return ba;
+    }
+}
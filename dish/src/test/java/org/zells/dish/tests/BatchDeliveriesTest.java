@@ -0,0 +1,235 @@
+package org.zells.dish.tests;
+
+import org.junit.Test;
+import org.zells.dish.Dish;
+import org.zells.dish.Zell;
+import org.zells.dish.delivery.Address;
+import org.zells.dish.delivery.Delivery;
+import org.zells.dish.delivery.Message;
+import org.zells.dish.delivery.Messenger;
+import org.zells.dish.delivery.messages.StringMessage;
+import org.zells.dish.network.Peer;
+import org.zells.dish.network.Signal;
+import org.zells.dish.network.connecting.implementations.socket.TcpSocketConnection;
+import org.zells.dish.network.connecting.implementations.socket.TcpSocketServer;
+import org.zells.dish.network.encoding.EncodingRepository;
+import org.zells.dish.network.routing.implementations.RoutedDeliveryStrategy;
+import org.zells.dish.network.signals.BatchSignal;
+import org.zells.dish.network.signals.DeliverSignal;
+import org.zells.dish.network.signals.FailedSignal;
+import org.zells.dish.network.signals.JoinSignal;
+import org.zells.dish.network.signals.OkSignal;
+import org.zells.dish.tests.fakes.FakeAsyncConnection;
+import org.zells.dish.tests.fakes.FakeLegacyConnection;
+import org.zells.dish.util.BasicUuidGenerator;
+import org.zells.dish.util.Uuid;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+public class BatchDeliveriesTest {
+
+    private EncodingRepository encodings = new EncodingRepository().addAll(EncodingRepository.supportedEncodings());
+
+    private Executor direct = new Executor() {
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Test
+    public void sendFullBatch() {
+        FakeAsyncConnection connection = new FakeAsyncConnection(encodings);
+        Peer peer = new Peer(encodings, connection, direct).setBatching(3, 10000);
+
+        Messenger first = peer.deliver(aDelivery("01"));
+        Messenger second = peer.deliver(aDelivery("02"));
+        assert connection.sent.isEmpty();
+
+        Messenger third = peer.deliver(aDelivery("03"));
+        assert connection.sent.size() == 1;
+        assert encodings.decode(connection.sent.get(0)).equals(new BatchSignal(Arrays.<Signal>asList(
+                new DeliverSignal(aDelivery("01")),
+                new DeliverSignal(aDelivery("02")),
+                new DeliverSignal(aDelivery("03")))));
+
+        connection.respond(0, new BatchSignal(Arrays.<Signal>asList(
+                new OkSignal(),
+                new FailedSignal("nope"),
+                new OkSignal())));
+        assert first.wasDelivered();
+        assert second.getFailure().getMessage().equals("nope");
+        assert third.wasDelivered();
+    }
+
+    @Test
+    public void sendBatchAfterLingering() throws InterruptedException {
+        final CountDownLatch flushed = new CountDownLatch(1);
+        FakeAsyncConnection connection = new FakeAsyncConnection(encodings);
+        Peer peer = new Peer(encodings, connection, new Executor() {
+            public void execute(Runnable command) {
+                command.run();
+                flushed.countDown();
+            }
+        }).setBatching(10, 20);
+
+        peer.deliver(aDelivery("01"));
+        peer.deliver(aDelivery("02"));
+
+        assert flushed.await(5, TimeUnit.SECONDS);
+        assert connection.sent.size() == 1;
+        assert ((BatchSignal) encodings.decode(connection.sent.get(0))).getSignals().size() == 2;
+    }
+
+    @Test
+    public void sendSingleDeliveryWithoutBatch() throws InterruptedException {
+        final CountDownLatch flushed = new CountDownLatch(1);
+        FakeAsyncConnection connection = new FakeAsyncConnection(encodings);
+        Peer peer = new Peer(encodings, connection, new Executor() {
+            public void execute(Runnable command) {
+                command.run();
+                flushed.countDown();
+            }
+        }).setBatching(10, 0);
+
+        peer.deliver(aDelivery("01"));
+
+        assert flushed.await(5, TimeUnit.SECONDS);
+        assert encodings.decode(connection.sent.get(0)).equals(new DeliverSignal(aDelivery("01")));
+    }
+
+    @Test
+    public void fallBackToSingleDeliveries() {
+        FakeAsyncConnection connection = new FakeAsyncConnection(encodings);
+        Peer peer = new Peer(encodings, connection, direct).setBatching(2, 10000);
+
+        Messenger first = peer.deliver(aDelivery("01"));
+        Messenger second = peer.deliver(aDelivery("02"));
+        connection.respond(0, FailedSignal.unsupported("BATCH"));
+
+        assert !peer.isBatchingSupported();
+        assert peer.getBatchSize() == 2;
+        assert connection.sent.size() == 3;
+        assert encodings.decode(connection.sent.get(1)).equals(new DeliverSignal(aDelivery("01")));
+        assert encodings.decode(connection.sent.get(2)).equals(new DeliverSignal(aDelivery("02")));
+
+        connection.respond(1, new OkSignal());
+        connection.respond(2, new OkSignal());
+        assert first.wasDelivered();
+        assert second.wasDelivered();
+    }
+
+    @Test
+    public void failBatchOnUnexpectedResponse() {
+        FakeAsyncConnection connection = new FakeAsyncConnection(encodings);
+        Peer peer = new Peer(encodings, connection, direct).setBatching(2, 10000);
+
+        Messenger first = peer.deliver(aDelivery("01"));
+        Messenger second = peer.deliver(aDelivery("02"));
+        connection.respond(0, new OkSignal());
+
+        assert connection.sent.size() == 1;
+        assert first.getFailure() instanceof IOException;
+        assert second.getFailure() instanceof IOException;
+        assert peer.isBatchingSupported();
+
+        peer.deliver(aDelivery("03"));
+        peer.deliver(aDelivery("04"));
+        assert connection.sent.size() == 2;
+        assert encodings.decode(connection.sent.get(1)) instanceof BatchSignal;
+    }
+
+    @Test
+    public void sendSingleDeliveriesToLegacyDish() {
+        Dish dish = new Dish(new BasicUuidGenerator(), encodings).setPeerBatching(2, 10000);
+        FakeLegacyConnection connection = new FakeLegacyConnection(encodings);
+        dish.join(connection);
+
+        Peer peer = dish.getPeers().iterator().next();
+        assert !peer.isBatchingSupported();
+
+        RoutedDeliveryStrategy routes = (RoutedDeliveryStrategy) dish.getDeliveryStrategy();
+        routes.getLocations().learn(Address.fromString("aa"), peer);
+        routes.getLocations().learn(Address.fromString("bb"), peer);
+
+        Map<Address, Messenger> messengers = dish.sendAll(Arrays.asList(
+                Address.fromString("aa"), Address.fromString("bb")), new StringMessage("hi"));
+
+        assert messengers.get(Address.fromString("aa")).sync(5).wasDelivered();
+        assert messengers.get(Address.fromString("bb")).sync(5).wasDelivered();
+        assert dish.send(Address.fromString("aa"), new StringMessage("one")).sync(5).wasDelivered();
+        assert dish.send(Address.fromString("bb"), new StringMessage("two")).sync(5).wasDelivered();
+        assert connection.unanswered.isEmpty();
+    }
+
+    @Test
+    public void relayBatchedDeliveriesConcurrently() throws Exception {
+        Dish dish = new Dish(new BasicUuidGenerator(), encodings);
+        final FakeAsyncConnection connection = new FakeAsyncConnection(encodings);
+        dish.listen(connection);
+        connection.handler.handle(encodings.encode(new JoinSignal(encodings.getTags())));
+
+        final Signal[] response = new Signal[1];
+        Thread handling = new Thread() {
+            public void run() {
+                response[0] = encodings.decode(connection.handler.handle(encodings.encode(new BatchSignal(
+                        Arrays.<Signal>asList(new DeliverSignal(aDelivery("01")), new DeliverSignal(aDelivery("02")))))));
+            }
+        };
+        handling.start();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (connection.sent.size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assert connection.sent.size() == 2;
+
+        connection.respond(0, new OkSignal());
+        connection.respond(1, new FailedSignal());
+        handling.join(5000);
+
+        assert response[0].equals(new BatchSignal(Arrays.<Signal>asList(new OkSignal(), new FailedSignal())));
+    }
+
+    @Test
+    public void batchDeliveriesBetweenDishes() throws Exception {
+        final int count = 20;
+        final CountDownLatch arrived = new CountDownLatch(count);
+
+        Dish one = Dish.buildDefault().setPeerBatching(8, 5);
+        Dish two = Dish.buildDefault();
+        Address receiver = two.addWithMailbox(new Zell() {
+            public void receive(Message message) {
+                arrived.countDown();
+            }
+        });
+
+        TcpSocketServer server = new TcpSocketServer(new ServerSocket(42434)).start(two);
+        TcpSocketConnection connection = new TcpSocketConnection(new Socket("localhost", 42434)).open();
+        one.join(connection);
+        assert one.getPeers().iterator().next().isBatchingSupported();
+
+        List<Messenger> messengers = new ArrayList<Messenger>();
+        for (int i = 0; i < count; i++) {
+            messengers.add(one.send(receiver, new StringMessage("m" + i)));
+        }
+
+        assert Messenger.allOf(messengers).sync().wasDelivered();
+        assert arrived.await(5, TimeUnit.SECONDS);
+
+        connection.close();
+        server.stop();
+    }
+
+    private Delivery aDelivery(String uuid) {
+        return new Delivery(Uuid.fromString(uuid), new Address(Uuid.fromString("fade")), new StringMessage("foo"));
+    }
+}
@@ -0,0 +1,94 @@
+package org.zells.dish.tests;
+
+import org.junit.Test;
+import org.zells.dish.delivery.Address;
+import org.zells.dish.network.Peer;
+import org.zells.dish.network.encoding.EncodingRepository;
+import org.zells.dish.network.routing.LocationCache;
+import org.zells.dish.tests.fakes.FakeConnection;
+import org.zells.dish.tests.fakes.FakeEncoding;
+
+public class CacheLocationsTest {
+
+    private long now = 0;
+
+    private EncodingRepository encodings = new EncodingRepository().add(new FakeEncoding());
+    private Peer one = new Peer(encodings, new FakeConnection());
+    private Peer two = new Peer(encodings, new FakeConnection());
+
+    @Test
+    public void rememberLocations() {
+        LocationCache cache = new LocationCache();
+
+        assert cache.find(Address.fromString("aa")) == null;
+        cache.learn(Address.fromString("aa"), one);
+        assert cache.find(Address.fromString("aa")).getPeer() == one;
+
+        assert cache.getHits() == 1;
+        assert cache.getMisses() == 1;
+        assert cache.getHitRate() == 0.5;
+    }
+
+    @Test
+    public void rememberUnreachableAddresses() {
+        LocationCache cache = new LocationCache();
+
+        cache.unreachable(Address.fromString("aa"));
+        assert cache.find(Address.fromString("aa")).isUnreachable();
+        assert cache.getUnreachableHits() == 1;
+
+        cache.forgetUnreachable();
+        assert cache.find(Address.fromString("aa")) == null;
+    }
+
+    @Test
+    public void evictLeastRecentlyUsed() {
+        LocationCache cache = new LocationCache(2, Long.MAX_VALUE, Long.MAX_VALUE);
+
+        cache.learn(Address.fromString("aa"), one);
+        cache.learn(Address.fromString("bb"), one);
+        cache.find(Address.fromString("aa"));
+        cache.learn(Address.fromString("cc"), two);
+
+        assert cache.size() == 2;
+        assert cache.find(Address.fromString("aa")) != null;
+        assert cache.find(Address.fromString("bb")) == null;
+    }
+
+    @Test
+    public void expireLocations() {
+        LocationCache cache = new LocationCache(10, 100, 10) {
+            @Override
+            protected long now() {
+                return now;
+            }
+        };
+
+        cache.learn(Address.fromString("aa"), one);
+        cache.unreachable(Address.fromString("bb"));
+
+        now = 50;
+        assert cache.find(Address.fromString("aa")) != null;
+        assert cache.find(Address.fromString("bb")) == null;
+
+        now = 100;
+        assert cache.find(Address.fromString("aa")) == null;
+        assert cache.size() == 0;
+    }
+
+    @Test
+    public void forgetPeers() {
+        LocationCache cache = new LocationCache();
+
+        cache.learn(Address.fromString("aa"), one);
+        cache.learn(Address.fromString("bb"), two);
+        cache.learn(Address.fromString("cc"), one);
+
+        cache.forget(Address.fromString("bb"), one);
+        assert cache.size() == 3;
+
+        cache.forget(one);
+        assert cache.size() == 1;
+        assert cache.find(Address.fromString("bb")).getPeer() == two;
+    }
+}
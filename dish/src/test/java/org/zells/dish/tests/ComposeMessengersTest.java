@@ -0,0 +1,149 @@
+package org.zells.dish.tests;
+
+import org.junit.Test;
+import org.zells.dish.delivery.Messenger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+public class ComposeMessengersTest {
+
+    private List<String> log = new ArrayList<String>();
+
+    @Test
+    public void settleOnlyOnce() {
+        Messenger messenger = new Messenger();
+        log(messenger);
+
+        assert messenger.delivered();
+        assert !messenger.failed(new Exception("too late"));
+        assert !messenger.delivered();
+
+        assert messenger.wasDelivered();
+        assert log.toString().equals("[delivered]");
+    }
+
+    @Test
+    public void notifyLateHandlers() {
+        Messenger messenger = new Messenger();
+        messenger.failed(new Exception("Nope"));
+        log(messenger);
+
+        assert log.toString().equals("[failed: Nope]");
+    }
+
+    @Test
+    public void syncWaitsForOutcome() {
+        final Messenger messenger = new Messenger();
+        new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException ignored) {
+                }
+                messenger.delivered();
+            }
+        }.start();
+
+        assert messenger.sync().wasDelivered();
+    }
+
+    @Test
+    public void syncTimesOut() {
+        try {
+            new Messenger().sync(0);
+            assert false;
+        } catch (RuntimeException e) {
+            assert e.getMessage().equals("Message delivery timed out");
+        }
+    }
+
+    @Test
+    public void failAfterTimeOut() {
+        Messenger messenger = new Messenger().timeout(0).sync();
+
+        assert messenger.getFailure() instanceof TimeoutException;
+    }
+
+    @Test
+    public void allDelivered() {
+        Messenger one = new Messenger();
+        Messenger two = new Messenger();
+        Messenger all = Messenger.allOf(one, two);
+        log(all);
+
+        one.delivered();
+        assert !all.isDone();
+
+        two.delivered();
+        assert all.wasDelivered();
+        assert log.toString().equals("[delivered]");
+    }
+
+    @Test
+    public void oneOfAllFailed() {
+        Messenger one = new Messenger();
+        Messenger two = new Messenger();
+        log(Messenger.allOf(one, two));
+
+        one.failed(new Exception("Nope"));
+        two.delivered();
+
+        assert log.toString().equals("[failed: Nope]");
+    }
+
+    @Test
+    public void allOfNone() {
+        assert Messenger.allOf().wasDelivered();
+    }
+
+    @Test
+    public void sendAfterDelivery() {
+        Messenger first = new Messenger();
+        final Messenger second = new Messenger();
+
+        Messenger following = first.thenSend(new Messenger.Next() {
+            public Messenger send() {
+                log.add("sent");
+                return second;
+            }
+        });
+
+        first.delivered();
+        assert log.toString().equals("[sent]");
+        assert !following.isDone();
+
+        second.delivered();
+        assert following.wasDelivered();
+    }
+
+    @Test
+    public void doNotSendAfterFailure() {
+        Messenger first = new Messenger();
+
+        Messenger following = first.thenSend(new Messenger.Next() {
+            public Messenger send() {
+                log.add("sent");
+                return new Messenger();
+            }
+        });
+        first.failed(new Exception("Nope"));
+
+        assert log.isEmpty();
+        assert following.getFailure().getMessage().equals("Nope");
+    }
+
+    private void log(Messenger messenger) {
+        messenger.when(new Messenger.Delivered() {
+            public void then() {
+                log.add("delivered");
+            }
+        }).when(new Messenger.Failed() {
+            public void then(Exception e) {
+                log.add("failed: " + e.getMessage());
+            }
+        });
+    }
+}
@@ -0,0 +1,144 @@
+package org.zells.dish.tests;
+
+import org.junit.Test;
+import org.zells.dish.Dish;
+import org.zells.dish.delivery.Address;
+import org.zells.dish.delivery.Delivery;
+import org.zells.dish.delivery.Message;
+import org.zells.dish.delivery.messages.BinaryMessage;
+import org.zells.dish.delivery.messages.CompositeMessage;
+import org.zells.dish.delivery.messages.IntegerMessage;
+import org.zells.dish.delivery.messages.StringMessage;
+import org.zells.dish.network.Peer;
+import org.zells.dish.network.Signal;
+import org.zells.dish.network.connecting.Connection;
+import org.zells.dish.network.connecting.Packet;
+import org.zells.dish.network.encoding.EncodingRepository;
+import org.zells.dish.network.encoding.implementations.DeflateEncoding;
+import org.zells.dish.network.encoding.implementations.StreamingMsgpackEncoding;
+import org.zells.dish.network.signals.DeliverSignal;
+import org.zells.dish.network.signals.OkSignal;
+import org.zells.dish.tests.fakes.FakeConnection;
+import org.zells.dish.tests.fakes.FakeUuidGenerator;
+import org.zells.dish.tests.fakes.FakeZell;
+import org.zells.dish.util.Uuid;
+
+import java.util.Random;
+
+public class CompressPayloadsTest {
+
+    private FakeUuidGenerator generator = new FakeUuidGenerator();
+
+    @Test
+    public void skipSmallPackets() {
+        DeflateEncoding encoding = new DeflateEncoding(new StreamingMsgpackEncoding());
+
+        Packet packet = encoding.encode(new OkSignal());
+        assert packet.getLength() == new StreamingMsgpackEncoding().encode(new OkSignal()).getLength() + 1;
+        assert encoding.decode(packet).equals(new OkSignal());
+
+        assert encoding.getStats().getPackets() == 1;
+        assert encoding.getStats().getCompressedPackets() == 0;
+    }
+
+    @Test
+    public void compressRepetitivePayloads() {
+        DeflateEncoding encoding = new DeflateEncoding(new StreamingMsgpackEncoding());
+        Signal signal = deliver(lines(200));
+
+        Packet packet = encoding.encode(signal);
+        assert encoding.decode(packet).equals(signal);
+
+        assert encoding.getStats().getCompressedPackets() == 1;
+        assert encoding.getStats().getRatio() > 5;
+        assert encoding.getStats().getSentBytes() == packet.getLength();
+    }
+
+    @Test
+    public void sendIncompressiblePayloadsRaw() {
+        byte[] noise = new byte[4096];
+        new Random(42).nextBytes(noise);
+
+        DeflateEncoding encoding = new DeflateEncoding(new StreamingMsgpackEncoding());
+        Signal signal = deliver(new BinaryMessage(noise));
+
+        assert encoding.decode(encoding.encode(signal)).equals(signal);
+        assert encoding.getStats().getCompressedPackets() == 0;
+    }
+
+    @Test
+    public void refuseOversizedInflation() {
+        Packet packet = new DeflateEncoding(new StreamingMsgpackEncoding()).encode(deliver(lines(200)));
+
+        try {
+            new DeflateEncoding(new StreamingMsgpackEncoding()).setMaxInflatedSize(1024).decode(packet);
+            assert false;
+        } catch (RuntimeException e) {
+            assert e.getMessage().startsWith("invalid inflated size");
+        }
+    }
+
+    @Test
+    public void recordStatsPerPeer() {
+        Dish one = new Dish(generator, compressing());
+        Dish two = new Dish(generator, compressing());
+        Dish three = new Dish(generator, new EncodingRepository().add(new StreamingMsgpackEncoding()));
+
+        FakeZell zellTwo = new FakeZell();
+        Address addressTwo = two.add(zellTwo);
+        FakeZell zellThree = new FakeZell();
+        Address addressThree = three.add(zellThree);
+
+        one.join(connect(one, two));
+        one.join(connect(one, three));
+
+        assert one.send(addressTwo, lines(200)).sync().wasDelivered();
+        assert one.send(addressThree, lines(200)).sync().wasDelivered();
+        assert zellTwo.received.equals(lines(200));
+        assert zellThree.received.equals(lines(200));
+
+        long compressed = 0;
+        for (Peer peer : one.getPeers()) {
+            if (peer.getEncoding().getTag() == DeflateEncoding.COMPRESSED) {
+                assert peer.getCompressionStats().getRatio() > 2;
+                compressed += peer.getCompressionStats().getCompressedPackets();
+            } else {
+                assert peer.getCompressionStats().getPackets() == 0;
+            }
+        }
+        assert compressed > 0;
+    }
+
+    private EncodingRepository compressing() {
+        return new EncodingRepository()
+                .add(new DeflateEncoding(new StreamingMsgpackEncoding()))
+                .add(new StreamingMsgpackEncoding());
+    }
+
+    private Message lines(int count) {
+        CompositeMessage lines = new CompositeMessage();
+        for (int i = 0; i < count; i++) {
+            lines.put(i, new CompositeMessage()
+                    .put("color", new StringMessage("black"))
+                    .put("from", new CompositeMessage().put("x", new IntegerMessage(i)).put("y", new IntegerMessage(0)))
+                    .put("to", new CompositeMessage().put("x", new IntegerMessage(i + 1)).put("y", new IntegerMessage(0))));
+        }
+        return new CompositeMessage().put("lines", lines);
+    }
+
+    private Signal deliver(Message message) {
+        return new DeliverSignal(new Delivery(Uuid.fromString("01"), Address.fromString("fade"), message));
+    }
+
+    private Connection connect(Dish a, Dish b) {
+        FakeConnection ab = new FakeConnection();
+        FakeConnection ba = new FakeConnection();
+        ab.to(ba);
+        ba.to(ab);
+
+        b.listen(ab);
+        a.listen(ba);
+
+        return ba;
+    }
+}
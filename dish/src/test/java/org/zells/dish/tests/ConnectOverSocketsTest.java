@@ -5,7 +5,15 @@ import org.zells.dish.Dish;
 import org.zells.dish.delivery.Address;
 import org.zells.dish.delivery.Messenger;
 import org.zells.dish.delivery.ReceiverNotFoundException;
+import org.zells.dish.delivery.messages.BinaryMessage;
 import org.zells.dish.delivery.messages.StringMessage;
+import org.zells.dish.network.connecting.AsyncConnection;
+import org.zells.dish.network.connecting.BufferPool;
+import org.zells.dish.network.connecting.Connection;
+import org.zells.dish.network.connecting.Packet;
+import org.zells.dish.network.connecting.implementations.nio.NioConnection;
+import org.zells.dish.network.connecting.implementations.nio.NioServer;
+import org.zells.dish.network.connecting.implementations.nio.NioTransport;
 import org.zells.dish.network.connecting.implementations.socket.TcpSocketConnection;
 import org.zells.dish.network.connecting.implementations.socket.TcpSocketServer;
 import org.zells.dish.tests.fakes.FakeZell;
@@ -13,6 +21,7 @@ import org.zells.dish.tests.fakes.FakeZell;
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.util.Random;
 
 public class ConnectOverSocketsTest {
 
@@ -100,6 +109,158 @@ public class ConnectOverSocketsTest {
         proxyServer.stop();
     }
 
+    @Test
+    public void nonBlockingTransport() throws IOException {
+        NioTransport transport = new NioTransport(2, 4, 16);
+
+        Dish one = Dish.buildDefault();
+        Dish proxy = Dish.buildDefault();
+        Dish two = Dish.buildDefault();
+
+        FakeZell zellOne = new FakeZell();
+        Address addressOne = one.add(zellOne);
+        FakeZell zellTwo = new FakeZell();
+        Address addressTwo = two.add(zellTwo);
+
+        NioServer proxyServer = transport.serve(42427).start(proxy);
+        one.join(transport.connect("localhost", 42427).open());
+        two.join(transport.connect("localhost", 42427).open());
+
+        increase(one.send(addressTwo, new StringMessage("two")));
+        increase(two.send(addressOne, new StringMessage("one")));
+
+        waitFor(2);
+        assert zellTwo.received.toString().equals("two");
+        assert zellOne.received.toString().equals("one");
+
+        proxyServer.stop();
+        transport.shutdown();
+    }
+
+    @Test
+    public void forgetClosedConnections() throws IOException {
+        NioTransport transport = new NioTransport(1, 2, 16);
+        NioServer server = transport.serve(42435).start(Dish.buildDefault());
+
+        Connection connection = transport.connect("localhost", 42435).open();
+        waitUntil(server, 1);
+
+        connection.close();
+        waitUntil(server, 0);
+
+        server.stop();
+        transport.shutdown();
+    }
+
+    @Test
+    public void releasePacketsSentAfterClose() throws IOException {
+        NioTransport transport = new NioTransport(1, 2, 16);
+        NioServer server = transport.serve(42439).start(Dish.buildDefault());
+        BufferPool pool = new BufferPool();
+
+        NioConnection connection = transport.connect("localhost", 42439).open();
+        connection.close();
+
+        final Exception[] failure = new Exception[1];
+        connection.transmit(Packet.allocate(pool, 100), new AsyncConnection.Callback() {
+            public void received(Packet response) {
+            }
+
+            public void failed(Exception e) {
+                failure[0] = e;
+            }
+        });
+
+        assert failure[0].getMessage().equals("Connection not open");
+        Packet.allocate(pool, 100);
+        assert pool.getReuses() == 1;
+
+        server.stop();
+        transport.shutdown();
+    }
+
+    @Test
+    public void responseTimesOut() throws IOException {
+        ServerSocket silent = new ServerSocket(42425);
+        TcpSocketConnection connection = new TcpSocketConnection(new Socket("localhost", 42425))
+                .setResponseTimeOut(50)
+                .open();
+        Socket accepted = silent.accept();
+
+        try {
+            connection.transmit(new Packet("foo".getBytes()));
+            assert false;
+        } catch (IOException e) {
+            assert e.getMessage().equals("Response timed out");
+        }
+
+        connection.close();
+        accepted.close();
+        silent.close();
+    }
+
+    @Test
+    public void peerDisconnects() throws IOException {
+        ServerSocket silent = new ServerSocket(42426);
+        TcpSocketConnection connection = new TcpSocketConnection(new Socket("localhost", 42426)).open();
+        final Socket accepted = silent.accept();
+
+        new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                    accepted.close();
+                } catch (Exception ignored) {
+                }
+            }
+        }.start();
+
+        long start = System.currentTimeMillis();
+        try {
+            connection.transmit(new Packet("foo".getBytes()));
+            assert false;
+        } catch (IOException e) {
+            assert e.getMessage().equals("Connection closed");
+        }
+        assert System.currentTimeMillis() - start < 5000;
+
+        silent.close();
+    }
+
+    @Test
+    public void largeBinaries() throws IOException {
+        NioTransport transport = new NioTransport(1, 2, 16);
+
+        Dish one = Dish.buildDefault();
+        Dish two = Dish.buildDefault();
+
+        FakeZell zellOne = new FakeZell();
+        Address addressOne = one.add(zellOne);
+        FakeZell zellTwo = new FakeZell();
+        Address addressTwo = two.add(zellTwo);
+
+        byte[] blob = new byte[4 * 1024 * 1024];
+        new Random(42).nextBytes(blob);
+
+        TcpSocketServer server = new TcpSocketServer(new ServerSocket(42429)).start(two);
+        one.join(new TcpSocketConnection(new Socket("localhost", 42429)).open());
+        NioServer nioServer = transport.serve(42430).start(one);
+        two.join(transport.connect("localhost", 42430).open());
+
+        one.send(addressTwo, new BinaryMessage(blob)).sync(30);
+        two.send(addressOne, new BinaryMessage(blob)).sync(30);
+
+        assert zellTwo.received.equals(new BinaryMessage(blob));
+        assert zellOne.received.equals(new BinaryMessage(blob));
+
+        one.leaveAll();
+        two.leaveAll();
+        server.stop();
+        nioServer.stop();
+        transport.shutdown();
+    }
+
     private Messenger increase(Messenger messenger) {
         return messenger.when(new Messenger.Delivered() {
             public void then() {
@@ -108,6 +269,14 @@ public class ConnectOverSocketsTest {
         });
     }
 
+    private void waitUntil(NioServer server, int connections) {
+        long start = System.currentTimeMillis();
+        while (server.getConnectionCount() != connections) {
+            Thread.yield();
+            assert System.currentTimeMillis() - start < 7000;
+        }
+    }
+
     private void waitFor(int i) {
         long start = System.currentTimeMillis();
         while (executed < i) {
@@ -0,0 +1,134 @@
+package org.zells.dish.tests;
+
+import org.junit.Test;
+import org.zells.dish.Dish;
+import org.zells.dish.Zell;
+import org.zells.dish.delivery.Address;
+import org.zells.dish.delivery.Message;
+import org.zells.dish.delivery.Messenger;
+import org.zells.dish.delivery.messages.StringMessage;
+import org.zells.dish.network.connecting.Connection;
+import org.zells.dish.network.encoding.EncodingRepository;
+import org.zells.dish.tests.fakes.FakeConnection;
+import org.zells.dish.tests.fakes.FakeEncoding;
+import org.zells.dish.util.BasicUuidGenerator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DeliverConcurrentlyTest {
+
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 100;
+
+    private EncodingRepository encodings = new EncodingRepository().add(new FakeEncoding());
+    private List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+
+    @Test
+    public void hammerDish() throws InterruptedException {
+        final Dish dish = new Dish(new BasicUuidGenerator(), encodings);
+        final Dish peer = new Dish(new BasicUuidGenerator(), encodings);
+
+        final AtomicInteger localCount = new AtomicInteger();
+        final AtomicInteger remoteCount = new AtomicInteger();
+        final Address local = dish.add(new CountingZell(localCount));
+        final Address remote = peer.add(new CountingZell(remoteCount));
+        dish.join(connect(dish, peer));
+
+        run(new Runnable() {
+            public void run() {
+                for (int i = 0; i < ROUNDS; i++) {
+                    Address temporary = dish.add(new CountingZell(new AtomicInteger()));
+                    Connection connection = connect(dish, new Dish(new BasicUuidGenerator(), encodings));
+                    dish.join(connection);
+
+                    assertSucceeds(dish.send(local, new StringMessage("local")));
+                    assertSucceeds(dish.send(remote, new StringMessage("remote")));
+
+                    dish.leave(connection);
+                    dish.remove(temporary);
+                }
+            }
+        });
+
+        assert errors.isEmpty() : errors;
+        assert localCount.get() == THREADS * ROUNDS;
+        assert remoteCount.get() == THREADS * ROUNDS;
+    }
+
+    @Test
+    public void leaveAllWhileJoining() throws InterruptedException {
+        final Dish dish = new Dish(new BasicUuidGenerator(), encodings);
+
+        run(new Runnable() {
+            public void run() {
+                for (int i = 0; i < ROUNDS; i++) {
+                    dish.join(connect(dish, new Dish(new BasicUuidGenerator(), encodings)));
+                    dish.leaveAll();
+                }
+            }
+        });
+
+        assert errors.isEmpty() : errors;
+    }
+
+    private void run(final Runnable runnable) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(THREADS);
+
+        for (int t = 0; t < THREADS; t++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        runnable.run();
+                    } catch (Throwable e) {
+                        errors.add(e);
+                    }
+                    done.countDown();
+                }
+            }.start();
+        }
+
+        start.countDown();
+        assert done.await(60, TimeUnit.SECONDS);
+    }
+
+    private void assertSucceeds(Messenger messenger) {
+        messenger.when(new Messenger.Failed() {
+            public void then(Exception e) {
+                errors.add(e);
+            }
+        }).sync();
+    }
+
+    private Connection connect(Dish a, Dish b) {
+        FakeConnection ab = new FakeConnection();
+        FakeConnection ba = new FakeConnection();
+        ab.to(ba);
+        ba.to(ab);
+
+        b.listen(ab);
+        a.listen(ba);
+
+        return ba;
+    }
+
+    private class CountingZell implements Zell {
+
+        private AtomicInteger count;
+
+        CountingZell(AtomicInteger count) {
+            this.count = count;
+        }
+
+        public void receive(Message message) {
+            count.incrementAndGet();
+        }
+    }
+}
@@ -13,6 +13,9 @@ import org.zells.dish.tests.fakes.FakeEncoding;
 import org.zells.dish.tests.fakes.FakeUuidGenerator;
 import org.zells.dish.tests.fakes.FakeZell;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
 public class DeliverMessagesTest {
 
     private Dish dishOne;
@@ -207,6 +210,28 @@ public class DeliverMessagesTest {
         assertFails(messenger);
     }
 
+    @Test
+    public void deliverWithPooledExecutor() {
+        FakeZell aZell = new FakeZell();
+        Address anAddress = dishOne.add(aZell);
+        dishOne.setExecutor(DeliveryExecutors.fixed(2, 10, DeliveryExecutors.Rejection.CALLER_RUNS));
+
+        assertSucceeds(dishOne.send(anAddress, new StringMessage("a string")));
+        assert aZell.received.asString().equals("a string");
+    }
+
+    @Test
+    public void failIfDeliveryIsRejected() {
+        Address anAddress = dishOne.add(new FakeZell());
+        dishOne.setExecutor(new Executor() {
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException("Full");
+            }
+        });
+
+        assertFails(dishOne.send(anAddress, new StringMessage("a string")));
+    }
+
     private void assertSucceeds(Messenger messenger) {
         final boolean[] delivered = {false};
         messenger.when(new Messenger.Delivered() {
@@ -7,11 +7,15 @@ import org.zells.dish.delivery.Delivery;
 import org.zells.dish.delivery.Message;
 import org.zells.dish.delivery.messages.*;
 import org.zells.dish.network.Signal;
+import org.zells.dish.network.connecting.Packet;
 import org.zells.dish.network.encoding.Encoding;
 import org.zells.dish.network.encoding.EncodingRepository;
+import org.zells.dish.network.encoding.implementations.MsgpackEncoding;
+import org.zells.dish.network.encoding.implementations.StreamingMsgpackEncoding;
 import org.zells.dish.network.signals.*;
 import org.zells.dish.util.Uuid;
 
+import java.util.Arrays;
 import java.util.List;
 
 public class EncodeSignalsTest {
@@ -36,6 +40,7 @@ public class EncodeSignalsTest {
     @Test
     public void ok() {
         assertEncodeDecode(new OkSignal());
+        assertEncodeDecode(new OkSignal(7));
     }
 
     @Test
@@ -58,13 +63,40 @@ public class EncodeSignalsTest {
                         .put("two", new IntegerMessage(2)))));
     }
 
+    @Test
+    public void relayedDeliver() {
+        for (Encoding encoding : encodings) {
+            DeliverSignal relayed = new DeliverSignal(new Delivery(Uuid.fromString("01"), Address.fromString("aa"),
+                    new StringMessage("message"), 3));
+            Signal decoded = encoding.decode(encoding.encode(relayed));
+
+            assert decoded.equals(relayed);
+            assert ((DeliverSignal) decoded).getDelivery().getHops() == 3;
+        }
+    }
+
     private DeliverSignal deliverSignal(Message message) {
         return new DeliverSignal(new Delivery(Uuid.fromString("01"), Address.fromString("aa"), message));
     }
 
+    @Test
+    public void multicast() {
+        Message message = new StringMessage("shared");
+        for (Encoding encoding : encodings) {
+            MulticastSignal multicast = new MulticastSignal(Arrays.asList(
+                    new Delivery(Uuid.fromString("01"), Address.fromString("aa"), message, 2),
+                    new Delivery(Uuid.fromString("02"), Address.fromString("bb"), message, 2)));
+            MulticastSignal decoded = (MulticastSignal) encoding.decode(encoding.encode(multicast));
+
+            assert decoded.equals(multicast);
+            assert decoded.getDeliveries().get(1).getHops() == 2;
+        }
+    }
+
     @Test
     public void join() {
         assertEncodeDecode(new JoinSignal());
+        assertEncodeDecode(new JoinSignal(Arrays.asList(7, 0)));
     }
 
     @Test
@@ -72,6 +104,85 @@ public class EncodeSignalsTest {
         assertEncodeDecode(new LeaveSignal());
     }
 
+    @Test
+    public void batch() {
+        assertEncodeDecode(new BatchSignal(Arrays.<Signal>asList(
+                deliverSignal(new StringMessage("one")),
+                deliverSignal(new IntegerMessage(2)))));
+        assertEncodeDecode(new BatchSignal(Arrays.<Signal>asList(new OkSignal(), new FailedSignal("nope"))));
+        assertEncodeDecode(new BatchSignal(Arrays.<Signal>asList()));
+    }
+
+    @Test
+    public void streamingMatchesJackson() {
+        StringBuilder longString = new StringBuilder();
+        for (int i = 0; i < 70000; i++) {
+            longString.append((char) ('a' + i % 26));
+        }
+        CompositeMessage manyKeys = new CompositeMessage();
+        for (int i = 0; i < 40; i++) {
+            manyKeys.put("key" + i, new IntegerMessage(i * 1000));
+        }
+
+        List<Signal> signals = Arrays.<Signal>asList(
+                new OkSignal(),
+                new OkSignal(7),
+                new FailedSignal(),
+                new FailedSignal("Because Foo"),
+                new JoinSignal(),
+                new JoinSignal(Arrays.asList(7, 0)),
+                new LeaveSignal(),
+                deliverSignal(new NullMessage()),
+                deliverSignal(new StringMessage("")),
+                deliverSignal(new StringMessage("a string that is longer than thirty-one bytes")),
+                deliverSignal(new StringMessage("gr\u00fc\u00dfe \u2603")),
+                deliverSignal(new StringMessage(longString.toString())),
+                deliverSignal(new BooleanMessage(false)),
+                deliverSignal(new IntegerMessage(-33)),
+                deliverSignal(new IntegerMessage(128)),
+                deliverSignal(new IntegerMessage(70000)),
+                deliverSignal(new IntegerMessage(Integer.MIN_VALUE)),
+                deliverSignal(new BinaryMessage(new byte[0])),
+                deliverSignal(new BinaryMessage(new byte[300])),
+                deliverSignal(new AddressMessage(Address.fromString("fade"))),
+                deliverSignal(new CompositeMessage().put("nested", manyKeys).put("list", new CompositeMessage(
+                        new StringMessage("one"), new IntegerMessage(2)))),
+                new DeliverSignal(new Delivery(Uuid.fromString("01"), Address.fromString("aa"), new NullMessage(), 3)),
+                new BatchSignal(Arrays.<Signal>asList(new OkSignal(), deliverSignal(new StringMessage("batched")))),
+                new MulticastSignal(Arrays.asList(
+                        new Delivery(Uuid.fromString("01"), Address.fromString("aa"), manyKeys),
+                        new Delivery(Uuid.fromString("02"), Address.fromString("bb"), manyKeys)))
+        );
+
+        Encoding jackson = new MsgpackEncoding();
+        Encoding streaming = new StreamingMsgpackEncoding();
+        for (Signal signal : signals) {
+            byte[] expected = jackson.encode(signal).getBytes();
+            assert Arrays.equals(streaming.encode(signal).getBytes(), expected);
+            assert streaming.decode(new Packet(expected)).equals(signal);
+        }
+    }
+
+    @Test
+    public void decodeBinariesAsViews() {
+        byte[] blob = new byte[1024 * 1024];
+        blob[0] = 42;
+
+        for (Encoding encoding : encodings) {
+            Packet packet = encoding.encode(deliverSignal(new BinaryMessage(blob)));
+            DeliverSignal decoded = (DeliverSignal) encoding.decode(packet);
+            BinaryMessage message = (BinaryMessage) decoded.getDelivery().getMessage();
+
+            assert message.getLength() == blob.length;
+            assert message.asByteBuffer().get(0) == 42;
+        }
+
+        Encoding streaming = new StreamingMsgpackEncoding();
+        Packet packet = streaming.encode(deliverSignal(new BinaryMessage(blob)));
+        DeliverSignal decoded = (DeliverSignal) streaming.decode(packet);
+        assert ((BinaryMessage) decoded.getDelivery().getMessage()).asByteBuffer().array() == packet.getBuffer().array();
+    }
+
     private Exception tryToEncode(Encoding encoding) {
         try {
             encoding.encode(new Signal() {
@@ -0,0 +1,107 @@
+package org.zells.dish.tests;
+
+import org.junit.Test;
+import org.zells.dish.delivery.Address;
+import org.zells.dish.delivery.Delivery;
+import org.zells.dish.delivery.DeliveryFilter;
+import org.zells.dish.delivery.messages.StringMessage;
+import org.zells.dish.util.Uuid;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class FilterDuplicateDeliveriesTest {
+
+    private long now = 0;
+
+    @Test
+    public void detectDuplicates() {
+        DeliveryFilter filter = new DeliveryFilter();
+
+        assert !filter.isDuplicate(delivery("01"));
+        assert !filter.isDuplicate(delivery("02"));
+        assert filter.isDuplicate(delivery("01"));
+
+        assert filter.getHits() == 1;
+        assert filter.getMisses() == 2;
+        assert filter.getEvictions() == 0;
+    }
+
+    @Test
+    public void ignoreMessageContent() {
+        DeliveryFilter filter = new DeliveryFilter();
+
+        assert !filter.isDuplicate(new Delivery(Uuid.fromString("01"), Address.fromString("aa"), new StringMessage("one")));
+        assert filter.isDuplicate(new Delivery(Uuid.fromString("01"), Address.fromString("aa"), new StringMessage("two")));
+    }
+
+    @Test
+    public void limitNumberOfEntries() {
+        DeliveryFilter filter = new DeliveryFilter(2, Long.MAX_VALUE, 3);
+
+        for (int i = 10; i < 20; i++) {
+            assert !filter.isDuplicate(delivery(Integer.toString(i)));
+            assert filter.size() <= 6;
+        }
+
+        assert filter.isDuplicate(delivery("19"));
+        assert filter.isDuplicate(delivery("16"));
+        assert !filter.isDuplicate(delivery("11"));
+        assert filter.getEvictions() == 6;
+    }
+
+    @Test
+    public void limitAgeOfEntries() {
+        DeliveryFilter filter = new DeliveryFilter(100, 10, 2) {
+            @Override
+            protected long now() {
+                return now;
+            }
+        };
+
+        assert !filter.isDuplicate(delivery("01"));
+        now = 10;
+        assert !filter.isDuplicate(delivery("02"));
+        assert filter.isDuplicate(delivery("01"));
+
+        now = 20;
+        assert !filter.isDuplicate(delivery("03"));
+        assert !filter.isDuplicate(delivery("01"));
+        assert filter.getEvictions() == 1;
+    }
+
+    @Test
+    public void letOnlyOneOfConcurrentDuplicatesThrough() throws InterruptedException {
+        final DeliveryFilter filter = new DeliveryFilter(16, Long.MAX_VALUE, 10000);
+        final int count = 20000;
+        final AtomicInteger[] passed = new AtomicInteger[count];
+        for (int i = 0; i < count; i++) {
+            passed[i] = new AtomicInteger();
+        }
+
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread() {
+                public void run() {
+                    for (int i = 0; i < count; i++) {
+                        if (!filter.isDuplicate(delivery(Integer.toHexString(0x100000 + i)))) {
+                            passed[i].incrementAndGet();
+                        }
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        for (AtomicInteger deliveries : passed) {
+            assert deliveries.get() == 1;
+        }
+        assert filter.getMisses() == count;
+    }
+
+    private Delivery delivery(String uuid) {
+        return new Delivery(Uuid.fromString(uuid), Address.fromString("aa"), new StringMessage("foo"));
+    }
+}
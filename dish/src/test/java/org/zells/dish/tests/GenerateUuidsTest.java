@@ -0,0 +1,73 @@
+package org.zells.dish.tests;
+
+import org.junit.Test;
+import org.zells.dish.delivery.Address;
+import org.zells.dish.util.BasicUuidGenerator;
+import org.zells.dish.util.SecureUuidGenerator;
+import org.zells.dish.util.Uuid;
+import org.zells.dish.util.UuidGenerator;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class GenerateUuidsTest {
+
+    @Test
+    public void keepBytesOfAnyLength() {
+        for (String hex : Arrays.asList("01", "fade", "0123456789abcdef0123456789abcdef", "0123456789abcdef0123456789abcdef0a0b")) {
+            Uuid uuid = Uuid.fromString(hex);
+            byte[] bytes = uuid.getBytes();
+
+            assert uuid.toString().equals("0x" + hex);
+            assert bytes.length == hex.length() / 2;
+            assert new Uuid(bytes).equals(uuid);
+            assert new Uuid(bytes).hashCode() == uuid.hashCode();
+        }
+    }
+
+    @Test
+    public void distinguishLengths() {
+        assert !Uuid.fromString("01").equals(Uuid.fromString("0001"));
+        assert !Uuid.fromString("01").equals(Uuid.fromString("0100"));
+        assert !Address.fromString("fade").equals(Address.fromString("fade00"));
+    }
+
+    @Test
+    public void packIntoTwoLongs() {
+        Uuid uuid = Uuid.fromString("0123456789abcdeffedcba9876543210");
+
+        assert uuid.getHigh() == 0x0123456789abcdefL;
+        assert uuid.getLow() == 0xfedcba9876543210L;
+        assert uuid.equals(new Uuid(0x0123456789abcdefL, 0xfedcba9876543210L));
+    }
+
+    @Test
+    public void generateUniqueVersionFourUuids() throws Exception {
+        for (final UuidGenerator generator : Arrays.asList(new BasicUuidGenerator(), new SecureUuidGenerator())) {
+            final Set<Uuid> generated = Collections.newSetFromMap(new ConcurrentHashMap<Uuid, Boolean>());
+            Thread[] threads = new Thread[4];
+            for (int t = 0; t < threads.length; t++) {
+                threads[t] = new Thread() {
+                    public void run() {
+                        for (int i = 0; i < 10000; i++) {
+                            generated.add(generator.generate());
+                        }
+                    }
+                };
+                threads[t].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            assert generated.size() == 40000;
+            Uuid uuid = generated.iterator().next();
+            assert uuid.getLength() == Uuid.LENGTH;
+            assert (uuid.getHigh() >>> 12 & 0xF) == 4;
+            assert uuid.getLow() >>> 62 == 2;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package org.zells.dish.tests;
+
+import org.junit.Test;
+import org.zells.dish.delivery.Address;
+import org.zells.dish.delivery.Delivery;
+import org.zells.dish.delivery.Message;
+import org.zells.dish.delivery.messages.*;
+import org.zells.dish.network.connecting.Packet;
+import org.zells.dish.network.encoding.Encoding;
+import org.zells.dish.network.encoding.implementations.StreamingMsgpackEncoding;
+import org.zells.dish.network.signals.DeliverSignal;
+import org.zells.dish.util.Interner;
+import org.zells.dish.util.Uuid;
+
+import java.nio.charset.Charset;
+
+public class InternKeysTest {
+
+    @Test
+    public void internShortAsciiKeys() {
+        Interner interner = new Interner(16);
+        byte[] bytes = "xxsubscribexx".getBytes();
+
+        String interned = interner.intern(new String("subscribe"));
+        assert interner.intern(bytes, 2, 9) == interned;
+        assert interner.intern(new String("subscribe")) == interned;
+
+        String tooLong = "a key that is longer than thirty-two characters";
+        assert interner.intern(new String(tooLong)) != interner.intern(new String(tooLong));
+        byte[] utf8 = "gr\u00fc\u00dfe".getBytes(Charset.forName("UTF-8"));
+        assert interner.intern(utf8, 0, utf8.length).equals("gr\u00fc\u00dfe");
+    }
+
+    @Test
+    public void fallBackWhenFull() {
+        Interner interner = new Interner(2);
+        for (int i = 0; i < 10; i++) {
+            assert interner.intern("key" + i).equals("key" + i);
+        }
+    }
+
+    @Test
+    public void shareKeysOfDecodedMessages() {
+        Encoding encoding = new StreamingMsgpackEncoding().setInterner(new Interner());
+        Packet packet = encoding.encode(new DeliverSignal(new Delivery(Uuid.fromString("01"), Address.fromString("fade"),
+                new CompositeMessage().put("subscribe", new StringMessage("me")))));
+
+        String first = decode(encoding, packet).keys().iterator().next();
+        String second = decode(encoding, packet).keys().iterator().next();
+
+        assert first.equals("subscribe");
+        assert first == second;
+    }
+
+    @Test
+    public void readSharedConstants() {
+        Message message = new CompositeMessage().put("a", new IntegerMessage(1));
+
+        assert message.read("missing") == NullMessage.INSTANCE;
+        assert message.read(7) == NullMessage.INSTANCE;
+        assert new StringMessage("scalar").keys() == new IntegerMessage(2).keys();
+        assert message.keys() == message.keys();
+        assert IntegerMessage.valueOf(42) == IntegerMessage.valueOf(42);
+        assert IntegerMessage.valueOf(1 << 20).equals(new IntegerMessage(1 << 20));
+        assert BooleanMessage.valueOf(true) == BooleanMessage.TRUE;
+    }
+
+    private Message decode(Encoding encoding, Packet packet) {
+        return ((DeliverSignal) encoding.decode(packet)).getDelivery().getMessage();
+    }
+}
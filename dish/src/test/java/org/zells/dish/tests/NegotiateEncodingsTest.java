@@ -0,0 +1,204 @@
+package org.zells.dish.tests;
+
+import org.junit.Test;
+import org.zells.dish.Dish;
+import org.zells.dish.delivery.Address;
+import org.zells.dish.delivery.Delivery;
+import org.zells.dish.delivery.Messenger;
+import org.zells.dish.delivery.messages.StringMessage;
+import org.zells.dish.network.Peer;
+import org.zells.dish.network.Signal;
+import org.zells.dish.network.SignalListener;
+import org.zells.dish.network.connecting.Connection;
+import org.zells.dish.network.connecting.PacketHandler;
+import org.zells.dish.network.connecting.implementations.socket.TcpSocketConnection;
+import org.zells.dish.network.connecting.implementations.socket.TcpSocketServer;
+import org.zells.dish.network.encoding.Encoding;
+import org.zells.dish.network.encoding.EncodingRepository;
+import org.zells.dish.network.encoding.implementations.MsgpackEncoding;
+import org.zells.dish.network.routing.implementations.RoutedDeliveryStrategy;
+import org.zells.dish.network.signals.FailedSignal;
+import org.zells.dish.network.signals.JoinSignal;
+import org.zells.dish.network.signals.OkSignal;
+import org.zells.dish.tests.fakes.FakeConnection;
+import org.zells.dish.tests.fakes.FakeTaggedEncoding;
+import org.zells.dish.tests.fakes.FakeUuidGenerator;
+import org.zells.dish.tests.fakes.FakeZell;
+
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+public class NegotiateEncodingsTest {
+
+    private FakeUuidGenerator generator = new FakeUuidGenerator();
+
+    @Test
+    public void agreeOnBestCommonEncoding() {
+        FakeTaggedEncoding fastOne = new FakeTaggedEncoding(7);
+        FakeTaggedEncoding fastTwo = new FakeTaggedEncoding(7);
+        Dish one = new Dish(generator, new EncodingRepository().add(fastOne).add(new MsgpackEncoding()));
+        Dish two = new Dish(generator, new EncodingRepository().add(fastTwo).add(new MsgpackEncoding()));
+
+        FakeZell zellOne = new FakeZell();
+        FakeZell zellTwo = new FakeZell();
+        Address addressOne = one.add(zellOne);
+        Address addressTwo = two.add(zellTwo);
+
+        one.join(connect(one, two));
+
+        assert one.send(addressTwo, new StringMessage("to two")).sync().wasDelivered();
+        assert two.send(addressOne, new StringMessage("to one")).sync().wasDelivered();
+
+        assert zellTwo.received.asString().equals("to two");
+        assert zellOne.received.asString().equals("to one");
+        assert fastOne.encoded > 0;
+        assert fastTwo.encoded > 0;
+    }
+
+    @Test
+    public void fallBackToLegacyEncoding() {
+        FakeTaggedEncoding fast = new FakeTaggedEncoding(7);
+        Dish one = new Dish(generator, new EncodingRepository().add(fast).add(new MsgpackEncoding()));
+        Dish two = new Dish(generator, new EncodingRepository().add(new MsgpackEncoding()));
+
+        FakeZell zell = new FakeZell();
+        Address address = two.add(zell);
+
+        one.join(connect(one, two));
+
+        assert one.send(address, new StringMessage("plain")).sync().wasDelivered();
+        assert zell.received.asString().equals("plain");
+        assert fast.encoded == 0;
+    }
+
+    @Test
+    public void answerLegacyJoinsWithoutEncoding() {
+        EncodingRepository encodings = new EncodingRepository()
+                .add(new FakeTaggedEncoding(7))
+                .add(new MsgpackEncoding());
+        PacketHandler handler = new PacketHandler(encodings, new FakeConnection(), new AcceptingListener());
+
+        Signal legacy = encodings.decode(handler.handle(encodings.encode(new JoinSignal())));
+        assert legacy.equals(new OkSignal());
+        assert handler.getEncoding().getTag() == MsgpackEncoding.TAG;
+
+        Signal negotiated = encodings.decode(handler.handle(encodings.encode(new JoinSignal(Arrays.asList(9, 7, 0)))));
+        assert negotiated.equals(new OkSignal(7));
+        assert handler.getEncoding().getTag() == 7;
+    }
+
+    @Test
+    public void refuseUnknownEncodings() {
+        EncodingRepository encodings = new EncodingRepository().add(new MsgpackEncoding());
+        PacketHandler handler = new PacketHandler(encodings, new FakeConnection(), new AcceptingListener());
+
+        EncodingRepository other = new EncodingRepository().add(new FakeTaggedEncoding(9));
+        Signal response = encodings.decode(handler.handle(other.encode(new JoinSignal(), other.get(9))));
+
+        assert response.equals(new FailedSignal("unsupported encoding: 9"));
+    }
+
+    @Test
+    public void tagPacketsOverSockets() throws Exception {
+        FakeTaggedEncoding fastOne = new FakeTaggedEncoding(7);
+        FakeTaggedEncoding fastTwo = new FakeTaggedEncoding(7);
+        Dish one = new Dish(generator, new EncodingRepository().add(fastOne).add(new MsgpackEncoding()));
+        Dish two = new Dish(generator, new EncodingRepository().add(fastTwo).add(new MsgpackEncoding()));
+
+        FakeZell zell = new FakeZell();
+        Address address = two.add(zell);
+
+        TcpSocketServer server = new TcpSocketServer(new ServerSocket(42433)).start(two);
+        one.join(new TcpSocketConnection(new Socket("localhost", 42433)).open());
+
+        assert one.send(address, new StringMessage("tagged")).sync(10).wasDelivered();
+        assert zell.received.asString().equals("tagged");
+        assert fastOne.encoded > 0;
+        assert fastTwo.encoded > 0;
+
+        one.leaveAll();
+        server.stop();
+    }
+
+    @Test
+    public void enableWireFeaturesWithLegacyTagOnly() throws Exception {
+        Dish one = new Dish(generator, new EncodingRepository().add(new FakeTaggedEncoding(7)).add(new MsgpackEncoding()))
+                .setPeerBatching(4, 5);
+        Dish two = new Dish(generator, new EncodingRepository().add(new MsgpackEncoding()))
+                .setPeerBatching(4, 5);
+
+        FakeZell zellOne = new FakeZell();
+        FakeZell zellTwo = new FakeZell();
+        FakeZell otherTwo = new FakeZell();
+        Address addressOne = one.add(zellOne);
+        Address addressTwo = two.add(zellTwo);
+        Address otherAddressTwo = two.add(otherTwo);
+
+        TcpSocketServer server = new TcpSocketServer(new ServerSocket(42438)).start(two);
+        TcpSocketConnection connection = new TcpSocketConnection(new Socket("localhost", 42438)).open();
+        one.join(connection);
+
+        Peer toTwo = one.getPeers().iterator().next();
+        Peer toOne = two.getPeers().iterator().next();
+        assert toTwo.getEncoding().getTag() == MsgpackEncoding.TAG;
+        assert toTwo.isBatchingSupported();
+        assert toOne.isBatchingSupported();
+
+        assert one.send(addressTwo, new StringMessage("single")).sync(10).wasDelivered();
+        assert two.send(addressOne, new StringMessage("back")).sync(10).wasDelivered();
+        assert zellTwo.received.asString().equals("single");
+        assert zellOne.received.asString().equals("back");
+
+        ((RoutedDeliveryStrategy) one.getDeliveryStrategy()).getLocations().learn(otherAddressTwo, toTwo);
+        Map<Address, Messenger> messengers = one.sendAll(Arrays.asList(addressTwo, otherAddressTwo),
+                new StringMessage("all"));
+
+        assert messengers.get(addressTwo).sync(10).wasDelivered();
+        assert messengers.get(otherAddressTwo).sync(10).wasDelivered();
+        assert zellTwo.received.asString().equals("all");
+        assert otherTwo.received.asString().equals("all");
+
+        connection.close();
+        server.stop();
+    }
+
+    private Connection connect(Dish a, Dish b) {
+        FakeConnection ab = new FakeConnection();
+        FakeConnection ba = new FakeConnection();
+        ab.to(ba);
+        ba.to(ab);
+
+        b.listen(ab);
+        a.listen(ba);
+
+        return ba;
+    }
+
+    private static class AcceptingListener implements SignalListener {
+
+        public boolean onDeliver(Delivery delivery) {
+            return true;
+        }
+
+        public List<Messenger> onDeliverAll(List<Delivery> deliveries) {
+            List<Messenger> messengers = new ArrayList<Messenger>();
+            for (Delivery delivery : deliveries) {
+                messengers.add(new Messenger());
+                messengers.get(messengers.size() - 1).delivered();
+            }
+            return messengers;
+        }
+
+        public boolean onJoin(Connection connection, Encoding encoding, boolean negotiated) {
+            return true;
+        }
+
+        public boolean onLeave(Connection connection) {
+            return true;
+        }
+    }
+}
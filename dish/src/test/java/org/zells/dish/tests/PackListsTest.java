@@ -0,0 +1,108 @@
+package org.zells.dish.tests;
+
+import org.junit.Test;
+import org.zells.dish.Dish;
+import org.zells.dish.delivery.Address;
+import org.zells.dish.delivery.Delivery;
+import org.zells.dish.delivery.Message;
+import org.zells.dish.delivery.messages.*;
+import org.zells.dish.network.Peer;
+import org.zells.dish.network.connecting.Connection;
+import org.zells.dish.network.connecting.Packet;
+import org.zells.dish.network.encoding.Encoding;
+import org.zells.dish.network.encoding.EncodingRepository;
+import org.zells.dish.network.encoding.implementations.MsgpackEncoding;
+import org.zells.dish.network.encoding.implementations.StreamingMsgpackEncoding;
+import org.zells.dish.network.signals.DeliverSignal;
+import org.zells.dish.tests.fakes.FakeConnection;
+import org.zells.dish.tests.fakes.FakeUuidGenerator;
+import org.zells.dish.tests.fakes.FakeZell;
+import org.zells.dish.util.Uuid;
+
+import java.util.Arrays;
+
+public class PackListsTest {
+
+    private Encoding arrays = new StreamingMsgpackEncoding().setPackArrays(true);
+    private Encoding maps = new StreamingMsgpackEncoding();
+
+    @Test
+    public void packListsAsArrays() {
+        DeliverSignal signal = deliver(brush(20));
+        Packet packed = arrays.encode(signal);
+
+        assert packed.getLength() < maps.encode(signal).getLength();
+        assert arrays.decode(packed).equals(signal);
+        assert new MsgpackEncoding().decode(packed).equals(signal);
+    }
+
+    @Test
+    public void packNamedKeysAsMaps() {
+        DeliverSignal signal = deliver(new CompositeMessage(new StringMessage("draw")).put("color", new StringMessage("red")));
+        assert Arrays.equals(arrays.encode(signal).getBytes(), maps.encode(signal).getBytes());
+    }
+
+    @Test
+    public void forwardArraysAsMapsToLegacyPeers() {
+        DeliverSignal signal = deliver(brush(3));
+        Message view = ((DeliverSignal) arrays.decode(arrays.encode(signal))).getDelivery().getMessage();
+
+        assert view.read(1).read(0).read(0).asString().equals("line");
+        assert Arrays.equals(maps.encode(deliver(view)).getBytes(), maps.encode(signal).getBytes());
+    }
+
+    @Test
+    public void negotiateArraysBetweenCurrentDishes() {
+        FakeUuidGenerator generator = new FakeUuidGenerator();
+        Dish one = new Dish(generator, new EncodingRepository().addAll(EncodingRepository.supportedEncodings()));
+        Dish two = new Dish(generator, new EncodingRepository().addAll(EncodingRepository.supportedEncodings()));
+        Dish legacy = new Dish(generator, new EncodingRepository().add(new MsgpackEncoding()));
+
+        FakeZell zellTwo = new FakeZell();
+        FakeZell zellLegacy = new FakeZell();
+        Address addressTwo = two.add(zellTwo);
+        Address addressLegacy = legacy.add(zellLegacy);
+
+        one.join(connect(one, two));
+        one.join(connect(one, legacy));
+
+        assert one.send(addressTwo, brush(5)).sync().wasDelivered();
+        assert one.send(addressLegacy, brush(5)).sync().wasDelivered();
+        assert zellTwo.received.equals(brush(5));
+        assert zellLegacy.received.equals(brush(5));
+
+        int packing = 0;
+        for (Peer peer : one.getPeers()) {
+            if (peer.getEncoding().getTag() == StreamingMsgpackEncoding.ARRAYS_TAG) {
+                packing++;
+            }
+        }
+        assert packing == 1;
+    }
+
+    private Message brush(int strokes) {
+        CompositeMessage brush = new CompositeMessage();
+        for (int i = 0; i < strokes; i++) {
+            brush.put(i, new CompositeMessage(new StringMessage("line"))
+                    .put("from", new CompositeMessage(new IntegerMessage(i), new IntegerMessage(0)))
+                    .put("to", new CompositeMessage(new IntegerMessage(i + 1), new IntegerMessage(0))));
+        }
+        return new CompositeMessage(new StringMessage("draw"), brush);
+    }
+
+    private DeliverSignal deliver(Message message) {
+        return new DeliverSignal(new Delivery(Uuid.fromString("01"), Address.fromString("fade"), message));
+    }
+
+    private Connection connect(Dish a, Dish b) {
+        FakeConnection ab = new FakeConnection();
+        FakeConnection ba = new FakeConnection();
+        ab.to(ba);
+        ba.to(ab);
+
+        b.listen(ab);
+        a.listen(ba);
+
+        return ba;
+    }
+}
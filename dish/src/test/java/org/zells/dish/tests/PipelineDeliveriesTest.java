@@ -0,0 +1,157 @@
+package org.zells.dish.tests;
+
+import org.junit.Test;
+import org.zells.dish.Dish;
+import org.zells.dish.Zell;
+import org.zells.dish.delivery.Address;
+import org.zells.dish.delivery.Delivery;
+import org.zells.dish.delivery.DeliveryExecutors;
+import org.zells.dish.delivery.Message;
+import org.zells.dish.delivery.Messenger;
+import org.zells.dish.delivery.messages.StringMessage;
+import org.zells.dish.network.Peer;
+import org.zells.dish.network.connecting.implementations.socket.TcpSocketConnection;
+import org.zells.dish.network.connecting.implementations.socket.TcpSocketServer;
+import org.zells.dish.network.encoding.EncodingRepository;
+import org.zells.dish.network.signals.FailedSignal;
+import org.zells.dish.network.signals.OkSignal;
+import org.zells.dish.tests.fakes.FakeAsyncConnection;
+import org.zells.dish.util.Uuid;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+public class PipelineDeliveriesTest {
+
+    private EncodingRepository encodings = new EncodingRepository().addAll(EncodingRepository.supportedEncodings());
+
+    private Executor direct = new Executor() {
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Test
+    public void keepWindowOfDeliveriesInFlight() {
+        FakeAsyncConnection connection = new FakeAsyncConnection(encodings);
+        Peer peer = new Peer(encodings, connection, direct).setWindow(2);
+
+        Messenger first = peer.deliver(aDelivery("01"));
+        Messenger second = peer.deliver(aDelivery("02"));
+        Messenger third = peer.deliver(aDelivery("03"));
+
+        assert connection.held.size() == 2;
+        assert peer.getInFlight() == 2;
+
+        connection.respond(0, new OkSignal());
+        assert first.wasDelivered();
+        assert connection.held.size() == 3;
+        assert peer.getInFlight() == 2;
+
+        connection.respond(2, new FailedSignal("nope"));
+        connection.respond(1, new OkSignal());
+        assert second.wasDelivered();
+        assert third.getFailure().getMessage().equals("nope");
+        assert peer.getInFlight() == 0;
+    }
+
+    @Test
+    public void skipSettledDeliveriesInQueue() {
+        FakeAsyncConnection connection = new FakeAsyncConnection(encodings);
+        Peer peer = new Peer(encodings, connection, direct).setWindow(1).setQueueCapacity(100000);
+
+        peer.deliver(aDelivery("01"));
+        for (int i = 0; i < 99999; i++) {
+            peer.deliver(aDelivery("02")).failed(new IOException("Timed out"));
+        }
+        Messenger last = peer.deliver(aDelivery("03"));
+
+        connection.respond(0, new OkSignal());
+        assert connection.held.size() == 2;
+        connection.respond(1, new OkSignal());
+
+        assert last.wasDelivered();
+        assert peer.getInFlight() == 0;
+    }
+
+    @Test
+    public void failIfConnectionFails() {
+        FakeAsyncConnection connection = new FakeAsyncConnection(encodings);
+        Peer peer = new Peer(encodings, connection, direct);
+
+        Messenger messenger = peer.deliver(aDelivery("01"));
+        connection.held.get(0).failed(new IOException("Connection closed"));
+
+        assert messenger.getFailure().getMessage().equals("Connection closed");
+        assert peer.getInFlight() == 0;
+    }
+
+    @Test
+    public void failQueuedDeliveriesWhenConnectionCloses() throws Exception {
+        ServerSocket silent = new ServerSocket(42436);
+        TcpSocketConnection connection = new TcpSocketConnection(new Socket("localhost", 42436)).open();
+        Socket accepted = silent.accept();
+        Peer peer = new Peer(encodings, connection, direct).setWindow(1);
+
+        List<Messenger> messengers = new ArrayList<Messenger>();
+        for (int i = 0; i < 4000; i++) {
+            messengers.add(peer.deliver(aDelivery("01")));
+        }
+        assert peer.getQueued() == 3999;
+
+        connection.close();
+
+        for (Messenger messenger : messengers) {
+            assert messenger.getFailure() instanceof IOException;
+        }
+        assert peer.getQueued() == 0;
+        assert peer.getInFlight() == 0;
+
+        accepted.close();
+        silent.close();
+    }
+
+    @Test
+    public void pipelineOverOneConnection() throws Exception {
+        final int count = 10;
+        final CountDownLatch arrived = new CountDownLatch(count);
+
+        Dish one = Dish.buildDefault().setExecutor(DeliveryExecutors.fixed(1, 100, DeliveryExecutors.Rejection.FAIL));
+        Dish two = Dish.buildDefault();
+
+        Address receiver = two.add(new Zell() {
+            public void receive(Message message) {
+                arrived.countDown();
+                try {
+                    arrived.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ignored) {
+                }
+            }
+        });
+
+        TcpSocketServer server = new TcpSocketServer(new ServerSocket(42428)).start(two);
+        TcpSocketConnection connection = new TcpSocketConnection(new Socket("localhost", 42428)).open();
+        one.join(connection);
+
+        List<Messenger> messengers = new ArrayList<Messenger>();
+        for (int i = 0; i < count; i++) {
+            messengers.add(one.send(receiver, new StringMessage("m" + i)));
+        }
+
+        assert Messenger.allOf(messengers).sync().wasDelivered();
+        assert arrived.getCount() == 0;
+
+        connection.close();
+        server.stop();
+    }
+
+    private Delivery aDelivery(String uuid) {
+        return new Delivery(Uuid.fromString(uuid), new Address(Uuid.fromString("fade")), new StringMessage("foo"));
+    }
+}
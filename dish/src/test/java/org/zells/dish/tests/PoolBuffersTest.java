@@ -0,0 +1,176 @@
+package org.zells.dish.tests;
+
+import org.junit.Test;
+import org.zells.dish.Dish;
+import org.zells.dish.delivery.Address;
+import org.zells.dish.delivery.Delivery;
+import org.zells.dish.delivery.messages.BinaryMessage;
+import org.zells.dish.delivery.messages.StringMessage;
+import org.zells.dish.network.connecting.BufferPool;
+import org.zells.dish.network.connecting.Packet;
+import org.zells.dish.network.connecting.implementations.socket.TcpSocketConnection;
+import org.zells.dish.network.connecting.implementations.socket.TcpSocketServer;
+import org.zells.dish.network.encoding.implementations.StreamingMsgpackEncoding;
+import org.zells.dish.network.signals.DeliverSignal;
+import org.zells.dish.tests.fakes.FakeZell;
+import org.zells.dish.util.Uuid;
+
+import java.io.DataOutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class PoolBuffersTest {
+
+    @Test
+    public void reuseReleasedBuffers() {
+        BufferPool pool = new BufferPool();
+
+        ByteBuffer first = pool.acquire(300);
+        assert first.capacity() == 512;
+        assert first.remaining() == 300;
+
+        pool.release(first);
+        ByteBuffer second = pool.acquire(400);
+
+        assert second == first;
+        assert second.remaining() == 400;
+        assert pool.getAllocations() == 1;
+        assert pool.getReuses() == 1;
+    }
+
+    @Test
+    public void doNotPoolOversizedBuffers() {
+        BufferPool pool = new BufferPool(true, 1024, 4);
+
+        ByteBuffer large = pool.acquire(2000);
+        assert large.isDirect();
+        assert large.capacity() == 2000;
+
+        pool.release(large);
+        assert pool.acquire(2000) != large;
+    }
+
+    @Test
+    public void returnPacketsWhenLastReferenceIsReleased() {
+        BufferPool pool = new BufferPool();
+        Packet packet = Packet.allocate(pool, 100).retain();
+
+        packet.release();
+        assert pool.acquire(100) != packet.getBuffer();
+
+        ByteBuffer buffer = Packet.allocate(pool, 100).getBuffer();
+        Packet twice = new Packet(buffer, pool).retain();
+        twice.release();
+        twice.release();
+
+        assert pool.acquire(100).array() == buffer.array();
+
+        try {
+            twice.release();
+            assert false;
+        } catch (IllegalStateException ignored) {
+        }
+    }
+
+    @Test
+    public void keepBuffersOfDecodedBinariesOutOfThePool() {
+        BufferPool pool = new BufferPool();
+        StreamingMsgpackEncoding encoding = new StreamingMsgpackEncoding().setBufferPool(pool);
+        byte[] blob = new byte[3000];
+        blob[0] = 42;
+
+        Packet packet = encoding.encode(new DeliverSignal(new Delivery(Uuid.fromString("01"),
+                Address.fromString("fade"), new BinaryMessage(blob))));
+        DeliverSignal decoded = (DeliverSignal) encoding.decode(packet);
+        packet.release();
+
+        assert pool.acquire(packet.getLength()).array() != packet.getBuffer().array();
+        assert decoded.getDelivery().getMessage().equals(new BinaryMessage(blob));
+    }
+
+    @Test
+    public void copySmallBinariesAndReturnTheirBuffers() {
+        BufferPool pool = new BufferPool();
+        StreamingMsgpackEncoding encoding = new StreamingMsgpackEncoding().setBufferPool(pool);
+
+        Packet packet = encoding.encode(new DeliverSignal(new Delivery(Uuid.fromString("01"),
+                Address.fromString("fade"), new BinaryMessage(new byte[]{1, 2, 3}))));
+        DeliverSignal decoded = (DeliverSignal) encoding.decode(packet);
+        packet.release();
+
+        ByteBuffer reused = pool.acquire(packet.getLength());
+        assert reused.array() == packet.getBuffer().array();
+        Arrays.fill(reused.array(), (byte) 0);
+        assert decoded.getDelivery().getMessage().equals(new BinaryMessage(new byte[]{1, 2, 3}));
+    }
+
+    @Test
+    public void reuseBuffersInSteadyState() {
+        BufferPool pool = new BufferPool();
+        StreamingMsgpackEncoding encoding = new StreamingMsgpackEncoding().setBufferPool(pool);
+        DeliverSignal signal = new DeliverSignal(new Delivery(Uuid.fromString("01"),
+                Address.fromString("fade"), new StringMessage("foo")));
+
+        for (int i = 0; i < 100; i++) {
+            Packet packet = encoding.encode(signal);
+            encoding.decode(packet);
+            packet.release();
+        }
+
+        assert pool.getAllocations() == 1;
+        assert pool.getReuses() == 99;
+    }
+
+    @Test
+    public void closeConnectionOnOversizedFrames() throws Exception {
+        ServerSocket server = new ServerSocket(42431);
+        TcpSocketConnection connection = new TcpSocketConnection(new Socket("localhost", 42431))
+                .setMaxFrameSize(1024)
+                .open();
+
+        Socket peer = server.accept();
+        peer.setSoTimeout(5000);
+
+        DataOutputStream out = new DataOutputStream(peer.getOutputStream());
+        out.writeBoolean(true);
+        out.writeInt(1);
+        out.writeInt(1024 * 1024 * 1024);
+        out.flush();
+
+        assert peer.getInputStream().read() == -1;
+
+        connection.close();
+        peer.close();
+        server.close();
+    }
+
+    @Test
+    public void receiveIntoDirectBuffers() throws Exception {
+        Dish one = Dish.buildDefault();
+        Dish two = Dish.buildDefault();
+
+        FakeZell zellOne = new FakeZell();
+        Address addressOne = one.add(zellOne);
+        FakeZell zellTwo = new FakeZell();
+        Address addressTwo = two.add(zellTwo);
+
+        TcpSocketServer server = new TcpSocketServer(new ServerSocket(42432)).start(two);
+        one.join(new TcpSocketConnection(new Socket("localhost", 42432))
+                .setBufferPool(new BufferPool(true, BufferPool.DEFAULT_LARGEST_SIZE_CLASS, 4))
+                .open());
+
+        byte[] blob = new byte[64 * 1024];
+        blob[42] = 42;
+
+        assert one.send(addressTwo, new BinaryMessage(blob)).sync(10).wasDelivered();
+        assert two.send(addressOne, new BinaryMessage(blob)).sync(10).wasDelivered();
+
+        assert zellTwo.received.equals(new BinaryMessage(blob));
+        assert zellOne.received.equals(new BinaryMessage(blob));
+
+        one.leaveAll();
+        server.stop();
+    }
+}
@@ -0,0 +1,214 @@
+package org.zells.dish.tests;
+
+import org.junit.Test;
+import org.zells.dish.Dish;
+import org.zells.dish.Zell;
+import org.zells.dish.delivery.Address;
+import org.zells.dish.delivery.Mailbox;
+import org.zells.dish.delivery.Message;
+import org.zells.dish.delivery.messages.IntegerMessage;
+import org.zells.dish.delivery.messages.StringMessage;
+import org.zells.dish.network.encoding.EncodingRepository;
+import org.zells.dish.util.BasicUuidGenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ProcessMailboxesTest {
+
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 1000;
+
+    @Test
+    public void processOneMessageAtATime() throws InterruptedException {
+        Dish dish = new Dish(new BasicUuidGenerator(), new EncodingRepository());
+        CountDownLatch received = new CountDownLatch(THREADS * ROUNDS);
+        UnsafeZell zell = new UnsafeZell(received);
+        final Address address = dish.addWithMailbox(zell);
+
+        sendConcurrently(dish, address);
+
+        assert received.await(60, TimeUnit.SECONDS);
+        assert zell.count == THREADS * ROUNDS;
+        assert zell.overlaps.get() == 0;
+        assert dish.getMailbox(address).getDepth() == 0;
+    }
+
+    @Test
+    public void keepOrderOfSender() {
+        QueuedExecutor executor = new QueuedExecutor();
+        final List<Integer> received = new ArrayList<Integer>();
+        Mailbox mailbox = new Mailbox(new Zell() {
+            public void receive(Message message) {
+                received.add(message.asInteger());
+            }
+        }, executor);
+
+        for (int i = 0; i < 5; i++) {
+            mailbox.receive(IntegerMessage.valueOf(i));
+        }
+        executor.runAll();
+
+        assert received.toString().equals("[0, 1, 2, 3, 4]");
+    }
+
+    @Test
+    public void drainInBatches() {
+        QueuedExecutor executor = new QueuedExecutor();
+        final List<String> received = new ArrayList<String>();
+        Mailbox mailbox = new Mailbox(new Zell() {
+            public void receive(Message message) {
+                received.add(message.asString());
+            }
+        }, executor).setBatchSize(2);
+
+        for (int i = 0; i < 5; i++) {
+            mailbox.receive(new StringMessage("m" + i));
+        }
+        assert executor.tasks.size() == 1;
+        assert mailbox.getDepth() == 5;
+        assert mailbox.getMaxDepth() == 5;
+
+        executor.runNext();
+        assert received.size() == 2;
+        assert mailbox.getDepth() == 3;
+        assert executor.tasks.size() == 1;
+
+        executor.runAll();
+        assert received.size() == 5;
+        assert mailbox.getDepth() == 0;
+        assert mailbox.getMaxDepth() == 5;
+        assert mailbox.getProcessed() == 5;
+        assert mailbox.getDrains() == 3;
+    }
+
+    @Test
+    public void interleaveMailboxes() {
+        QueuedExecutor executor = new QueuedExecutor();
+        final List<String> received = new ArrayList<String>();
+        Mailbox busy = new Mailbox(new NamedZell("busy", received), executor).setBatchSize(1);
+        Mailbox quiet = new Mailbox(new NamedZell("quiet", received), executor).setBatchSize(1);
+
+        busy.receive(new StringMessage("1"));
+        busy.receive(new StringMessage("2"));
+        busy.receive(new StringMessage("3"));
+        quiet.receive(new StringMessage("1"));
+        executor.runAll();
+
+        assert received.toString().equals("[busy 1, quiet 1, busy 2, busy 3]");
+    }
+
+    @Test
+    public void keepDrainingAfterFailure() {
+        QueuedExecutor executor = new QueuedExecutor();
+        final List<String> received = new ArrayList<String>();
+        Mailbox mailbox = new Mailbox(new Zell() {
+            public void receive(Message message) {
+                if (message.asString().equals("fail")) {
+                    throw new RuntimeException("failed");
+                }
+                received.add(message.asString());
+            }
+        }, executor) {
+            @Override
+            protected void logError(Exception e, Message message) {
+                received.add("error " + message.asString());
+            }
+        };
+
+        mailbox.receive(new StringMessage("fail"));
+        mailbox.receive(new StringMessage("ok"));
+        executor.runAll();
+
+        assert received.toString().equals("[error fail, ok]");
+    }
+
+    @Test
+    public void noMailboxByDefault() {
+        Dish dish = new Dish(new BasicUuidGenerator(), new EncodingRepository());
+        Address address = dish.add(new NamedZell("plain", new ArrayList<String>()));
+
+        assert dish.getMailbox(address) == null;
+    }
+
+    private void sendConcurrently(final Dish dish, final Address address) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < ROUNDS; i++) {
+                            dish.send(address, IntegerMessage.valueOf(i));
+                        }
+                    } catch (InterruptedException ignored) {
+                    }
+                    done.countDown();
+                }
+            }.start();
+        }
+        start.countDown();
+        assert done.await(60, TimeUnit.SECONDS);
+    }
+
+    private static class UnsafeZell implements Zell {
+
+        private final CountDownLatch received;
+        private final AtomicInteger active = new AtomicInteger();
+        private final AtomicInteger overlaps = new AtomicInteger();
+        private int count = 0;
+
+        UnsafeZell(CountDownLatch received) {
+            this.received = received;
+        }
+
+        public void receive(Message message) {
+            if (active.incrementAndGet() > 1) {
+                overlaps.incrementAndGet();
+            }
+            count++;
+            active.decrementAndGet();
+            received.countDown();
+        }
+    }
+
+    private static class NamedZell implements Zell {
+
+        private final String name;
+        private final List<String> received;
+
+        NamedZell(String name, List<String> received) {
+            this.name = name;
+            this.received = received;
+        }
+
+        public void receive(Message message) {
+            received.add(name + " " + message.asString());
+        }
+    }
+
+    private static class QueuedExecutor implements Executor {
+
+        private final List<Runnable> tasks = new ArrayList<Runnable>();
+
+        public void execute(Runnable task) {
+            tasks.add(task);
+        }
+
+        void runNext() {
+            tasks.remove(0).run();
+        }
+
+        void runAll() {
+            while (!tasks.isEmpty()) {
+                runNext();
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package org.zells.dish.tests;
+
+import org.junit.Test;
+import org.zells.dish.delivery.Address;
+import org.zells.dish.delivery.Delivery;
+import org.zells.dish.delivery.Message;
+import org.zells.dish.delivery.messages.*;
+import org.zells.dish.network.encoding.Encoding;
+import org.zells.dish.network.encoding.implementations.MsgpackCompositeMessage;
+import org.zells.dish.network.encoding.implementations.MsgpackEncoding;
+import org.zells.dish.network.encoding.implementations.StreamingMsgpackEncoding;
+import org.zells.dish.network.signals.DeliverSignal;
+import org.zells.dish.util.Uuid;
+
+public class ReadLazyMessagesTest {
+
+    private Encoding streaming = new StreamingMsgpackEncoding();
+
+    @Test
+    public void decodeCompositesAsViews() {
+        Message lazy = roundTrip(lobby());
+
+        assert lazy instanceof MsgpackCompositeMessage;
+        assert lazy.read("members") instanceof MsgpackCompositeMessage;
+        assert lazy.read("members").read(1).read("avatar") instanceof AddressMessage;
+        assert lazy.read("say") instanceof StringMessage;
+    }
+
+    @Test
+    public void behaveLikeEagerMessages() {
+        Encoding jackson = new MsgpackEncoding();
+        Message eager = ((DeliverSignal) jackson.decode(jackson.encode(deliver(lobby())))).getDelivery().getMessage();
+        Message lazy = roundTrip(lobby());
+
+        assert lazy.equals(eager);
+        assert eager.equals(lazy);
+        assert lazy.hashCode() == eager.hashCode();
+        assert lazy.keys().equals(eager.keys());
+        assert lazy.asString().equals(eager.asString());
+        assert lazy.isTrue() == eager.isTrue();
+        assert lazy.asInteger() == eager.asInteger();
+        assert lazy.asBytes().length == 0;
+        assert lazy.read("nothing") instanceof NullMessage;
+        assert lazy.read("members").read(0).read("name").asString().equals("member 0");
+    }
+
+    @Test
+    public void deriveFromViews() {
+        Message lazy = ((CompositeMessage) roundTrip(lobby())).with("topic", new StringMessage("news"));
+
+        assert lazy.keys().size() == 3;
+        assert lazy.read("say").asString().equals("welcome");
+
+        Message copy = roundTrip(lazy);
+        assert copy.read("topic").asString().equals("news");
+        assert copy.read("members").equals(lobby().read("members"));
+    }
+
+    @Test
+    public void keepOrderOfEagerMessages() {
+        CompositeMessage many = new CompositeMessage();
+        for (int i = 0; i < 50; i++) {
+            many.put("key" + (50 - i), new IntegerMessage(i));
+        }
+
+        assert roundTrip(many).asString().equals(many.asString());
+    }
+
+    private Message lobby() {
+        CompositeMessage members = new CompositeMessage();
+        for (int i = 0; i < 3; i++) {
+            members.put(i, new CompositeMessage()
+                    .put("name", new StringMessage("member " + i))
+                    .put("avatar", new AddressMessage(Address.fromString("fade0" + i))));
+        }
+        return new CompositeMessage()
+                .put("say", new StringMessage("welcome"))
+                .put("members", members);
+    }
+
+    private Message roundTrip(Message message) {
+        return ((DeliverSignal) streaming.decode(streaming.encode(deliver(message)))).getDelivery().getMessage();
+    }
+
+    private DeliverSignal deliver(Message message) {
+        return new DeliverSignal(new Delivery(Uuid.fromString("01"), Address.fromString("fade"), message));
+    }
+}
@@ -176,4 +176,31 @@ public class ReadMessagesTest {
         assert m.read(21).read(0).asString().equals("21");
         assert m.read(21).read(1).asString().equals("22");
     }
+
+    @Test
+    public void compositeMessageAsList() {
+        CompositeMessage m = new CompositeMessage(new StringMessage("zero"), new StringMessage("one"));
+        m.put("2", new StringMessage("two"));
+        m.put(4, new StringMessage("four"));
+
+        assert m.getSize() == 3;
+        assert !m.isList();
+        assert m.read("4").asString().equals("four");
+
+        m.put(3, new StringMessage("three"));
+        assert m.getSize() == 5;
+        assert m.isList();
+        assert m.keys().equals(new HashSet<String>(Arrays.asList("0", "1", "2", "3", "4")));
+        assert m.read(4).asString().equals("four");
+        assert m.read(5).isNull();
+
+        CompositeMessage backwards = new CompositeMessage();
+        for (int i = 4; i >= 0; i--) {
+            backwards.put(Integer.toString(i), m.read(i));
+        }
+        assert backwards.equals(m);
+        assert backwards.hashCode() == m.hashCode();
+        assert backwards.asString().equals("{0:zero, 1:one, 2:two, 3:three, 4:four}");
+        assert !m.equals(new CompositeMessage().put("01", new StringMessage("one")));
+    }
 }
@@ -0,0 +1,131 @@
+package org.zells.dish.tests;
+
+import org.junit.Test;
+import org.msgpack.core.MessageBufferPacker;
+import org.msgpack.core.MessagePack;
+import org.zells.dish.Dish;
+import org.zells.dish.delivery.Address;
+import org.zells.dish.delivery.Delivery;
+import org.zells.dish.delivery.Message;
+import org.zells.dish.delivery.messages.*;
+import org.zells.dish.network.connecting.Connection;
+import org.zells.dish.network.connecting.Packet;
+import org.zells.dish.network.encoding.Encoding;
+import org.zells.dish.network.encoding.EncodingRepository;
+import org.zells.dish.network.encoding.implementations.MsgpackEncoding;
+import org.zells.dish.network.encoding.implementations.StreamingMsgpackEncoding;
+import org.zells.dish.network.signals.DeliverSignal;
+import org.zells.dish.tests.fakes.FakeConnection;
+import org.zells.dish.tests.fakes.FakeUuidGenerator;
+import org.zells.dish.tests.fakes.FakeZell;
+import org.zells.dish.util.Uuid;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+public class RelayEncodedMessagesTest {
+
+    private Encoding streaming = new StreamingMsgpackEncoding();
+
+    @Test
+    public void decodeDeliveredStringsLazily() {
+        DeliverSignal decoded = (DeliverSignal) streaming.decode(streaming.encode(deliver(new StringMessage("forward me"))));
+        Message message = decoded.getDelivery().getMessage();
+
+        assert message instanceof EncodedMessage;
+        assert !((EncodedMessage) message).isDecoded();
+
+        assert message.asString().equals("forward me");
+        assert ((EncodedMessage) message).isDecoded();
+        assert message.equals(new StringMessage("forward me"));
+    }
+
+    @Test
+    public void decodeScalarsEagerly() {
+        DeliverSignal decoded = (DeliverSignal) streaming.decode(streaming.encode(deliver(new IntegerMessage(42))));
+        assert decoded.getDelivery().getMessage() instanceof IntegerMessage;
+    }
+
+    @Test
+    public void forwardEncodedBytesUntouched() throws IOException {
+        MessageBufferPacker packer = MessagePack.newDefaultBufferPacker();
+        packer.packArrayHeader(5).packString("DELIVER");
+        packer.packBinaryHeader(1).writePayload(new byte[]{1});
+        packer.packBinaryHeader(2).writePayload(new byte[]{(byte) 0xfa, (byte) 0xde});
+        packer.packMapHeader(2).packString("b").packInt(2).packString("a").packInt(1);
+        packer.packInt(1);
+        byte[] expected = packer.toByteArray();
+
+        Delivery received = ((DeliverSignal) streaming.decode(new Packet(expected))).getDelivery();
+        Packet forwarded = streaming.encode(new DeliverSignal(received));
+
+        assert Arrays.equals(forwarded.getBytes(), expected);
+        assert received.getMessage().equals(new CompositeMessage()
+                .put("a", new IntegerMessage(1))
+                .put("b", new IntegerMessage(2)));
+    }
+
+    @Test
+    public void keepLargeMessagesValidAfterRelease() {
+        CompositeMessage large = new CompositeMessage().put("blob", new StringMessage(new String(new char[4096])));
+        Packet packet = streaming.encode(deliver(large));
+
+        Message message = ((DeliverSignal) streaming.decode(packet)).getDelivery().getMessage();
+        packet.release();
+        streaming.encode(deliver(new StringMessage(new String(new char[4096]).replace('\0', 'x')))).release();
+
+        assert message.equals(large);
+    }
+
+    @Test
+    public void reencodeWithOtherImplementations() {
+        Delivery received = ((DeliverSignal) streaming.decode(streaming.encode(deliver(command())))).getDelivery();
+        Encoding jackson = new MsgpackEncoding();
+
+        DeliverSignal decoded = (DeliverSignal) jackson.decode(jackson.encode(new DeliverSignal(received)));
+        assert decoded.getDelivery().getMessage().equals(command());
+    }
+
+    @Test
+    public void handOutDecodedMessagesToZells() {
+        FakeUuidGenerator generator = new FakeUuidGenerator();
+        EncodingRepository encodings = new EncodingRepository().add(new StreamingMsgpackEncoding());
+        Dish one = new Dish(generator, encodings);
+        Dish hub = new Dish(generator, encodings);
+        Dish three = new Dish(generator, encodings);
+
+        FakeZell zell = new FakeZell();
+        Address address = three.add(zell);
+
+        one.join(connect(one, hub));
+        hub.join(connect(hub, three));
+
+        assert one.send(address, command()).sync().wasDelivered();
+        assert zell.received instanceof CompositeMessage;
+        assert zell.received.read("pen") instanceof BooleanMessage;
+        assert zell.received.equals(command());
+    }
+
+    private Message command() {
+        return new CompositeMessage()
+                .put("go", new IntegerMessage(42))
+                .put("turn", new StringMessage("left"))
+                .put("pen", new BooleanMessage(true));
+    }
+
+    private DeliverSignal deliver(Message message) {
+        return new DeliverSignal(new Delivery(Uuid.fromString("01"), Address.fromString("fade"), message, 1));
+    }
+
+    private Connection connect(Dish a, Dish b) {
+        FakeConnection ab = new FakeConnection();
+        FakeConnection ba = new FakeConnection();
+        ab.to(ba);
+        ba.to(ab);
+
+        b.listen(ab);
+        a.listen(ba);
+
+        return ba;
+    }
+}
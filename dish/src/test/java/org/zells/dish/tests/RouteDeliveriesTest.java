@@ -0,0 +1,299 @@
+package org.zells.dish.tests;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.zells.dish.Dish;
+import org.zells.dish.delivery.Address;
+import org.zells.dish.delivery.Delivery;
+import org.zells.dish.delivery.Messenger;
+import org.zells.dish.delivery.ReceiverNotFoundException;
+import org.zells.dish.delivery.messages.StringMessage;
+import org.zells.dish.network.Peer;
+import org.zells.dish.network.connecting.Connection;
+import org.zells.dish.network.encoding.EncodingRepository;
+import org.zells.dish.network.routing.implementations.ParallelDeliveryStrategy;
+import org.zells.dish.network.routing.implementations.RoutedDeliveryStrategy;
+import org.zells.dish.network.signals.FailedSignal;
+import org.zells.dish.network.signals.OkSignal;
+import org.zells.dish.tests.fakes.FakeAsyncConnection;
+import org.zells.dish.tests.fakes.FakeConnection;
+import org.zells.dish.tests.fakes.FakeEncoding;
+import org.zells.dish.tests.fakes.FakeUuidGenerator;
+import org.zells.dish.tests.fakes.FakeZell;
+import org.zells.dish.util.Uuid;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+
+public class RouteDeliveriesTest {
+
+    private FakeUuidGenerator generator;
+    private EncodingRepository encodings;
+
+    private Executor direct = new Executor() {
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Before
+    public void setUp() {
+        generator = new FakeUuidGenerator();
+        encodings = new EncodingRepository().add(new FakeEncoding());
+    }
+
+    @Test
+    public void firstPeerToAcceptWins() {
+        FakeAsyncConnection one = new FakeAsyncConnection(encodings);
+        FakeAsyncConnection two = new FakeAsyncConnection(encodings);
+        Peer peerOne = new Peer(encodings, one, direct);
+        Peer peerTwo = new Peer(encodings, two, direct);
+
+        Messenger messenger = new ParallelDeliveryStrategy().deliver(aDelivery(), Arrays.asList(peerOne, peerTwo));
+        assert one.held.size() == 1;
+        assert two.held.size() == 1;
+        assert !messenger.isDone();
+
+        two.respond(0, new OkSignal());
+        assert messenger.wasDelivered();
+
+        one.respond(0, new FailedSignal());
+        assert messenger.wasDelivered();
+    }
+
+    @Test
+    public void learnLocationBeforeReportingDelivery() {
+        FakeAsyncConnection one = new FakeAsyncConnection(encodings);
+        final Peer peer = new Peer(encodings, one, direct);
+        final RoutedDeliveryStrategy routes = new RoutedDeliveryStrategy();
+        final Delivery delivery = aDelivery();
+        final boolean[] known = new boolean[1];
+
+        routes.deliver(delivery, Arrays.asList(peer)).when(new Messenger.Delivered() {
+            public void then() {
+                known[0] = routes.getLocations().find(delivery.getReceiver()).getPeer() == peer;
+            }
+        });
+        one.respond(0, new OkSignal());
+
+        assert known[0];
+    }
+
+    @Test
+    public void markUnreachableBeforeReportingFailure() {
+        FakeAsyncConnection one = new FakeAsyncConnection(encodings);
+        final RoutedDeliveryStrategy routes = new RoutedDeliveryStrategy();
+        final Delivery delivery = aDelivery();
+        final boolean[] unreachable = new boolean[1];
+
+        routes.deliver(delivery, Arrays.asList(new Peer(encodings, one, direct))).when(new Messenger.Failed() {
+            public void then(Exception e) {
+                unreachable[0] = routes.getLocations().find(delivery.getReceiver()).isUnreachable();
+            }
+        });
+        one.respond(0, new FailedSignal());
+
+        assert unreachable[0];
+    }
+
+    @Test
+    public void failIfNoPeerAccepts() {
+        FakeAsyncConnection one = new FakeAsyncConnection(encodings);
+        FakeAsyncConnection two = new FakeAsyncConnection(encodings);
+
+        Messenger messenger = new ParallelDeliveryStrategy().deliver(aDelivery(), Arrays.asList(
+                new Peer(encodings, one, direct),
+                new Peer(encodings, two, direct)));
+
+        one.respond(0, new FailedSignal());
+        assert !messenger.isDone();
+
+        two.respond(0, new FailedSignal());
+        assert messenger.getFailure() instanceof ReceiverNotFoundException;
+    }
+
+    @Test
+    public void doNotCacheUnreachableReceiversOnTransportFailure() {
+        FakeAsyncConnection one = new FakeAsyncConnection(encodings);
+        FakeAsyncConnection two = new FakeAsyncConnection(encodings);
+        RoutedDeliveryStrategy routes = new RoutedDeliveryStrategy();
+        Delivery delivery = aDelivery();
+
+        Messenger messenger = routes.deliver(delivery, Arrays.asList(
+                new Peer(encodings, one, direct),
+                new Peer(encodings, two, direct)));
+        one.respond(0, new FailedSignal());
+        two.held.get(0).failed(new IOException("Response timed out"));
+
+        assert messenger.getFailure() instanceof IOException;
+        assert routes.getLocations().find(delivery.getReceiver()) == null;
+    }
+
+    @Test
+    public void cacheUnreachableReceiversIfNoPeerFindsThem() {
+        FakeAsyncConnection one = new FakeAsyncConnection(encodings);
+        FakeAsyncConnection two = new FakeAsyncConnection(encodings);
+        RoutedDeliveryStrategy routes = new RoutedDeliveryStrategy();
+        Delivery delivery = aDelivery();
+
+        Messenger messenger = routes.deliver(delivery, Arrays.asList(
+                new Peer(encodings, one, direct),
+                new Peer(encodings, two, direct)));
+        one.respond(0, new FailedSignal());
+        two.respond(0, new FailedSignal());
+
+        assert messenger.getFailure() instanceof ReceiverNotFoundException;
+        assert routes.getLocations().find(delivery.getReceiver()).isUnreachable();
+    }
+
+    @Test
+    public void cancelQueuedAttempts() {
+        FakeAsyncConnection busy = new FakeAsyncConnection(encodings);
+        FakeAsyncConnection idle = new FakeAsyncConnection(encodings);
+        Peer busyPeer = new Peer(encodings, busy, direct).setWindow(1);
+        Peer idlePeer = new Peer(encodings, idle, direct);
+
+        busyPeer.deliver(aDelivery());
+        Messenger messenger = new ParallelDeliveryStrategy().deliver(aDelivery(), Arrays.asList(busyPeer, idlePeer));
+
+        idle.respond(0, new OkSignal());
+        busy.respond(0, new OkSignal());
+
+        assert messenger.wasDelivered();
+        assert busy.held.size() == 1;
+        assert busyPeer.getInFlight() == 0;
+    }
+
+    @Test
+    public void learnLocations() {
+        Dish one = new Dish(generator, encodings);
+        Dish two = new Dish(generator, encodings);
+        Dish three = new Dish(generator, encodings);
+
+        RoutedDeliveryStrategy routes = new RoutedDeliveryStrategy();
+        one.setDeliveryStrategy(routes);
+
+        FakeZell zell = new FakeZell();
+        Address address = three.add(zell);
+
+        one.join(connect(one, two));
+        one.join(connect(one, three));
+
+        one.send(address, new StringMessage("first")).sync();
+        assert routes.getLocations().size() == 1;
+
+        long probed = two.getDeliveryFilter().getMisses();
+        one.send(address, new StringMessage("second")).sync();
+
+        assert zell.received.asString().equals("second");
+        assert two.getDeliveryFilter().getMisses() == probed;
+    }
+
+    @Test
+    public void forgetStaleLocations() {
+        Dish one = new Dish(generator, encodings);
+        Dish two = new Dish(generator, encodings);
+        Dish three = new Dish(generator, encodings);
+
+        RoutedDeliveryStrategy routes = new RoutedDeliveryStrategy();
+        one.setDeliveryStrategy(routes);
+
+        FakeZell zell = new FakeZell();
+        Address address = three.add(zell);
+
+        one.join(connect(one, two));
+        one.join(connect(one, three));
+
+        one.send(address, new StringMessage("first")).sync();
+        three.remove(address);
+        two.put(address, zell);
+
+        one.send(address, new StringMessage("moved")).sync();
+        assert zell.received.asString().equals("moved");
+    }
+
+    @Test
+    public void failFastForUnreachableAddresses() {
+        Dish one = new Dish(generator, encodings);
+        Dish two = new Dish(generator, encodings);
+        Dish three = new Dish(generator, encodings);
+        Address address = Address.fromString("fade");
+
+        one.join(connect(one, two));
+
+        assert one.send(address, new StringMessage("nobody")).sync().getFailure() instanceof ReceiverNotFoundException;
+        long probed = two.getDeliveryFilter().getMisses();
+
+        assert one.send(address, new StringMessage("still nobody")).sync().getFailure() instanceof ReceiverNotFoundException;
+        assert two.getDeliveryFilter().getMisses() == probed;
+
+        FakeZell zell = new FakeZell();
+        three.put(address, zell);
+        one.join(connect(one, three));
+
+        one.send(address, new StringMessage("somebody")).sync();
+        assert zell.received.asString().equals("somebody");
+    }
+
+    @Test
+    public void forgetLocationsOfLeavingPeers() {
+        Dish one = new Dish(generator, encodings);
+        Dish two = new Dish(generator, encodings);
+
+        Address address = two.add(new FakeZell());
+        Connection connection = connect(one, two);
+        one.join(connection);
+
+        one.send(address, new StringMessage("first")).sync();
+        RoutedDeliveryStrategy routes = (RoutedDeliveryStrategy) one.getDeliveryStrategy();
+        assert routes.getLocations().size() == 1;
+
+        one.leave(connection);
+        assert routes.getLocations().size() == 0;
+    }
+
+    @Test
+    public void limitHops() {
+        Dish one = new Dish(generator, encodings);
+        Dish two = new Dish(generator, encodings);
+        Dish three = new Dish(generator, encodings);
+        Dish four = new Dish(generator, encodings);
+
+        FakeZell zell = new FakeZell();
+        Address address = four.add(zell);
+
+        one.setDeliveryStrategy(new ParallelDeliveryStrategy());
+        one.join(connect(one, two));
+        two.join(connect(two, three));
+        three.join(connect(three, four));
+
+        for (Dish dish : Arrays.asList(one, two, three, four)) {
+            dish.setMaxHops(2);
+        }
+        Messenger limited = one.send(address, new StringMessage("too far")).sync();
+        assert limited.getFailure() instanceof ReceiverNotFoundException;
+
+        for (Dish dish : Arrays.asList(one, two, three, four)) {
+            dish.setMaxHops(3);
+        }
+        one.send(address, new StringMessage("close enough")).sync();
+        assert zell.received.asString().equals("close enough");
+    }
+
+    private Delivery aDelivery() {
+        return new Delivery(generator.generate(), new Address(Uuid.fromString("fade")), new StringMessage("foo"));
+    }
+
+    private Connection connect(Dish a, Dish b) {
+        FakeConnection ab = new FakeConnection();
+        FakeConnection ba = new FakeConnection();
+        ab.to(ba);
+        ba.to(ab);
+
+        b.listen(ab);
+        a.listen(ba);
+
+        return ba;
+    }
+}
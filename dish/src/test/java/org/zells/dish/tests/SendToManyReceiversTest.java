@@ -0,0 +1,219 @@
+package org.zells.dish.tests;
+
+import org.junit.Test;
+import org.zells.dish.Dish;
+import org.zells.dish.delivery.Address;
+import org.zells.dish.delivery.Delivery;
+import org.zells.dish.delivery.Message;
+import org.zells.dish.delivery.Messenger;
+import org.zells.dish.delivery.ReceiverNotFoundException;
+import org.zells.dish.delivery.messages.StringMessage;
+import org.zells.dish.network.Peer;
+import org.zells.dish.network.Signal;
+import org.zells.dish.network.connecting.Connection;
+import org.zells.dish.network.connecting.Packet;
+import org.zells.dish.network.connecting.implementations.socket.TcpSocketConnection;
+import org.zells.dish.network.connecting.implementations.socket.TcpSocketServer;
+import org.zells.dish.network.encoding.Encoding;
+import org.zells.dish.network.encoding.EncodingRepository;
+import org.zells.dish.network.encoding.implementations.MsgpackEncoding;
+import org.zells.dish.network.encoding.implementations.StreamingMsgpackEncoding;
+import org.zells.dish.network.routing.implementations.RoutedDeliveryStrategy;
+import org.zells.dish.network.signals.BatchSignal;
+import org.zells.dish.network.signals.DeliverSignal;
+import org.zells.dish.network.signals.FailedSignal;
+import org.zells.dish.network.signals.MulticastSignal;
+import org.zells.dish.network.signals.OkSignal;
+import org.zells.dish.tests.fakes.FakeAsyncConnection;
+import org.zells.dish.tests.fakes.FakeConnection;
+import org.zells.dish.tests.fakes.FakeZell;
+import org.zells.dish.util.BasicUuidGenerator;
+import org.zells.dish.util.Uuid;
+
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+public class SendToManyReceiversTest {
+
+    private EncodingRepository encodings = new EncodingRepository().addAll(EncodingRepository.supportedEncodings());
+
+    private Executor direct = new Executor() {
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Test
+    public void reportOutcomePerReceiver() {
+        Dish one = new Dish(new BasicUuidGenerator(), encodings).setExecutor(direct);
+        Dish two = new Dish(new BasicUuidGenerator(), encodings).setExecutor(direct);
+        FakeZell local = new FakeZell();
+        FakeZell remote = new FakeZell();
+        Address here = one.add(local);
+        Address there = two.add(remote);
+        Address nowhere = Address.fromString("fade");
+        one.join(connect(one, two));
+
+        Map<Address, Messenger> messengers = one.sendAll(Arrays.asList(here, there, nowhere), new StringMessage("hi"));
+
+        assert messengers.get(here).sync().wasDelivered();
+        assert messengers.get(there).sync().wasDelivered();
+        assert messengers.get(nowhere).sync().getFailure() instanceof ReceiverNotFoundException;
+        assert local.received.asString().equals("hi");
+        assert remote.received.asString().equals("hi");
+    }
+
+    @Test
+    public void sendOneBatchPerKnownPeer() {
+        FakeAsyncConnection connection = new FakeAsyncConnection(encodings);
+        Peer peer = new Peer(encodings, connection, direct);
+        RoutedDeliveryStrategy routes = new RoutedDeliveryStrategy();
+        routes.getLocations().learn(Address.fromString("aa"), peer);
+        routes.getLocations().learn(Address.fromString("bb"), peer);
+
+        List<Messenger> messengers = routes.deliverAll(Arrays.asList(
+                aDelivery("01", "aa", new StringMessage("foo")),
+                aDelivery("02", "bb", new StringMessage("bar"))), Arrays.asList(peer));
+
+        assert connection.sent.size() == 1;
+        assert encodings.decode(connection.sent.get(0)).equals(new BatchSignal(Arrays.<Signal>asList(
+                new DeliverSignal(aDelivery("01", "aa", new StringMessage("foo"))),
+                new DeliverSignal(aDelivery("02", "bb", new StringMessage("bar"))))));
+
+        connection.respond(0, new BatchSignal(Arrays.<Signal>asList(new OkSignal(), new OkSignal())));
+        assert messengers.get(0).wasDelivered();
+        assert messengers.get(1).wasDelivered();
+    }
+
+    @Test
+    public void sendSharedMessageOncePerPeer() {
+        FakeAsyncConnection connection = new FakeAsyncConnection(encodings);
+        Peer peer = new Peer(encodings, connection, direct);
+
+        Message message = new StringMessage("foo");
+        List<Messenger> messengers = peer.deliverAll(Arrays.asList(
+                aDelivery("01", "aa", message),
+                aDelivery("02", "bb", message)));
+
+        assert connection.sent.size() == 1;
+        assert encodings.decode(connection.sent.get(0)).equals(new MulticastSignal(Arrays.asList(
+                aDelivery("01", "aa", message),
+                aDelivery("02", "bb", message))));
+
+        connection.respond(0, new BatchSignal(Arrays.<Signal>asList(new OkSignal(), new FailedSignal())));
+        assert messengers.get(0).wasDelivered();
+        assert messengers.get(1).getFailure() instanceof ReceiverNotFoundException;
+    }
+
+    @Test
+    public void multicastBetweenDishes() throws Exception {
+        Dish one = Dish.buildDefault();
+        Dish two = Dish.buildDefault();
+        FakeZell first = new FakeZell();
+        FakeZell second = new FakeZell();
+        Address here = two.add(first);
+        Address there = two.add(second);
+
+        TcpSocketServer server = new TcpSocketServer(new ServerSocket(42437)).start(two);
+        TcpSocketConnection connection = new TcpSocketConnection(new Socket("localhost", 42437)).open();
+        one.join(connection);
+
+        Peer peer = one.getPeers().iterator().next();
+        RoutedDeliveryStrategy routes = (RoutedDeliveryStrategy) one.getDeliveryStrategy();
+        routes.getLocations().learn(here, peer);
+        routes.getLocations().learn(there, peer);
+
+        Map<Address, Messenger> messengers = one.sendAll(Arrays.asList(here, there, Address.fromString("fade")),
+                new StringMessage("hi all"));
+
+        assert messengers.get(here).sync(10).wasDelivered();
+        assert messengers.get(there).sync(10).wasDelivered();
+        assert messengers.get(Address.fromString("fade")).sync(10).getFailure() instanceof ReceiverNotFoundException;
+        assert first.received.asString().equals("hi all");
+        assert second.received.asString().equals("hi all");
+
+        connection.close();
+        server.stop();
+    }
+
+    @Test
+    public void sendSingleDeliveriesIfPeerCannotBatch() {
+        FakeAsyncConnection connection = new FakeAsyncConnection(encodings);
+        Peer peer = new Peer(encodings, connection, direct);
+
+        Message message = new StringMessage("foo");
+        peer.deliverAll(Arrays.asList(aDelivery("01", "aa", message), aDelivery("02", "bb", message)));
+        connection.respond(0, FailedSignal.unsupported("MULTICAST"));
+        assert connection.sent.size() == 3;
+
+        List<Messenger> messengers = peer.deliverAll(Arrays.asList(
+                aDelivery("03", "aa", message),
+                aDelivery("04", "bb", message)));
+
+        assert connection.sent.size() == 5;
+        assert encodings.decode(connection.sent.get(3)).equals(new DeliverSignal(aDelivery("03", "aa", message)));
+        assert encodings.decode(connection.sent.get(4)).equals(new DeliverSignal(aDelivery("04", "bb", message)));
+
+        connection.respond(3, new OkSignal());
+        connection.respond(4, new OkSignal());
+        assert messengers.get(0).wasDelivered();
+        assert messengers.get(1).wasDelivered();
+    }
+
+    @Test
+    public void discoverUnknownReceivers() {
+        FakeAsyncConnection connection = new FakeAsyncConnection(encodings);
+        Peer peer = new Peer(encodings, connection, direct);
+        RoutedDeliveryStrategy routes = new RoutedDeliveryStrategy();
+        routes.getLocations().learn(Address.fromString("aa"), peer);
+
+        Message message = new StringMessage("foo");
+        List<Messenger> messengers = routes.deliverAll(Arrays.asList(
+                aDelivery("01", "aa", message),
+                aDelivery("02", "bb", message)), Arrays.asList(peer));
+
+        assert connection.sent.size() == 2;
+        assert encodings.decode(connection.sent.get(0)).equals(new DeliverSignal(aDelivery("02", "bb", message)));
+        assert encodings.decode(connection.sent.get(1)).equals(new DeliverSignal(aDelivery("01", "aa", message)));
+
+        connection.respond(0, new FailedSignal());
+        connection.respond(1, new OkSignal());
+        assert messengers.get(0).wasDelivered();
+        assert messengers.get(1).getFailure() instanceof ReceiverNotFoundException;
+    }
+
+    @Test
+    public void encodeRepeatedMessageOnce() {
+        Message message = new StringMessage("shared");
+        BatchSignal batch = new BatchSignal(Arrays.<Signal>asList(
+                new DeliverSignal(aDelivery("01", "aa", message)),
+                new DeliverSignal(aDelivery("02", "bb", message)),
+                new DeliverSignal(aDelivery("03", "cc", new StringMessage("other")))));
+
+        Encoding streaming = new StreamingMsgpackEncoding();
+        byte[] expected = new MsgpackEncoding().encode(batch).getBytes();
+
+        assert Arrays.equals(streaming.encode(batch).getBytes(), expected);
+        assert streaming.decode(new Packet(expected)).equals(batch);
+    }
+
+    private Delivery aDelivery(String uuid, String receiver, Message message) {
+        return new Delivery(Uuid.fromString(uuid), new Address(Uuid.fromString(receiver)), message);
+    }
+
+    private Connection connect(Dish a, Dish b) {
+        FakeConnection ab = new FakeConnection();
+        FakeConnection ba = new FakeConnection();
+        ab.to(ba);
+        ba.to(ab);
+
+        b.listen(ab);
+        a.listen(ba);
+
+        return ba;
+    }
+}
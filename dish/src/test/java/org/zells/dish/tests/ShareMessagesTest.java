@@ -0,0 +1,95 @@
+package org.zells.dish.tests;
+
+import org.junit.Test;
+import org.zells.dish.delivery.Address;
+import org.zells.dish.delivery.Delivery;
+import org.zells.dish.delivery.Message;
+import org.zells.dish.delivery.messages.CompositeMessage;
+import org.zells.dish.delivery.messages.IntegerMessage;
+import org.zells.dish.delivery.messages.StringMessage;
+import org.zells.dish.util.Uuid;
+
+public class ShareMessagesTest {
+
+    @Test
+    public void freezeNestedMessages() {
+        CompositeMessage inner = new CompositeMessage().put("a", new IntegerMessage(1));
+        CompositeMessage outer = new CompositeMessage().put("inner", inner);
+
+        assert inner.isFrozen();
+        assert !outer.isFrozen();
+        assertCannotModify(inner);
+
+        outer.put("b", new IntegerMessage(2));
+        assert outer.keys().size() == 2;
+    }
+
+    @Test
+    public void freezeDeliveredMessages() {
+        CompositeMessage message = new CompositeMessage().put("a", new IntegerMessage(1));
+        new Delivery(Uuid.fromString("01"), Address.fromString("fade"), message);
+
+        assert message.isFrozen();
+        assertCannotModify(message);
+    }
+
+    @Test
+    public void deriveWithoutCopyingSubtrees() {
+        CompositeMessage subtree = new CompositeMessage();
+        for (int i = 0; i < 100; i++) {
+            subtree.put(i, new StringMessage("entry " + i));
+        }
+        CompositeMessage original = new CompositeMessage(new StringMessage("list")).put("entries", subtree).freeze();
+        int hash = original.hashCode();
+
+        CompositeMessage derived = original.with("sequence", new IntegerMessage(1)).with(0, new StringMessage("copy"));
+
+        assert derived.read("entries") == subtree;
+        assert derived.read(0).asString().equals("copy");
+        assert original.read(0).asString().equals("list");
+        assert original.keys().size() == 2;
+        assert original.hashCode() == hash;
+
+        CompositeMessage rebuilt = new CompositeMessage(new StringMessage("copy"))
+                .put("entries", subtree)
+                .put("sequence", new IntegerMessage(1));
+        assert derived.hashCode() == rebuilt.hashCode();
+        assert derived.equals(rebuilt);
+    }
+
+    @Test
+    public void cacheHashCodes() {
+        CountingMessage counting = new CountingMessage();
+        CompositeMessage message = new CompositeMessage().put("counting", counting);
+
+        int hash = message.hashCode();
+        assert message.hashCode() == hash;
+        assert counting.hashed == 1;
+
+        message.put("more", new IntegerMessage(42));
+        assert message.hashCode() != hash;
+        assert counting.hashed == 2;
+
+        new CompositeMessage().put("outer", message).hashCode();
+        assert counting.hashed == 2;
+    }
+
+    private void assertCannotModify(CompositeMessage message) {
+        try {
+            message.put("b", new IntegerMessage(2));
+            assert false;
+        } catch (IllegalStateException ignored) {
+        }
+    }
+
+    private static class CountingMessage extends Message {
+
+        int hashed = 0;
+
+        @Override
+        public int hashCode() {
+            hashed++;
+            return 42;
+        }
+    }
+}
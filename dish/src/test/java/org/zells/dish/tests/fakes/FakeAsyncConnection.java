@@ -0,0 +1,52 @@
+package org.zells.dish.tests.fakes;
+
+import org.zells.dish.network.Signal;
+import org.zells.dish.network.connecting.AsyncConnection;
+import org.zells.dish.network.connecting.Connection;
+import org.zells.dish.network.connecting.Packet;
+import org.zells.dish.network.connecting.PacketHandler;
+import org.zells.dish.network.encoding.EncodingRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class FakeAsyncConnection implements AsyncConnection {
+
+    public List<Callback> held = new ArrayList<Callback>();
+    public List<Packet> sent = new ArrayList<Packet>();
+    public PacketHandler handler;
+
+    private EncodingRepository encodings;
+
+    public FakeAsyncConnection(EncodingRepository encodings) {
+        this.encodings = encodings;
+    }
+
+    synchronized public void transmit(Packet packet, Callback callback) {
+        sent.add(packet);
+        held.add(callback);
+    }
+
+    public void respond(int index, Signal signal) {
+        Callback callback;
+        synchronized (this) {
+            callback = held.get(index);
+        }
+        callback.received(encodings.encode(signal));
+    }
+
+    public Packet transmit(Packet packet) {
+        throw new UnsupportedOperationException();
+    }
+
+    public void setHandler(PacketHandler handler) {
+        this.handler = handler;
+    }
+
+    public Connection open() {
+        return this;
+    }
+
+    public void close() {
+    }
+}
@@ -6,6 +6,10 @@ import org.zells.dish.network.encoding.Encoding;
 
 public class FakeEncoding implements Encoding {
 
+    public int getTag() {
+        return 0;
+    }
+
     public Packet encode(Signal signal) {
         return new FakePacket(signal);
     }
@@ -0,0 +1,52 @@
+package org.zells.dish.tests.fakes;
+
+import org.zells.dish.network.Signal;
+import org.zells.dish.network.connecting.AsyncConnection;
+import org.zells.dish.network.connecting.Connection;
+import org.zells.dish.network.connecting.Packet;
+import org.zells.dish.network.connecting.PacketHandler;
+import org.zells.dish.network.encoding.EncodingRepository;
+import org.zells.dish.network.signals.BatchSignal;
+import org.zells.dish.network.signals.OkSignal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class FakeLegacyConnection implements AsyncConnection {
+
+    public List<Signal> received = new ArrayList<Signal>();
+    public List<Callback> unanswered = new ArrayList<Callback>();
+
+    private EncodingRepository encodings;
+
+    public FakeLegacyConnection(EncodingRepository encodings) {
+        this.encodings = encodings;
+    }
+
+    synchronized public void transmit(Packet packet, Callback callback) {
+        Signal signal = encodings.decode(packet);
+        packet.release();
+        received.add(signal);
+        if (signal instanceof BatchSignal) {
+            unanswered.add(callback);
+        } else {
+            callback.received(encodings.encode(new OkSignal()));
+        }
+    }
+
+    synchronized public Packet transmit(Packet packet) {
+        received.add(encodings.decode(packet));
+        packet.release();
+        return encodings.encode(new OkSignal());
+    }
+
+    public void setHandler(PacketHandler handler) {
+    }
+
+    public Connection open() {
+        return this;
+    }
+
+    public void close() {
+    }
+}
@@ -0,0 +1,31 @@
+package org.zells.dish.tests.fakes;
+
+import org.zells.dish.network.Signal;
+import org.zells.dish.network.connecting.Packet;
+import org.zells.dish.network.encoding.Encoding;
+import org.zells.dish.network.encoding.implementations.StreamingMsgpackEncoding;
+
+public class FakeTaggedEncoding implements Encoding {
+
+    public int encoded = 0;
+
+    private int tag;
+    private Encoding encoding = new StreamingMsgpackEncoding();
+
+    public FakeTaggedEncoding(int tag) {
+        this.tag = tag;
+    }
+
+    public int getTag() {
+        return tag;
+    }
+
+    public Packet encode(Signal signal) {
+        encoded++;
+        return encoding.encode(signal);
+    }
+
+    public Signal decode(Packet packet) {
+        return encoding.decode(packet);
+    }
+}
@@ -16,6 +16,8 @@ import java.util.*;
 
 public class LobbyZell implements Zell {
 
+    private static final StringMessage LEAVE = new StringMessage("leave");
+
     private Dish dish;
     private Map<String, AvatarZell> avatars = new HashMap<String, AvatarZell>();
     private Map<String, Set<String>> topics = new HashMap<String, Set<String>>();
@@ -160,7 +162,7 @@ public class LobbyZell implements Zell {
                 joinTopic(name, message.read("join").asString());
             } else if (message.read("ignore") instanceof StringMessage) {
                 ignoreTopic(name, message.read("ignore").asString());
-            } else if (message.read(0).equals(new StringMessage("leave"))) {
+            } else if (message.read(0).equals(LEAVE)) {
                 leave(name);
                 notifySubscribers(new StringMessage("Good-bye"));
             }
@@ -170,7 +172,7 @@ public class LobbyZell implements Zell {
             CompositeMessage message = new CompositeMessage()
                     .put("message", about)
                     .put("time", new StringMessage(getTimeAsIsoString()))
-                    .put("sequence", new IntegerMessage(sequence++));
+                    .put("sequence", IntegerMessage.valueOf(sequence++));
             heard.add(message);
 
             for (final Address subscriber : subscribers) {
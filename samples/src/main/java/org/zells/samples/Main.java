@@ -45,7 +45,7 @@ public class Main {
 
     private Main() {
         dish = Dish.buildDefault();
-        lobby = dish.add(new LobbyZell(dish));
+        lobby = dish.addWithMailbox(new LobbyZell(dish));
     }
 
     private void join(Connection connection) {
@@ -0,0 +1,74 @@
+package org.zells.samples.benchmarks;
+
+import org.zells.dish.Dish;
+import org.zells.dish.Zell;
+import org.zells.dish.delivery.Address;
+import org.zells.dish.delivery.Delivery;
+import org.zells.dish.delivery.Message;
+import org.zells.dish.delivery.messages.AddressMessage;
+import org.zells.dish.delivery.messages.CompositeMessage;
+import org.zells.dish.delivery.messages.StringMessage;
+import org.zells.dish.network.connecting.Packet;
+import org.zells.dish.network.encoding.Encoding;
+import org.zells.dish.network.encoding.implementations.StreamingMsgpackEncoding;
+import org.zells.dish.network.signals.DeliverSignal;
+import org.zells.dish.util.Uuid;
+import org.zells.samples.LobbyZell;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executor;
+
+public class LobbyAllocationBenchmark {
+
+    private static final int MEMBERS = 20;
+    private static final int WARM_UP = 100000;
+    private static final int MEASURE = 500000;
+
+    private static final Encoding encoding = new StreamingMsgpackEncoding();
+
+    public static void main(String[] args) {
+        Dish dish = Dish.buildDefault().setExecutor(new Executor() {
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+        Address sink = dish.add(new Zell() {
+            public void receive(Message message) {
+            }
+        });
+
+        LobbyZell lobby = new LobbyZell(dish);
+        for (int i = 0; i < MEMBERS; i++) {
+            lobby.receive(new CompositeMessage(new StringMessage("enter"))
+                    .put("from", new AddressMessage(sink))
+                    .put("as", new StringMessage("member" + i)));
+        }
+
+        Message hello = new CompositeMessage(new StringMessage("hello")).put("from", new AddressMessage(sink));
+        Packet packet = encoding.encode(new DeliverSignal(new Delivery(Uuid.fromString("01"), Address.fromString("fade"), hello)));
+
+        run(lobby, hello, packet, WARM_UP, false);
+        run(lobby, hello, packet, WARM_UP, true);
+        double built = run(lobby, hello, packet, MEASURE, false);
+        double decoded = run(lobby, hello, packet, MEASURE, true);
+
+        System.out.printf("%-14s %8.0f bytes/receive  %8.0f bytes/decode+receive%n", "lobby", built, decoded);
+    }
+
+    private static double run(Zell zell, Message message, Packet packet, int count, boolean decode) {
+        long start = allocatedBytes();
+        for (int i = 0; i < count; i++) {
+            if (decode) {
+                zell.receive(((DeliverSignal) encoding.decode(packet)).getDelivery().getMessage());
+            } else {
+                zell.receive(message);
+            }
+        }
+        return (allocatedBytes() - start) / (double) count;
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}